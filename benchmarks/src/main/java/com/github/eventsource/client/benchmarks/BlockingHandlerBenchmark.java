@@ -0,0 +1,124 @@
+package com.github.eventsource.client.benchmarks;
+
+import com.github.eventsource.client.EventSource;
+import com.github.eventsource.client.EventSourceClient;
+import com.github.eventsource.client.EventSourceHandler;
+import com.github.eventsource.client.MessageEvent;
+import com.github.eventsource.client.StubEventStreamServer;
+import com.github.eventsource.client.impl.VirtualThreads;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Events per second handled across many streams whose handlers block for a few milliseconds per event, as they
+ * would on a JDBC insert or an HTTP post. The server sends an event to every stream ten times a second.
+ * <code>VIRTUAL_THREADS</code> is {@link EventSourceClient#withVirtualThreads}, a mailbox and a virtual thread
+ * per stream; <code>PLATFORM_POOL</code> shares a fixed pool of platform threads between all streams. Run with
+ * <code>-prof gc</code> for the memory side. Needs Java 21 for virtual threads, older JVMs fall back to a
+ * platform thread per stream; 10,000 streams take 20,000 file descriptors, client and server side.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BlockingHandlerBenchmark {
+    static final int EVENTS_PER_INVOCATION = 1000;
+    static final int POOL_THREADS = 200;
+
+    public enum Dispatch {
+        VIRTUAL_THREADS, PLATFORM_POOL
+    }
+
+    @Param({"VIRTUAL_THREADS", "PLATFORM_POOL"})
+    public Dispatch dispatch;
+
+    @Param({"1000", "10000"})
+    public int streams;
+
+    @Param({"5"})
+    public int blockMillis;
+
+    private StubEventStreamServer server;
+    private ExecutorService pool;
+    private EventSourceClient client;
+    private final List<EventSource> eventSources = new ArrayList<EventSource>();
+    private final AtomicLong handled = new AtomicLong();
+    private long target;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        System.out.println("Virtual threads available: " + VirtualThreads.isAvailable());
+        server = new StubEventStreamServer().stream("data: {\"seq\":1}\n\n", Long.MAX_VALUE).tickEvery(100).start();
+        int workers = Runtime.getRuntime().availableProcessors();
+        if (dispatch == Dispatch.VIRTUAL_THREADS) {
+            client = EventSourceClient.withVirtualThreads(workers, EventSourceClient.Transport.NETTY3);
+        } else {
+            pool = Executors.newFixedThreadPool(POOL_THREADS);
+            client = new EventSourceClient(pool, workers);
+        }
+        EventSourceHandler handler = new EventSourceHandler() {
+            @Override
+            public void onConnect() {
+            }
+
+            @Override
+            public void onMessage(String event, MessageEvent message) throws Exception {
+                Thread.sleep(blockMillis);
+                handled.incrementAndGet();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        };
+        for (int i = 0; i < streams; i++) {
+            EventSource eventSource = new EventSource(client, 1000, URI.create(server.uri("/bench/" + i)), handler);
+            eventSource.connect().await();
+            eventSources.add(eventSource);
+        }
+        target = handled.get();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        for (EventSource eventSource : eventSources) {
+            eventSource.close();
+        }
+        client.shutdown();
+        server.stop();
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_INVOCATION)
+    public long handle() throws InterruptedException {
+        target += EVENTS_PER_INVOCATION;
+        while (handled.get() < target) {
+            Thread.sleep(1);
+        }
+        return target;
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.eventsource.client.benchmarks;
+
+import com.github.eventsource.client.EventSource;
+import com.github.eventsource.client.EventSourceClient;
+import com.github.eventsource.client.StubEventStreamServer;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Events per second over loopback with and without a gzip compressed stream, one event per chunk as a server
+ * that flushes after every event would send them. The <code>wireBytes</code> counter is the rate of bytes the
+ * server wrote, so dividing it by the event rate gives the bandwidth per event. The server compresses each event
+ * once up front, so the difference in event rate is what inflating costs the client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+    static final int EVENTS_PER_INVOCATION = 1000;
+
+    @Param({"TICKS", "LARGE_JSON"})
+    public Payload payload;
+
+    @Param({"false", "true"})
+    public boolean compression;
+
+    private StubEventStreamServer server;
+    private ExecutorService executor;
+    private EventSourceClient client;
+    private EventSource eventSource;
+    private CountingHandler handler;
+    private long target;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Wire {
+        public long wireBytes;
+        private long start;
+
+        @Setup(Level.Iteration)
+        public void reset(CompressionBenchmark benchmark) {
+            start = benchmark.server.getBytesWritten();
+            wireBytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        StringBuilder event = new StringBuilder();
+        payload.appendEvent(event, 1);
+        server = new StubEventStreamServer().gzip().stream(event.toString(), Long.MAX_VALUE).start();
+        executor = Executors.newSingleThreadExecutor();
+        client = new EventSourceClient(executor, 1);
+        handler = new CountingHandler();
+        eventSource = new EventSource(client, 0, URI.create(server.uri("/bench")), handler);
+        eventSource.setPendingEventWatermarks(1024, 8192);
+        eventSource.setCompression(compression);
+        eventSource.connect().await();
+        target = handler.count;
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        eventSource.close();
+        client.shutdown();
+        server.stop();
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_INVOCATION)
+    public long receive(Wire wire) {
+        target += EVENTS_PER_INVOCATION;
+        long count = handler.awaitCount(target);
+        wire.wireBytes = server.getBytesWritten() - wire.start;
+        return count;
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.eventsource.client.benchmarks;
+
+import com.github.eventsource.client.EventSourceHandler;
+import com.github.eventsource.client.MessageEvent;
+
+/**
+ * Counts the events of a single stream. Written by one thread at a time, read by the benchmark thread.
+ */
+class CountingHandler implements EventSourceHandler {
+    volatile long count;
+
+    @Override
+    public void onConnect() {
+    }
+
+    @Override
+    public void onMessage(String event, MessageEvent message) {
+        count++;
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        t.printStackTrace();
+    }
+
+    /**
+     * Spins until <code>target</code> events have been counted.
+     */
+    long awaitCount(long target) {
+        while (count < target) {
+            Thread.yield();
+        }
+        return count;
+    }
+}
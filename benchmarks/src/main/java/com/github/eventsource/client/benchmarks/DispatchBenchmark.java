@@ -0,0 +1,122 @@
+package com.github.eventsource.client.benchmarks;
+
+import com.github.eventsource.client.EventSource;
+import com.github.eventsource.client.EventSourceClient;
+import com.github.eventsource.client.EventSourceHandler;
+import com.github.eventsource.client.MessageEvent;
+import com.github.eventsource.client.StubEventStreamServer;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Events per second across many busy streams whose handlers do some CPU work per event, a JSON parse or a
+ * lookup. <code>SINGLE_THREAD</code> is the default single event thread shared by all streams;
+ * <code>WORK_STEALING</code> is {@link EventSourceClient#withWorkStealingPool}, a mailbox per stream on a thread
+ * per core, which keeps the events of every stream in order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+    static final int EVENTS_PER_INVOCATION = 1000;
+
+    public enum Dispatch {
+        SINGLE_THREAD, WORK_STEALING
+    }
+
+    @Param({"SINGLE_THREAD", "WORK_STEALING"})
+    public Dispatch dispatch;
+
+    @Param({"64"})
+    public int streams;
+
+    @Param({"0", "2000"})
+    public int cpuTokens;
+
+    private StubEventStreamServer server;
+    private ExecutorService executor;
+    private EventSourceClient client;
+    private final List<EventSource> eventSources = new ArrayList<EventSource>();
+    private final AtomicLong handled = new AtomicLong();
+    private long target;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        server = new StubEventStreamServer().stream(Payload.TICKS.text(), Long.MAX_VALUE).start();
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        if (dispatch == Dispatch.WORK_STEALING) {
+            client = EventSourceClient.withWorkStealingPool(workers, EventSourceClient.Transport.NETTY3);
+        } else {
+            executor = Executors.newSingleThreadExecutor();
+            client = new EventSourceClient(executor, workers);
+        }
+        EventSourceHandler handler = new EventSourceHandler() {
+            @Override
+            public void onConnect() {
+            }
+
+            @Override
+            public void onMessage(String event, MessageEvent message) {
+                Blackhole.consumeCPU(cpuTokens);
+                handled.incrementAndGet();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        };
+        for (int i = 0; i < streams; i++) {
+            EventSource eventSource = new EventSource(client, 0, URI.create(server.uri("/bench/" + i)), handler);
+            // keep the executor from being flooded, the benchmark measures sustained throughput
+            eventSource.setPendingEventWatermarks(256, 1024);
+            eventSource.connect().await();
+            eventSources.add(eventSource);
+        }
+        target = handled.get();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        for (EventSource eventSource : eventSources) {
+            eventSource.close();
+        }
+        client.shutdown();
+        server.stop();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_INVOCATION)
+    public long handle() {
+        target += EVENTS_PER_INVOCATION;
+        while (handled.get() < target) {
+            Thread.yield();
+        }
+        return target;
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.eventsource.client.benchmarks;
+
+import com.github.eventsource.client.EventSource;
+import com.github.eventsource.client.EventSourceClient;
+import com.github.eventsource.client.StubEventStreamServer;
+import com.github.eventsource.client.impl.RingBufferExecutor;
+import java.net.URI;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Events per second from an in-process server over loopback all the way to the {@link
+ * com.github.eventsource.client.EventSourceHandler}, through the event executor every EventSource hands its
+ * events to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+    static final int EVENTS_PER_INVOCATION = 1000;
+
+    public enum Dispatch {
+        SINGLE_THREAD, RING_BUFFER
+    }
+
+    @Param({"TICKS", "LARGE_JSON", "HEARTBEATS"})
+    public Payload payload;
+
+    @Param({"SINGLE_THREAD", "RING_BUFFER"})
+    public Dispatch dispatch;
+
+    private StubEventStreamServer server;
+    private Executor executor;
+    private EventSourceClient client;
+    private EventSource eventSource;
+    private CountingHandler handler;
+    private long target;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        server = new StubEventStreamServer().stream(payload.text(), Long.MAX_VALUE).start();
+        executor = dispatch == Dispatch.RING_BUFFER ? new RingBufferExecutor() : Executors.newSingleThreadExecutor();
+        client = new EventSourceClient(executor, 1);
+        handler = new CountingHandler();
+        // reconnect right away should the connection ever drop, the count carries on
+        eventSource = new EventSource(client, 0, URI.create(server.uri("/bench")), handler);
+        // keep the executor from being flooded, the benchmark measures sustained throughput
+        eventSource.setPendingEventWatermarks(1024, 8192);
+        eventSource.connect().await();
+        target = handler.count;
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        eventSource.close();
+        client.shutdown();
+        server.stop();
+        if (executor instanceof RingBufferExecutor) {
+            ((RingBufferExecutor) executor).shutdown();
+        } else {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_INVOCATION)
+    public long receive() {
+        target += EVENTS_PER_INVOCATION;
+        return handler.awaitCount(target);
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.eventsource.client.benchmarks;
+
+import com.github.eventsource.client.EventFilter;
+import com.github.eventsource.client.EventSourceHandler;
+import com.github.eventsource.client.MessageEvent;
+import com.github.eventsource.client.impl.ConnectionHandler;
+import com.github.eventsource.client.impl.EventStreamParser;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parses about 64KB of a feed in which nine out of ten events are of types the handler doesn't care about:
+ * <code>heartbeat</code> events with a small payload and <code>quote</code> events with a large one. With
+ * <code>filter = NONE</code> the handler skips them after they have been decoded, with <code>EVENT_FILTER</code>
+ * an {@link EventFilter} skips them once they are complete, without decoding their data. The fields of every event
+ * come in the order <code>fieldOrder</code> says. Run with <code>-prof gc</code> to see the allocations saved.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public enum Filter {
+        NONE, EVENT_FILTER
+    }
+
+    public enum FieldOrder {
+        EVENT_FIRST, ID_FIRST, DATA_FIRST
+    }
+
+    @Param({"NONE", "EVENT_FILTER"})
+    public Filter filter;
+
+    @Param({"EVENT_FIRST", "ID_FIRST", "DATA_FIRST"})
+    public FieldOrder fieldOrder;
+
+    private EventStreamParser parser;
+    private ChannelBuffer buffer;
+
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        parser = new EventStreamParser("http://localhost/bench", new EventSourceHandler() {
+            @Override
+            public void onConnect() {
+            }
+
+            @Override
+            public void onMessage(String event, MessageEvent message) {
+                if (event.equals("trade")) {
+                    blackhole.consume(message);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }, new ConnectionHandler() {
+            @Override
+            public void setReconnectionTimeMillis(long reconnectionTimeMillis) {
+            }
+
+            @Override
+            public void setLastEventId(String lastEventId) {
+            }
+        });
+        if (filter == Filter.EVENT_FILTER) {
+            parser.getEventTypes().setFilter(new EventFilter() {
+                @Override
+                public boolean accept(String event, String lastEventId) {
+                    return event.equals("trade");
+                }
+            });
+        }
+
+        StringBuilder quote = new StringBuilder("{\"bids\":[");
+        for (int i = 0; i < 20; i++) {
+            quote.append(i == 0 ? "" : ",").append("{\"price\":").append(100 + i).append(".25,\"size\":").append(i * 7).append('}');
+        }
+        quote.append("]}");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 64 * 1024; i++) {
+            switch (i % 10) {
+                case 0:
+                    append(text, "trade", Integer.toString(i), "{\"price\":101.5,\"size\":300}");
+                    break;
+                case 1:
+                case 2:
+                case 3:
+                    append(text, "quote", null, quote.toString());
+                    break;
+                default:
+                    append(text, "heartbeat", null, "{\"ts\":" + (1700000000000L + i) + "}");
+            }
+        }
+        buffer = ChannelBuffers.wrappedBuffer(text.toString().getBytes(UTF_8));
+    }
+
+    private void append(StringBuilder text, String event, String id, String data) {
+        String eventField = "event: " + event + "\n";
+        String idField = id == null ? "" : "id: " + id + "\n";
+        String dataField = "data: " + data + "\n";
+        switch (fieldOrder) {
+            case EVENT_FIRST:
+                text.append(eventField).append(idField).append(dataField);
+                break;
+            case ID_FIRST:
+                text.append(idField).append(eventField).append(dataField);
+                break;
+            default:
+                text.append(dataField).append(idField).append(eventField);
+        }
+        text.append('\n');
+    }
+
+    @Benchmark
+    public void parse() {
+        parser.lines(buffer);
+    }
+}
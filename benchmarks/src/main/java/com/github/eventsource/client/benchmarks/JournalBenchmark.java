@@ -0,0 +1,88 @@
+package com.github.eventsource.client.benchmarks;
+
+import com.github.eventsource.client.journal.EventJournal;
+import com.github.eventsource.client.journal.JournalReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sustained rate of appending events to an {@link EventJournal}, segment rolling and retention included: the
+ * journal is capped at 256MB, so once it is full every roll also deletes a segment. Multiply by the record size
+ * (about 20 bytes plus the payload) for the write rate in bytes. <code>replay</code> reads back a journal of 10,000
+ * events per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalBenchmark {
+    private static final int REPLAYED_EVENTS = 10000;
+
+    @Param({"64", "1024", "16384"})
+    public int payloadBytes;
+
+    private File directory;
+    private EventJournal journal;
+    private String data;
+    private long id;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = File.createTempFile("journal-benchmark", "");
+        directory.delete();
+        journal = new EventJournal(directory, 16 * 1024 * 1024).setRetention(256L * 1024 * 1024, Long.MAX_VALUE);
+        StringBuilder builder = new StringBuilder(payloadBytes);
+        while (builder.length() < payloadBytes) {
+            builder.append('x');
+        }
+        data = builder.toString();
+        for (int i = 0; i < REPLAYED_EVENTS; i++) {
+            append();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        journal.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public long append() throws IOException {
+        return journal.append("message", Long.toString(id++), data, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REPLAYED_EVENTS)
+    public long replay() throws IOException {
+        JournalReader reader = journal.reader(journal.getNextSequence() - REPLAYED_EVENTS);
+        long count = 0;
+        while (count < REPLAYED_EVENTS && reader.next() != null) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.eventsource.client.benchmarks;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.http.DefaultHttpChunk;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Splits about 64KB of event stream per operation into lines, delivered in chunks of the given size, with the
+ * Netty 3 and the Netty 4 line decoder. Small chunks cut most lines in two and exercise the carry-over path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineDecoderBenchmark {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAX_LINE_LENGTH = 32 * 1024;
+
+    @Param({"TICKS", "LARGE_JSON"})
+    public Payload payload;
+
+    @Param({"16", "256", "4096", "65536"})
+    public int chunkSize;
+
+    private DecoderEmbedder<Object> netty3;
+    private HttpChunk[] netty3Chunks;
+    private EmbeddedChannel netty4;
+    private ByteBuf[] netty4Chunks;
+
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        byte[] bytes = payload.text().getBytes(UTF_8);
+        int count = (bytes.length + chunkSize - 1) / chunkSize;
+        netty3Chunks = new HttpChunk[count];
+        netty4Chunks = new ByteBuf[count];
+        for (int i = 0; i < count; i++) {
+            int offset = i * chunkSize;
+            int length = Math.min(chunkSize, bytes.length - offset);
+            netty3Chunks[i] = new DefaultHttpChunk(ChannelBuffers.wrappedBuffer(bytes, offset, length));
+            netty4Chunks[i] = PooledByteBufAllocator.DEFAULT.directBuffer(length).writeBytes(bytes, offset, length);
+        }
+
+        // the last handlers swallow the lines, so nothing piles up in the embedders
+        netty3 = new DecoderEmbedder<Object>(
+                new com.github.eventsource.client.impl.netty.EventStreamLineDecoder(MAX_LINE_LENGTH),
+                new SimpleChannelUpstreamHandler() {
+                    @Override
+                    public void messageReceived(org.jboss.netty.channel.ChannelHandlerContext ctx,
+                                                org.jboss.netty.channel.MessageEvent e) {
+                        if (e.getMessage() instanceof ChannelBuffer) {
+                            blackhole.consume(((ChannelBuffer) e.getMessage()).readableBytes());
+                        }
+                    }
+                });
+        netty3.offer(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+
+        netty4 = new EmbeddedChannel(
+                new com.github.eventsource.client.impl.netty4.EventStreamLineDecoder(MAX_LINE_LENGTH),
+                new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        blackhole.consume(((ByteBuf) msg).readableBytes());
+                    }
+                });
+    }
+
+    @TearDown
+    public void teardown() {
+        for (ByteBuf chunk : netty4Chunks) {
+            chunk.release();
+        }
+        netty4.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public void netty3() {
+        for (HttpChunk chunk : netty3Chunks) {
+            netty3.offer(chunk);
+        }
+    }
+
+    @Benchmark
+    public void netty4() {
+        for (ByteBuf chunk : netty4Chunks) {
+            // straight into the pipeline, writeInbound costs more than the decoding; the decoder releases what it is given
+            netty4.pipeline().fireChannelRead(new DefaultHttpContent(chunk.retainedDuplicate()));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.eventsource.client.benchmarks;
+
+import com.github.eventsource.client.EventSource;
+import com.github.eventsource.client.EventSourceClient;
+import com.github.eventsource.client.EventSourceHandler;
+import com.github.eventsource.client.MessageEvent;
+import com.github.eventsource.client.StubEventStreamServer;
+import com.github.eventsource.client.StubHttp2EventStreamServer;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to open thousands of streams to one server and get an event on every one of them, on a connection per stream
+ * (<code>NETTY4</code>) or multiplexed over shared HTTP/2 connections (<code>HTTP2</code>). The score is the time;
+ * what the streams cost once open - client sockets, server connections, heap and pooled direct memory - is printed
+ * after every iteration. The servers send an event to every stream once a second. 10,000 streams on
+ * <code>NETTY4</code> take 20,000 file descriptors, client and server side.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ManyStreamsBenchmark {
+    @Param({"NETTY4", "HTTP2"})
+    public EventSourceClient.Transport transport;
+
+    @Param({"1000", "5000"})
+    public int streams;
+
+    private StubEventStreamServer http1Server;
+    private StubHttp2EventStreamServer http2Server;
+    private EventSourceClient client;
+    private final List<EventSource> eventSources = new ArrayList<EventSource>();
+    private volatile CountDownLatch received;
+    private long heapBefore;
+    private int http2ConnectionsBefore;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        if (transport == EventSourceClient.Transport.HTTP2) {
+            http2Server = new StubHttp2EventStreamServer().stream("data: {\"seq\":1}\n\n", Long.MAX_VALUE)
+                    .tickEvery(1000).start();
+        } else {
+            http1Server = new StubEventStreamServer().stream("data: {\"seq\":1}\n\n", Long.MAX_VALUE)
+                    .tickEvery(1000).start();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createClient() {
+        client = new EventSourceClient(Executors.newSingleThreadExecutor(), Runtime.getRuntime().availableProcessors(),
+                                       transport);
+        received = new CountDownLatch(streams);
+        heapBefore = usedHeap();
+        http2ConnectionsBefore = http2Server != null ? http2Server.getConnectionCount() : 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeStreams() {
+        System.out.println();
+        System.out.println("client sockets: " + client.getOpenChannelCount()
+                           + ", server connections: " + (http2Server != null
+                                                         ? http2Server.getConnectionCount() - http2ConnectionsBefore
+                                                         : http1Server.getOpenConnections())
+                           + ", heap: " + (usedHeap() - heapBefore) / 1024 + "KB"
+                           + ", pooled direct: " + PooledByteBufAllocator.DEFAULT.metric().usedDirectMemory() / 1024
+                           + "KB");
+        for (EventSource eventSource : eventSources) {
+            eventSource.close();
+        }
+        eventSources.clear();
+        client.shutdown();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        if (http2Server != null) {
+            http2Server.stop();
+        } else {
+            http1Server.stop();
+        }
+    }
+
+    @Benchmark
+    public long openStreams() throws InterruptedException {
+        for (int i = 0; i < streams; i++) {
+            EventSourceHandler handler = new EventSourceHandler() {
+                private boolean first = true;
+
+                @Override
+                public void onConnect() {
+                }
+
+                @Override
+                public void onMessage(String event, MessageEvent message) {
+                    if (first) {
+                        first = false;
+                        received.countDown();
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+            };
+            String uri = http2Server != null ? http2Server.uri("/bench/" + i) : http1Server.uri("/bench/" + i);
+            EventSource eventSource = new EventSource(client, 60000, URI.create(uri), handler);
+            eventSource.connect();
+            eventSources.add(eventSource);
+        }
+        received.await();
+        return received.getCount();
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.eventsource.client.benchmarks;
+
+import com.github.eventsource.client.EventSourceHandler;
+import com.github.eventsource.client.MessageEvent;
+import com.github.eventsource.client.impl.ConnectionHandler;
+import com.github.eventsource.client.impl.EventStreamParser;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parses about 64KB of event stream per operation, handing every event to a {@link Blackhole}. The
+ * <code>line*</code> benchmarks feed the parser line by line, the way the line decoder does on a connection;
+ * the <code>lines*</code> benchmarks hand it the whole stream at once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"TICKS", "LARGE_JSON", "HEARTBEATS"})
+    public Payload payload;
+
+    private EventStreamParser parser;
+    private String text;
+    private ChannelBuffer buffer;
+    private String[] lineStrings;
+    private ChannelBuffer[] lineBuffers;
+
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        parser = new EventStreamParser("http://localhost/bench", new EventSourceHandler() {
+            @Override
+            public void onConnect() {
+            }
+
+            @Override
+            public void onMessage(String event, MessageEvent message) {
+                blackhole.consume(message);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }, new ConnectionHandler() {
+            @Override
+            public void setReconnectionTimeMillis(long reconnectionTimeMillis) {
+            }
+
+            @Override
+            public void setLastEventId(String lastEventId) {
+            }
+        });
+
+        text = payload.text();
+        buffer = ChannelBuffers.wrappedBuffer(text.getBytes(UTF_8));
+        // the stream ends with an empty line, which split drops
+        lineStrings = text.split("\n");
+        List<ChannelBuffer> lines = new ArrayList<ChannelBuffer>();
+        int start = 0;
+        for (int i = 0; i < buffer.capacity(); i++) {
+            if (buffer.getByte(i) == '\n') {
+                lines.add(buffer.slice(start, i - start));
+                start = i + 1;
+            }
+        }
+        lineBuffers = lines.toArray(new ChannelBuffer[lines.size()]);
+    }
+
+    @Benchmark
+    public void linesString() {
+        parser.lines(text);
+    }
+
+    @Benchmark
+    public void linesBuffer() {
+        parser.lines(buffer);
+    }
+
+    @Benchmark
+    public void lineString() {
+        for (String line : lineStrings) {
+            parser.line(line);
+        }
+    }
+
+    @Benchmark
+    public void lineBuffer() {
+        for (ChannelBuffer line : lineBuffers) {
+            parser.line(line);
+        }
+    }
+}
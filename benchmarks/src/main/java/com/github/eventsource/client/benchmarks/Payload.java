@@ -0,0 +1,71 @@
+package com.github.eventsource.client.benchmarks;
+
+/**
+ * Event stream payloads the benchmarks are run on, each about 64KB of raw stream text.
+ */
+public enum Payload {
+    /** Small single-line market data events with an id and an event name. */
+    TICKS {
+        @Override
+        void appendEvent(StringBuilder stream, int seq) {
+            stream.append("id: ").append(seq).append('\n')
+                    .append("event: tick\n")
+                    .append("data: {\"seq\":").append(seq).append(",\"symbol\":\"EURUSD\",\"bid\":1.0825,\"ask\":1.0827}\n\n");
+        }
+    },
+    /** Pretty-printed JSON documents of a few kilobytes, one data line per JSON line. */
+    LARGE_JSON {
+        @Override
+        void appendEvent(StringBuilder stream, int seq) {
+            stream.append("data: {\n");
+            for (int i = 0; i < 64; i++) {
+                stream.append("data:   \"field").append(i).append("\": \"value ").append(seq).append('-').append(i)
+                        .append(" with some padding to look like a real document\",\n");
+            }
+            stream.append("data:   \"seq\": ").append(seq).append("\n")
+                    .append("data: }\n\n");
+        }
+    },
+    /** Mostly comment heartbeats, with an occasional small event in between. */
+    HEARTBEATS {
+        @Override
+        void appendEvent(StringBuilder stream, int seq) {
+            if (seq % 16 == 0) {
+                stream.append("data: {\"seq\":").append(seq).append("}\n\n");
+            } else {
+                stream.append(": heartbeat\n\n");
+            }
+        }
+    };
+
+    private static final int TARGET_SIZE = 64 * 1024;
+
+    abstract void appendEvent(StringBuilder stream, int seq);
+
+    /**
+     * @return events appended until the stream is at least 64KB long, always ending on an event boundary
+     */
+    public String text() {
+        StringBuilder stream = new StringBuilder(TARGET_SIZE + 8192);
+        for (int seq = 0; stream.length() < TARGET_SIZE; seq++) {
+            appendEvent(stream, seq);
+        }
+        return stream.toString();
+    }
+
+    /**
+     * @return <code>count</code> events with a data line of <code>payloadBytes</code> each
+     */
+    public static String events(int payloadBytes, int count) {
+        StringBuilder data = new StringBuilder("{\"seq\":0,\"price\":101.25");
+        while (data.length() < payloadBytes - 1) {
+            data.append(' ');
+        }
+        data.append('}');
+        StringBuilder events = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            events.append("data: ").append(data).append("\n\n");
+        }
+        return events.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.eventsource.client.benchmarks;
+
+import com.github.eventsource.client.EventSource;
+import com.github.eventsource.client.EventSourceClient;
+import com.github.eventsource.client.StubEventStreamServer;
+import java.net.URI;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Events per second received over a loopback connection from an in-process server, on the Netty 3 and the
+ * Netty 4 transport. Handlers run on the I/O thread, so only the transport, the line decoder and the parser are
+ * measured. Run with <code>-prof gc</code> to compare allocation rates; the server runs in the same JVM and is
+ * included in them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportBenchmark {
+    static final int EVENTS_PER_INVOCATION = 1000;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Param({"NETTY3", "NETTY4"})
+    public EventSourceClient.Transport transport;
+
+    @Param({"64"})
+    public int payloadBytes;
+
+    private StubEventStreamServer server;
+    private EventSourceClient client;
+    private EventSource eventSource;
+    private CountingHandler handler;
+    private long target;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        server = new StubEventStreamServer().stream(Payload.events(payloadBytes, 64), Long.MAX_VALUE).start();
+        client = new EventSourceClient(DIRECT, 1, transport);
+        handler = new CountingHandler();
+        // reconnect right away should the connection ever drop, the count carries on
+        eventSource = new EventSource(client, 0, URI.create(server.uri("/bench")), handler);
+        eventSource.connect().await();
+        target = handler.count;
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        eventSource.close();
+        client.shutdown();
+        server.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_INVOCATION)
+    public long receive() {
+        target += EVENTS_PER_INVOCATION;
+        return handler.awaitCount(target);
+    }
+}
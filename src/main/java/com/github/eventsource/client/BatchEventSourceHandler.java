@@ -0,0 +1,17 @@
+package com.github.eventsource.client;
+
+import java.util.List;
+
+/**
+ * An {@link EventSourceHandler} that takes messages in batches. When an {@link EventSource} is created with a
+ * handler implementing this interface, messages that are parsed while a previous delivery is still pending -
+ * typically all events of a single network read - are handed over with one call to
+ * {@link #onMessages(List, List)} instead of one {@link #onMessage(String, MessageEvent)} call each.
+ */
+public interface BatchEventSourceHandler extends EventSourceHandler {
+  /**
+   * @param events   event names, {@code events.get(i)} is the name of {@code messages.get(i)}
+   * @param messages messages in the order they were received
+   */
+  void onMessages(List<String> events, List<MessageEvent> messages) throws Exception;
+}
@@ -0,0 +1,16 @@
+package com.github.eventsource.client;
+
+/**
+ * Decides which events of a stream are passed on, see {@link EventSource#setEventFilter(EventFilter)}. Called on
+ * the I/O thread once per event, when its blank line has been parsed and its name and ID are final, so it should be
+ * quick and must not block. An event larger than the maximum event size is decided on when it reaches that size,
+ * with the fields parsed until then.
+ */
+public interface EventFilter {
+  /**
+   * @param event       name of the event, "message" if it has no <code>event:</code> field
+   * @param lastEventId the ID of the event, that of an earlier event if it has no <code>id:</code> field
+   * @return false to skip the event
+   */
+  boolean accept(String event, String lastEventId);
+}
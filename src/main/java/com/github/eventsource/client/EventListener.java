@@ -0,0 +1,9 @@
+package com.github.eventsource.client;
+
+/**
+ * Receives the messages of the event types it has been added for with
+ * {@link EventSource#addEventListener(String, EventListener)}.
+ */
+public interface EventListener {
+  void onMessage(String event, MessageEvent message) throws Exception;
+}
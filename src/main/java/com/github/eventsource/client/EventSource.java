@@ -1,7 +1,18 @@
 package com.github.eventsource.client;
 
+import com.github.eventsource.client.checkpoint.CheckpointStore;
 import com.github.eventsource.client.impl.AsyncEventSourceHandler;
-import com.github.eventsource.client.impl.netty.EventSourceChannelHandler;
+import com.github.eventsource.client.impl.BatchingEventSourceHandler;
+import com.github.eventsource.client.impl.EventStreamParser;
+import com.github.eventsource.client.impl.EventStreamConnection;
+import com.github.eventsource.client.impl.FlowControl;
+import com.github.eventsource.client.impl.PendingEventLimiter;
+import com.github.eventsource.client.impl.RawAsyncEventSourceHandler;
+import com.github.eventsource.client.impl.ReconnectBackoff;
+import com.github.eventsource.client.impl.SharedFlowControl;
+import com.github.eventsource.client.journal.EventJournal;
+import com.github.eventsource.client.metrics.EventSourceMetrics;
+import com.github.eventsource.client.reconnect.ReconnectPolicy;
 import org.jboss.netty.channel.ChannelFuture;
 
 import java.net.URI;
@@ -10,7 +21,12 @@ import java.util.concurrent.Executor;
 public class EventSource {
     public static final long DEFAULT_RECONNECTION_TIME_MILLIS = 2000;
 
-    private final EventSourceChannelHandler clientHandler;
+    private final EventSourceClient client;
+    private final AsyncEventSourceHandler asyncHandler;
+    private final ReconnectBackoff backoff;
+    private final EventStreamConnection clientHandler;
+    private final SharedFlowControl flowControl;
+    private final FlowControl watermarkFlowControl;
 
     /**
      * Creates a new <a href="http://dev.w3.org/html5/eventsource/">EventSource</a> client. The client will reconnect on
@@ -22,29 +38,221 @@ public class EventSource {
      * @param eventSourceClient      EventSourceClient to start event source at
      * @param reconnectionTimeMillis delay before a reconnect is made - in the event of a lost connection
      * @param uri where to connect
-     * @param eventSourceHandler receives events
+     * @param eventSourceHandler receives events, in batches if it implements {@link BatchEventSourceHandler}, with
+     *                           undecoded data if it implements {@link RawEventSourceHandler}
      * @see #close()
      */
     public EventSource(EventSourceClient eventSourceClient, long reconnectionTimeMillis, final URI uri, EventSourceHandler eventSourceHandler) {
-        clientHandler = new EventSourceChannelHandler(new AsyncEventSourceHandler(eventSourceClient.getEventExecutor(), eventSourceHandler), reconnectionTimeMillis, eventSourceClient, uri);
+        Executor executor = eventSourceClient.newStreamExecutor();
+        EventSourceMetrics metrics = eventSourceClient.getMetrics();
+        if (eventSourceHandler instanceof BatchEventSourceHandler) {
+            asyncHandler = new BatchingEventSourceHandler(executor, (BatchEventSourceHandler) eventSourceHandler, metrics);
+        } else if (eventSourceHandler instanceof RawEventSourceHandler) {
+            asyncHandler = new RawAsyncEventSourceHandler(executor, (RawEventSourceHandler) eventSourceHandler, metrics);
+        } else {
+            asyncHandler = new AsyncEventSourceHandler(executor, eventSourceHandler, metrics);
+        }
+        backoff = new ReconnectBackoff(reconnectionTimeMillis, eventSourceClient.getReconnectPolicy());
+        clientHandler = eventSourceClient.newConnection(asyncHandler, backoff, uri);
+        flowControl = new SharedFlowControl(clientHandler);
+        watermarkFlowControl = flowControl.newFlowControl();
+        CheckpointStore checkpointStore = eventSourceClient.getCheckpointStore();
+        if (checkpointStore != null) {
+            String stream = uri.toString();
+            asyncHandler.setCheckpointStore(checkpointStore, stream);
+            String lastEventId = checkpointStore.load(stream);
+            if (lastEventId != null) {
+                clientHandler.resumeFrom(lastEventId);
+            }
+        }
+        client = eventSourceClient;
+        client.register(this);
     }
 
     public EventSource(Executor eventExecutor, long reconnectionTimeMillis, URI uri, EventSourceHandler eventSourceHandler) {
         this(new EventSourceClient(eventExecutor), reconnectionTimeMillis, uri, eventSourceHandler);
     }
 
+    /**
+     * Creates an EventSource on the {@link EventSourceClient#shared() shared client}.
+     */
     public EventSource(String uri, EventSourceHandler eventSourceHandler) {
         this(URI.create(uri), eventSourceHandler);
     }
 
+    /**
+     * Creates an EventSource on the {@link EventSourceClient#shared() shared client}.
+     */
     public EventSource(URI uri, EventSourceHandler eventSourceHandler) {
-        this(new EventSourceClient(), DEFAULT_RECONNECTION_TIME_MILLIS, uri, eventSourceHandler);
+        this(EventSourceClient.shared(), DEFAULT_RECONNECTION_TIME_MILLIS, uri, eventSourceHandler);
+    }
+
+    /**
+     * Limits how many messages are passed to a {@link BatchEventSourceHandler} in one call. Has no effect on
+     * other handlers.
+     *
+     * @param maxBatchSize maximum number of messages per batch, {@value BatchingEventSourceHandler#DEFAULT_MAX_BATCH_SIZE} by default
+     * @return self
+     */
+    public EventSource setMaxBatchSize(int maxBatchSize) {
+        if (asyncHandler instanceof BatchingEventSourceHandler) {
+            ((BatchingEventSourceHandler) asyncHandler).setMaxBatchSize(maxBatchSize);
+        }
+        return this;
+    }
+
+    /**
+     * Applies backpressure to the server when the handler falls behind. Once <code>highWatermark</code> events
+     * are waiting for the executor, reading from the connection is suspended, so TCP flow control holds back
+     * the server instead of the queue growing without bound. Reading resumes when no more than
+     * <code>lowWatermark</code> events are left. Without watermarks, which is the default, events are always
+     * read as fast as they arrive.
+     *
+     * @param lowWatermark  pending events at which reading resumes
+     * @param highWatermark pending events at which reading is suspended
+     * @return self
+     */
+    public EventSource setPendingEventWatermarks(int lowWatermark, int highWatermark) {
+        asyncHandler.setPendingEventLimiter(new PendingEventLimiter(lowWatermark, highWatermark, watermarkFlowControl));
+        // the limiter replaced may have left reads suspended
+        watermarkFlowControl.resumeReads();
+        return this;
+    }
+
+    /**
+     * Routes events of the given type to the listener instead of the handler. Event names are resolved once per
+     * event, from their raw bytes, so this is cheaper than comparing names in the handler. Messages for listeners
+     * are never batched, and for a {@link RawEventSourceHandler} they are decoded.
+     *
+     * @param event   name of the events, "message" for events without an <code>event:</code> field
+     * @return self
+     */
+    public EventSource addEventListener(String event, EventListener listener) {
+        asyncHandler.getEventTypes().addListener(event, listener);
+        return this;
+    }
+
+    /**
+     * @return self
+     */
+    public EventSource removeEventListener(String event, EventListener listener) {
+        asyncHandler.getEventTypes().removeListener(event, listener);
+        return this;
+    }
+
+    /**
+     * Drops events of types without a listener in the parser, without decoding their data, rather than passing them
+     * to the handler. Since the <code>event:</code> field may come after the data, an event is dropped once it is
+     * complete. They still count as received for the last event ID sent on reconnect, but are neither journaled nor
+     * checkpointed.
+     *
+     * @return self
+     */
+    public EventSource setDropUnlistenedEvents(boolean dropUnlistenedEvents) {
+        asyncHandler.getEventTypes().setDropUnlistened(dropUnlistenedEvents);
+        return this;
+    }
+
+    /**
+     * Skips the events the filter rejects in the parser: their data is never decoded and no message is created.
+     * Like dropped events, they still count for the last event ID sent on reconnect.
+     *
+     * @param filter null to pass on every event
+     * @return self
+     */
+    public EventSource setEventFilter(EventFilter filter) {
+        asyncHandler.getEventTypes().setFilter(filter);
+        return this;
     }
 
+    /**
+     * Appends every event of this EventSource to a journal as soon as it has been parsed, on the I/O thread. The
+     * journal can be read back and replayed with {@link EventJournal#reader()}.
+     *
+     * @param journal null to stop journaling
+     * @return self
+     */
+    public EventSource setJournal(EventJournal journal) {
+        asyncHandler.setJournal(journal);
+        return this;
+    }
+
+    /**
+     * Replaces the fixed reconnection time with a policy, typically one that backs off while the server stays
+     * unreachable. A retry time sent by the server still applies as the minimum delay. Has no effect if this
+     * EventSource was created with a negative reconnection time until the server sends a retry time, it doesn't
+     * reconnect before that.
+     *
+     * @param reconnectPolicy see {@link com.github.eventsource.client.reconnect.ReconnectPolicies}, null for the
+     *                        fixed reconnection time
+     * @return self
+     */
+    public EventSource setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+        backoff.setPolicy(reconnectPolicy);
+        return this;
+    }
+
+    /**
+     * Treats a connection that has received nothing - not even a comment line - for the given time as dead: the
+     * handler gets an {@link EventSourceException} and the connection is closed and reestablished. This catches
+     * half-open connections, where the peer is gone without the socket ever being closed. Set it before
+     * connecting, and to a few times the server's heartbeat interval.
+     *
+     * @param readTimeoutMillis 0, the default, to wait forever
+     * @return self
+     */
+    public EventSource setReadTimeoutMillis(long readTimeoutMillis) {
+        if (readTimeoutMillis < 0) {
+            throw new IllegalArgumentException("readTimeoutMillis must not be negative: " + readTimeoutMillis);
+        }
+        clientHandler.setReadTimeoutMillis(readTimeoutMillis);
+        return this;
+    }
+
+    /**
+     * Limits the data of a single event, {@value EventStreamParser#DEFAULT_MAX_EVENT_SIZE} bytes by default. Larger
+     * events are skipped with an {@link EventSourceException} to the handler, and the connection is kept. If the
+     * handler implements {@link StreamingEventSourceHandler}, they are passed to it in pieces instead.
+     *
+     * @return self
+     */
+    public EventSource setMaxEventSize(int maxEventSize) {
+        clientHandler.setMaxEventSize(maxEventSize);
+        return this;
+    }
+
+    /**
+     * Asks the server to compress the stream with gzip or deflate, which pays off for verbose payloads such as
+     * JSON. The body is inflated chunk by chunk as it arrives, so an event is delivered as soon as the server has
+     * flushed it; the server has to flush its compressor after every event for that. Set it before connecting.
+     *
+     * @param compression false by default
+     * @return self
+     */
+    public EventSource setCompression(boolean compression) {
+        clientHandler.setCompression(compression);
+        return this;
+    }
+
+    /**
+     * Connects to the server, once the client has resolved its host. Failures are reported to the handler, and the
+     * stream reconnects after them like after a lost connection.
+     *
+     * @return a future that completes when the connection has been established or has failed; it has no channel,
+     *         {@link ChannelFuture#getChannel()} is null on every transport
+     */
     public ChannelFuture connect() {
         return clientHandler.connect();
     }
 
+    /**
+     * @return a FlowControl for a party other than the watermarks; reading only goes on while none of them has
+     *         suspended it
+     */
+    FlowControl newFlowControl() {
+        return flowControl.newFlowControl();
+    }
+
     /**
      * Close the connection
      *
@@ -52,9 +260,25 @@ public class EventSource {
      */
     public EventSource close() {
         clientHandler.close();
+        client.unregister(this);
         return this;
     }
 
+    /**
+     * @return bytes of event stream content received over all connections of this EventSource, counted after
+     *         decompression
+     */
+    public long getBytesReceived() {
+        return clientHandler.getBytesReceived();
+    }
+
+    /**
+     * @return events parsed over all connections of this EventSource
+     */
+    public long getEventsReceived() {
+        return clientHandler.getEventsReceived();
+    }
+
     /**
      * Wait until the connection is closed
      *
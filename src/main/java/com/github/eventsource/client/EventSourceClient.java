@@ -1,42 +1,149 @@
 package com.github.eventsource.client;
 
-import com.github.eventsource.client.impl.netty.EventSourceAggregator;
+import com.github.eventsource.client.checkpoint.CheckpointStore;
+import com.github.eventsource.client.impl.DnsResolver;
+import com.github.eventsource.client.impl.EventStreamConnection;
+import com.github.eventsource.client.impl.ReconnectBackoff;
+import com.github.eventsource.client.impl.ReconnectScheduler;
+import com.github.eventsource.client.impl.SerialExecutor;
+import com.github.eventsource.client.impl.SslEngineFactory;
+import com.github.eventsource.client.impl.VirtualThreads;
+import com.github.eventsource.client.impl.netty.EventSourceChannelHandler;
+import com.github.eventsource.client.impl.netty.EventStreamLineDecoder;
+import com.github.eventsource.client.impl.netty4.Netty4Transport;
+import com.github.eventsource.client.metrics.EventSourceMetrics;
+import com.github.eventsource.client.reconnect.ReconnectPolicy;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import org.jboss.netty.bootstrap.ClientBootstrap;
 import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelEvent;
 import org.jboss.netty.channel.ChannelFuture;
-import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineException;
 import org.jboss.netty.channel.ChannelPipelineFactory;
-import org.jboss.netty.channel.ChannelState;
-import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.ChannelUpstreamHandler;
 import org.jboss.netty.channel.Channels;
-import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
 import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
 import org.jboss.netty.handler.codec.http.HttpRequestEncoder;
 import org.jboss.netty.handler.codec.http.HttpResponseDecoder;
-import org.jboss.netty.handler.codec.string.StringDecoder;
+import org.jboss.netty.handler.ssl.SslHandler;
 
+/**
+ * Owns the NIO threads and the event executor that {@link EventSource}s run on. A single client can serve any
+ * number of streams: every connection is registered with one of a fixed set of worker threads, and streams cost
+ * no threads of their own.
+ *
+ * A client lives until {@link #shutdown()} is called, which closes every connection it still has open and
+ * releases its threads. EventSources created without an explicit client share the client returned by
+ * {@link #shared()}.
+ *
+ * The transport is chosen when the client is created, see {@link Transport}. Handlers of all streams share the
+ * event executor, unless the client was created by {@link #withVirtualThreads(int, Transport)}. A multi-threaded
+ * event executor has to be passed to {@link #withOrderedDispatch(Executor, int, Transport)} to keep the events of
+ * every stream in order.
+ */
 public class EventSourceClient {
+  /**
+   * The Netty generation connections are made with.
+   */
+  public enum Transport {
+    /** Netty 3 with NIO and heap buffers. */
+    NETTY3,
+    /** Netty 4 with pooled direct buffers, on native epoll where available and NIO elsewhere. */
+    NETTY4,
+    /**
+     * Netty 4 with HTTP/2: streams to the same host and port share a connection, each as an h2 stream with a
+     * flow-control window of its own. http URIs are connected to with h2c prior knowledge, https ones negotiate
+     * h2 with ALPN. The server has to speak HTTP/2.
+     */
+    HTTP2
+  }
+
+  private static EventSourceClient shared;
+
+  private final Transport transport;
   private final ClientBootstrap bootstrap;
+  private final Netty4Transport netty4;
   private final Executor eventExecutor;
-
-  private final HashMap<Channel, ChannelUpstreamHandler> handlerMap = new HashMap<Channel, ChannelUpstreamHandler>();
+  private final boolean ownsEventExecutor;
+  private final boolean executorPerStream;
+  private final ChannelGroup channels = new DefaultChannelGroup("eventsource-client");
+  private final Set<EventSource> eventSources =
+      Collections.newSetFromMap(new ConcurrentHashMap<EventSource, Boolean>());
+  private volatile boolean shutdown;
+  private volatile EventSourceMetrics metrics = EventSourceMetrics.NOOP;
+  private volatile ReconnectPolicy reconnectPolicy;
+  private volatile CheckpointStore checkpointStore;
+  private final ReconnectScheduler reconnectScheduler = new ReconnectScheduler();
+  private final SslEngineFactory sslEngineFactory = new SslEngineFactory();
+  private final DnsResolver dnsResolver = new DnsResolver();
 
   public EventSourceClient() {
-    this(Executors.newSingleThreadExecutor());
+    this(Executors.newSingleThreadExecutor(), Runtime.getRuntime().availableProcessors() * 2, true);
   }
 
   public EventSourceClient(Executor eventExecutor) {
+    this(eventExecutor, Runtime.getRuntime().availableProcessors() * 2);
+  }
+
+  /**
+   * @param eventExecutor executor that runs the callbacks of every {@link EventSourceHandler} on this client
+   * @param workerCount   number of NIO worker threads the connections are spread across
+   */
+  public EventSourceClient(Executor eventExecutor, int workerCount) {
+    this(eventExecutor, workerCount, Transport.NETTY3);
+  }
+
+  /**
+   * @param eventExecutor executor that runs the callbacks of every {@link EventSourceHandler} on this client
+   * @param workerCount   number of I/O threads the connections are spread across
+   * @param transport     what the connections are made with
+   */
+  public EventSourceClient(Executor eventExecutor, int workerCount, Transport transport) {
+    this(eventExecutor, workerCount, transport, false);
+  }
+
+  private EventSourceClient(Executor eventExecutor, int workerCount, boolean ownsEventExecutor) {
+    this(eventExecutor, workerCount, Transport.NETTY3, ownsEventExecutor);
+  }
+
+  private EventSourceClient(Executor eventExecutor, int workerCount, Transport transport, boolean ownsEventExecutor) {
+    this(eventExecutor, workerCount, transport, ownsEventExecutor, false);
+  }
+
+  private EventSourceClient(Executor eventExecutor,
+                            int workerCount,
+                            Transport transport,
+                            boolean ownsEventExecutor,
+                            boolean executorPerStream) {
     this.eventExecutor = eventExecutor;
+    this.ownsEventExecutor = ownsEventExecutor;
+    this.executorPerStream = executorPerStream;
+    this.transport = transport;
+    if (transport != Transport.NETTY3) {
+      netty4 = new Netty4Transport(workerCount, reconnectScheduler, sslEngineFactory, dnsResolver,
+                                  transport == Transport.HTTP2);
+      bootstrap = null;
+      return;
+    }
+    netty4 = null;
     bootstrap =
         new ClientBootstrap(new NioClientSocketChannelFactory(Executors.newSingleThreadExecutor(),
-                                                              Executors.newCachedThreadPool()));
+                                                              Executors.newCachedThreadPool(),
+                                                              workerCount));
+    // handshakes are a series of small writes that must not wait for delayed ACKs
+    bootstrap.setOption("tcpNoDelay", true);
 
     bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
       @Override
@@ -44,60 +151,293 @@ public class EventSourceClient {
         ChannelPipeline pipeline = Channels.pipeline();
 
         pipeline.addLast("decoder", new HttpResponseDecoder());
-        pipeline.addLast("aggregator", new EventSourceAggregator(32 * 1024));
-        pipeline.addLast("string", new StringDecoder());
+        pipeline.addLast("lines", new EventStreamLineDecoder(32 * 1024, metrics));
         pipeline.addLast("encoder", new HttpRequestEncoder());
-        pipeline.addLast("es-handler", new Handler());
 
         return pipeline;
       }
     });
   }
 
+  /**
+   * Creates a client whose streams each run their handler on a virtual thread of their own, so handlers may block
+   * - on a database, an HTTP call - without holding up any other stream. Events of a stream are still handled one
+   * at a time and in order, through a mailbox per stream. A stream holds no thread while its mailbox is empty.
+   *
+   * Virtual threads need Java 21. On older JVMs every stream gets a platform thread from a cached pool instead,
+   * which keeps the same behaviour at a much higher cost per blocked stream.
+   *
+   * @param workerCount number of I/O threads the connections are spread across
+   * @param transport   what the connections are made with
+   * @see VirtualThreads#isAvailable()
+   */
+  public static EventSourceClient withVirtualThreads(int workerCount, Transport transport) {
+    return new EventSourceClient(VirtualThreads.newThreadPerTaskExecutor(), workerCount, transport, true, true);
+  }
+
+  /**
+   * Creates a client whose streams share a pool of threads without giving up ordering: every stream hands its
+   * events to a mailbox of its own, which runs them on the pool one at a time and in order. Streams are spread
+   * across all threads of the pool, and a handler that blocks holds up its own stream only. With the client's
+   * plain constructors a pool would run the events of a stream concurrently and out of order.
+   *
+   * @param pool        runs the handlers of every stream; it is not shut down with the client
+   * @param workerCount number of I/O threads the connections are spread across
+   * @param transport   what the connections are made with
+   * @see #withWorkStealingPool(int, Transport)
+   */
+  public static EventSourceClient withOrderedDispatch(Executor pool, int workerCount, Transport transport) {
+    return new EventSourceClient(pool, workerCount, transport, false, true);
+  }
+
+  /**
+   * {@link #withOrderedDispatch(Executor, int, Transport) Ordered dispatch} on a work-stealing pool with a thread
+   * per available processor, owned by the client. Busy streams whose mailbox has run its share of events go to the
+   * back of their thread's queue, from where idle threads take them over.
+   *
+   * @param workerCount number of I/O threads the connections are spread across
+   * @param transport   what the connections are made with
+   */
+  public static EventSourceClient withWorkStealingPool(int workerCount, Transport transport) {
+    ExecutorService pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                                            ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    return new EventSourceClient(pool, workerCount, transport, true, true);
+  }
+
+  /**
+   * @return the executor the handler of a new stream runs on, the event executor unless every stream has a
+   *         mailbox of its own
+   */
+  Executor newStreamExecutor() {
+    return executorPerStream ? new SerialExecutor(eventExecutor) : eventExecutor;
+  }
+
+  EventStreamConnection newConnection(EventSourceHandler eventSourceHandler, ReconnectBackoff backoff, URI uri) {
+    if (netty4 != null) {
+      return netty4.newConnection(eventSourceHandler, backoff, uri);
+    }
+    return new EventSourceChannelHandler(eventSourceHandler, backoff, this, uri);
+  }
+
+  /**
+   * Opens a new connection whose pipeline ends with the given handler. Every channel gets its own pipeline,
+   * so events reach their handler directly without any shared lookup on the I/O threads. Only available on
+   * the {@link Transport#NETTY3} transport.
+   */
   public ChannelFuture connect(InetSocketAddress address, ChannelUpstreamHandler handler) {
-    synchronized (handlerMap) {
-      ChannelFuture channelFuture = bootstrap.connect(address);
-      handlerMap.put(channelFuture.getChannel(), handler);
-      return channelFuture;
+    return connect(address, null, handler);
+  }
+
+  /**
+   * Opens a new connection whose pipeline ends with the given handler.
+   *
+   * @param sslEngine engine to encrypt the connection with, null for a plain one
+   * @see #connect(InetSocketAddress, ChannelUpstreamHandler)
+   */
+  public ChannelFuture connect(InetSocketAddress address, SSLEngine sslEngine, ChannelUpstreamHandler handler) {
+    if (bootstrap == null) {
+      throw new IllegalStateException("Not a Netty 3 client: " + transport);
     }
+    ChannelPipeline pipeline;
+    try {
+      pipeline = bootstrap.getPipelineFactory().getPipeline();
+    } catch (Exception e) {
+      throw new ChannelPipelineException("Failed to initialize a pipeline.", e);
+    }
+    if (sslEngine != null) {
+      pipeline.addFirst("ssl", new SslHandler(sslEngine));
+    }
+    pipeline.addLast("es-handler", handler);
+
+    Channel channel = bootstrap.getFactory().newChannel(pipeline);
+    channels.add(channel);
+    channel.getConfig().setOptions(bootstrap.getOptions());
+    return channel.connect(address);
   }
 
-  private class Handler extends SimpleChannelUpstreamHandler {
-    @Override
-    public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
-      final ChannelUpstreamHandler handler;
-      synchronized (handlerMap) {
-        handler = handlerMap.get(ctx.getChannel());
-      }
-      if (handler == null) {
-        super.handleUpstream(ctx, e);
-
-        if (e instanceof ChannelStateEvent && ((ChannelStateEvent) e).getState() == ChannelState.OPEN) {
-          return; // Do nothing, this one will not be dispatched to handler, but it's ok
-        }
-
-        System.err.println("Something wrong with dispatching");
-      } else {
-        handler.handleUpstream(ctx, e);
-
-        if (e instanceof ChannelStateEvent) {
-          ChannelStateEvent stateEvent = (ChannelStateEvent) e;
-          if (stateEvent.getState() == ChannelState.BOUND && stateEvent.getValue() == null) {
-            synchronized (handlerMap) {
-              handlerMap.remove(ctx.getChannel());
-            }
-          }
-        }
-      }
+  /**
+   * Returns the client shared by EventSources that were created without one. It is created on first use with
+   * one NIO worker thread per available processor and a single thread for running handlers. Once it has been
+   * shut down, the next call creates a new one.
+   */
+  public static synchronized EventSourceClient shared() {
+    if (shared == null || shared.shutdown) {
+      shared = new EventSourceClient(Executors.newSingleThreadExecutor(),
+                                     Runtime.getRuntime().availableProcessors(),
+                                     true);
+    }
+    return shared;
+  }
+
+  void register(EventSource eventSource) {
+    eventSources.add(eventSource);
+  }
+
+  void unregister(EventSource eventSource) {
+    eventSources.remove(eventSource);
+  }
+
+  /**
+   * @return number of EventSources created on this client and not closed yet
+   */
+  public int getEventSourceCount() {
+    return eventSources.size();
+  }
+
+  /**
+   * @return number of connections currently open, streams waiting to reconnect have none; on
+   *         {@link Transport#HTTP2} the connections the streams share
+   */
+  public int getOpenChannelCount() {
+    return netty4 != null ? netty4.getOpenChannelCount() : channels.size();
+  }
+
+  public Transport getTransport() {
+    return transport;
+  }
+
+  /**
+   * Reports what the connections, parsers and handlers of this client are doing. Only applies to EventSources
+   * created after the call, so set it right after creating the client.
+   *
+   * @param metrics where measurements go, {@link EventSourceMetrics#NOOP} by default
+   * @return self
+   */
+  public EventSourceClient setMetrics(EventSourceMetrics metrics) {
+    if (metrics == null) {
+      throw new NullPointerException("metrics");
+    }
+    this.metrics = metrics;
+    if (netty4 != null) {
+      netty4.setMetrics(metrics);
     }
+    return this;
+  }
+
+  public EventSourceMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Sets the reconnect policy of EventSources created after the call. Without one, which is the default, an
+   * EventSource waits its reconnection time, or the retry time sent by the server.
+   *
+   * @return self
+   * @see EventSource#setReconnectPolicy(ReconnectPolicy)
+   */
+  public EventSourceClient setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+    this.reconnectPolicy = reconnectPolicy;
+    return this;
+  }
+
+  public ReconnectPolicy getReconnectPolicy() {
+    return reconnectPolicy;
+  }
+
+  /**
+   * Keeps the last event ID of every stream across restarts. EventSources created after the call pick up where
+   * the previous run left off: their first connect sends the stored ID as Last-Event-ID. Messages are
+   * checkpointed once their handler has returned. The store is not closed by {@link #shutdown()}.
+   *
+   * @param checkpointStore null for none, which is the default
+   * @return self
+   * @see com.github.eventsource.client.checkpoint.MappedFileCheckpointStore
+   */
+  public EventSourceClient setCheckpointStore(CheckpointStore checkpointStore) {
+    this.checkpointStore = checkpointStore;
+    return this;
+  }
 
+  public CheckpointStore getCheckpointStore() {
+    return checkpointStore;
+  }
+
+  /**
+   * Limits how many reconnects of this client's streams may be connecting at the same time, so that a server
+   * coming back up is not hit by every stream at once. Attempts over the limit wait for a free slot.
+   *
+   * @param maxConcurrentReconnects {@value ReconnectScheduler#DEFAULT_MAX_IN_FLIGHT} by default
+   * @return self
+   */
+  public EventSourceClient setMaxConcurrentReconnects(int maxConcurrentReconnects) {
+    reconnectScheduler.setMaxInFlight(maxConcurrentReconnects);
+    return this;
+  }
+
+  public ReconnectScheduler getReconnectScheduler() {
+    return reconnectScheduler;
+  }
+
+  /**
+   * Sets the context https streams are encrypted with, for instance to trust a private certificate authority.
+   * Applies to connections made after the call.
+   *
+   * @param sslContext null for the JVM's default context, which is also the default
+   * @return self
+   */
+  public EventSourceClient setSslContext(SSLContext sslContext) {
+    sslEngineFactory.setSslContext(sslContext);
+    return this;
+  }
+
+  public SSLContext getSslContext() {
+    return sslEngineFactory.getSslContext();
+  }
+
+  /**
+   * Whether https streams resume the TLS session of their previous connection when they reconnect, which saves
+   * the server a full handshake. Sessions are cached by the {@link SSLContext}, per host and port.
+   *
+   * @param sessionResumption true by default
+   * @return self
+   */
+  public EventSourceClient setTlsSessionResumption(boolean sessionResumption) {
+    sslEngineFactory.setSessionResumption(sessionResumption);
+    return this;
+  }
+
+  public SslEngineFactory getSslEngineFactory() {
+    return sslEngineFactory;
+  }
+
+  /**
+   * Sets how long the addresses streams connect to are cached per host, shared by every stream of this client.
+   * Hosts are resolved off the connecting threads, and streams go on using the addresses they have while a host
+   * is looked up again, so a reconnect never waits for DNS once its host has been resolved. A host that failed to
+   * resolve fails for the negative TTL without being looked up again. Both default to the JVM's DNS cache TTLs.
+   *
+   * @return self
+   * @see DnsResolver
+   */
+  public EventSourceClient setDnsTtl(long ttlMillis, long negativeTtlMillis) {
+    dnsResolver.setTtl(ttlMillis, negativeTtlMillis);
+    return this;
+  }
+
+  public DnsResolver getDnsResolver() {
+    return dnsResolver;
   }
 
   public Executor getEventExecutor() {
     return eventExecutor;
   }
 
+  /**
+   * Closes every open connection and releases the NIO threads, as well as the event executor if the client
+   * created it. Must not be called from an event handler or an I/O thread.
+   */
   public void shutdown() {
-    bootstrap.releaseExternalResources();
+    shutdown = true;
+    reconnectScheduler.stop();
+    dnsResolver.shutdown();
+    if (netty4 != null) {
+      netty4.shutdown();
+    } else {
+      channels.close().awaitUninterruptibly();
+      bootstrap.releaseExternalResources();
+    }
+    if (ownsEventExecutor) {
+      ((ExecutorService) eventExecutor).shutdown();
+    }
   }
 }
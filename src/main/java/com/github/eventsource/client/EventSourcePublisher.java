@@ -0,0 +1,202 @@
+package com.github.eventsource.client;
+
+import com.github.eventsource.client.impl.FlowControl;
+import com.github.eventsource.client.metrics.EventSourceMetrics;
+import java.net.URI;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An event stream as a {@link Flow.Publisher} of its messages. Demand drives the connection: it is read from only
+ * while the subscriber has requested more messages than are buffered, and reading is suspended as soon as it
+ * hasn't, so TCP flow control holds back the server rather than messages piling up in between. What is buffered is
+ * at most what one read brought in past the demand. Cancelling the subscription closes the connection.
+ *
+ * A publisher has a single subscriber; later ones are rejected with an {@link IllegalStateException}. The stream
+ * reconnects like any {@link EventSource}, so the subscription never completes and connection errors are not
+ * signalled to the subscriber; it ends when it is cancelled. The EventSource is connected on subscription and can
+ * be configured before that through {@link #getEventSource()}.
+ */
+public class EventSourcePublisher implements Flow.Publisher<MessageEvent> {
+    private final EventSource eventSource;
+    private final FlowControl flowControl;
+    private final EventSourceMetrics metrics;
+    private final EventSourceSubscription subscription = new EventSourceSubscription();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * @param reconnectionTimeMillis delay before a reconnect is made - in the event of a lost connection
+     */
+    public EventSourcePublisher(EventSourceClient client, long reconnectionTimeMillis, URI uri) {
+        eventSource = new EventSource(client, reconnectionTimeMillis, uri, subscription);
+        // alongside any watermarks, which suspend reads of their own
+        flowControl = eventSource.newFlowControl();
+        metrics = client.getMetrics();
+    }
+
+    public EventSource getEventSource() {
+        return eventSource;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super MessageEvent> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("An EventSourcePublisher has a single subscriber"));
+            return;
+        }
+        subscription.start(subscriber);
+    }
+
+    /**
+     * Receives the messages of the EventSource, on its event executor, and passes them on as they are requested.
+     * Signals to the subscriber are serialized by a drain that runs on whichever thread finds it idle.
+     */
+    private final class EventSourceSubscription implements Flow.Subscription, EventSourceHandler {
+        private final Queue<MessageEvent> buffer = new ConcurrentLinkedQueue<MessageEvent>();
+        private final AtomicInteger buffered = new AtomicInteger();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger drains = new AtomicInteger();
+        private volatile Flow.Subscriber<? super MessageEvent> subscriber;
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+        private boolean reading = true;
+
+        void start(Flow.Subscriber<? super MessageEvent> subscriber) {
+            this.subscriber = subscriber;
+            // nothing is read until something is requested
+            updateReads();
+            subscriber.onSubscribe(this);
+            if (!cancelled) {
+                eventSource.connect();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Non-positive request: " + n + " (Reactive Streams rule 3.9)");
+            } else {
+                long current;
+                long next;
+                do {
+                    current = requested.get();
+                    if (current == Long.MAX_VALUE) {
+                        break;
+                    }
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!requested.compareAndSet(current, next));
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                eventSource.close();
+                drain();
+            }
+        }
+
+        @Override
+        public void onConnect() {
+        }
+
+        @Override
+        public void onMessage(String event, MessageEvent message) {
+            if (cancelled) {
+                return;
+            }
+            buffer.add(message);
+            buffered.incrementAndGet();
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            // the EventSource reconnects, the subscription carries on
+        }
+
+        private void drain() {
+            if (drains.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                Flow.Subscriber<? super MessageEvent> current = subscriber;
+                if (current != null && !cancelled) {
+                    deliver(current);
+                }
+                if (cancelled) {
+                    buffer.clear();
+                    buffered.set(0);
+                    subscriber = null;
+                } else {
+                    updateReads();
+                }
+                missed = drains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver(Flow.Subscriber<? super MessageEvent> current) {
+            Throwable failure = error;
+            if (failure != null) {
+                cancelled = true;
+                eventSource.close();
+                current.onError(failure);
+                return;
+            }
+            long demand = requested.get();
+            long emitted = 0;
+            MessageEvent message;
+            while (emitted != demand && !cancelled && (message = buffer.poll()) != null) {
+                buffered.decrementAndGet();
+                try {
+                    current.onNext(message);
+                } catch (RuntimeException e) {
+                    // a subscriber that throws breaks rule 2.13, it gets nothing more and the failure is counted
+                    // like any other handler's
+                    cancelled = true;
+                    eventSource.close();
+                    metrics.dispatchFailed(e);
+                    return;
+                }
+                emitted++;
+            }
+            if (emitted != 0 && demand != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+        }
+
+        /**
+         * Reads while more is requested than is buffered. Only called by the drain, or before it can run.
+         */
+        private void updateReads() {
+            boolean read = requested.get() > buffered.get();
+            if (read != reading) {
+                reading = read;
+                if (read) {
+                    flowControl.resumeReads();
+                } else {
+                    flowControl.suspendReads();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.eventsource.client;
+
+/**
+ * An {@link EventSourceHandler} that takes messages with their data still undecoded. When an {@link EventSource}
+ * is created with a handler implementing this interface, every message is passed to
+ * {@link #onRawMessage(String, RawMessageEvent)} instead of {@link #onMessage(String, MessageEvent)}, and its data
+ * is only decoded if the handler asks for it. Handlers implementing {@link BatchEventSourceHandler} as well get
+ * batches of decoded messages.
+ */
+public interface RawEventSourceHandler extends EventSourceHandler {
+  /**
+   * @param message only valid until this method returns, see {@link RawMessageEvent}
+   */
+  void onRawMessage(String event, RawMessageEvent message) throws Exception;
+}
@@ -0,0 +1,112 @@
+package com.github.eventsource.client;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A message whose data is kept as the UTF-8 bytes it was received as, for handlers that pass the data on as it is
+ * or only look at some of the messages. The data is decoded to a String on the first call of {@link #data()}.
+ *
+ * The bytes are lent to the handler: once {@link RawEventSourceHandler#onRawMessage} returns, the message is
+ * released and its buffer is reused for a later message of the stream. From then on {@link #dataBuffer()} throws
+ * {@link IllegalStateException}, and so does {@link #data()} unless it had been called before. To keep the data,
+ * call {@link #data()} or {@link #toMessageEvent()}, or copy the buffer, before returning.
+ */
+public class RawMessageEvent {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public final String lastEventId;
+    public final String origin;
+    private final int length;
+    private final Recycler recycler;
+    private byte[] bytes;
+    private String data;
+
+    public RawMessageEvent(byte[] bytes, int length, String lastEventId, String origin) {
+        this(bytes, length, lastEventId, origin, null);
+    }
+
+    /**
+     * @param bytes    the data is its first <code>length</code> bytes
+     * @param recycler gets the array back when the message is released, may be null
+     */
+    public RawMessageEvent(byte[] bytes, int length, String lastEventId, String origin, Recycler recycler) {
+        this.bytes = bytes;
+        this.length = length;
+        this.lastEventId = lastEventId;
+        this.origin = origin;
+        this.recycler = recycler;
+    }
+
+    /**
+     * @return a read-only view of the UTF-8 encoded data, positioned at its start
+     * @throws IllegalStateException if the message has been released
+     */
+    public ByteBuffer dataBuffer() {
+        return ByteBuffer.wrap(bytes(), 0, length).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return length of the data in bytes
+     */
+    public int dataLength() {
+        return length;
+    }
+
+    /**
+     * @return the data, decoded on the first call
+     * @throws IllegalStateException if the message has been released before the data was decoded
+     */
+    public String data() {
+        if (data == null) {
+            data = new String(bytes(), 0, length, UTF_8);
+        }
+        return data;
+    }
+
+    /**
+     * @return an ordinary message with the decoded data, which stays valid after this one has been released
+     */
+    public MessageEvent toMessageEvent() {
+        return new MessageEvent(data(), lastEventId, origin);
+    }
+
+    /**
+     * Hands the buffer back for reuse. Called once the handler has returned; releasing again has no effect.
+     */
+    public void release() {
+        byte[] released = bytes;
+        bytes = null;
+        if (released != null && recycler != null) {
+            recycler.recycle(released);
+        }
+    }
+
+    public boolean isReleased() {
+        return bytes == null;
+    }
+
+    private byte[] bytes() {
+        byte[] current = bytes;
+        if (current == null) {
+            throw new IllegalStateException("Message has been released");
+        }
+        return current;
+    }
+
+    @Override
+    public String toString() {
+        return "RawMessageEvent{" +
+                "dataLength=" + length +
+                ", lastEventId='" + lastEventId + '\'' +
+                ", origin='" + origin + '\'' +
+                '}';
+    }
+
+    /**
+     * Takes the buffers of released messages.
+     */
+    public interface Recycler {
+        void recycle(byte[] bytes);
+    }
+}
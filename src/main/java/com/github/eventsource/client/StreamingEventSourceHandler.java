@@ -0,0 +1,27 @@
+package com.github.eventsource.client;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link EventSourceHandler} that takes events larger than the maximum event size of its {@link EventSource}
+ * in pieces, instead of having them skipped. Smaller events still go to {@link #onMessage(String, MessageEvent)}.
+ * A large event is never held in memory as a whole, so its size doesn't matter.
+ *
+ * The pieces are the UTF-8 bytes of the data as received, lines separated by LF; a piece may end in the middle
+ * of a character. If the connection is lost before the end of the event, {@link #onError(Throwable)} is called
+ * and {@link #onMessageEnd(String, String)} never is.
+ */
+public interface StreamingEventSourceHandler extends EventSourceHandler {
+  /**
+   * @param event       name of the event, unless its <code>event:</code> field comes after the data
+   * @param lastEventId ID of the event, unless its <code>id:</code> field comes after the data
+   */
+  void onMessageStart(String event, String lastEventId) throws Exception;
+
+  /**
+   * @param data the next piece of the data, read-only
+   */
+  void onMessageData(ByteBuffer data) throws Exception;
+
+  void onMessageEnd(String event, String lastEventId) throws Exception;
+}
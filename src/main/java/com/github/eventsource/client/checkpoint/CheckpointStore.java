@@ -0,0 +1,29 @@
+package com.github.eventsource.client.checkpoint;
+
+import java.io.IOException;
+
+/**
+ * Remembers the last event ID that was handled on each stream, so that a stream opened again after a restart
+ * resumes where it stopped instead of starting over or missing events. Streams are identified by their URI.
+ *
+ * {@link #acknowledge(String, String)} is called from event executor threads after every handled message, so
+ * implementations should record the ID in memory and persist it in batches.
+ *
+ * @see MappedFileCheckpointStore
+ */
+public interface CheckpointStore {
+    /**
+     * @return the last acknowledged event ID of the stream, null if there is none
+     */
+    String load(String stream);
+
+    /**
+     * Records that every event of the stream up to and including the one with the given ID has been handled.
+     */
+    void acknowledge(String stream, String lastEventId);
+
+    /**
+     * Persists every acknowledged ID and returns once they are durable.
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,268 @@
+package com.github.eventsource.client.checkpoint;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link CheckpointStore} in a memory-mapped file. Acknowledged IDs only go into a map; a background thread
+ * writes the whole map to the file and forces it to disk once per flush interval, if anything has changed. However
+ * many events are acknowledged in between, they cost a single sync - at the price of replaying up to one interval
+ * of events after a crash.
+ *
+ * The file holds two slots that are written in turn, each with a sequence number and a checksum. A write torn by
+ * a crash leaves the other slot intact, and loading picks the newest slot whose checksum matches.
+ */
+public class MappedFileCheckpointStore implements CheckpointStore, Closeable {
+    public static final int DEFAULT_SLOT_SIZE = 1024 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x45534350;
+    private static final int FILE_HEADER_SIZE = 8;
+    // sequence, payload length, payload checksum
+    private static final int SLOT_HEADER_SIZE = 16;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer buffer;
+    private final int slotSize;
+    private final Map<String, String> checkpoints = new ConcurrentHashMap<String, String>();
+    private final AtomicLong version = new AtomicLong();
+    private final ScheduledExecutorService flusher;
+    private long flushedVersion;
+    private long sequence;
+    private volatile long flushCount;
+
+    public MappedFileCheckpointStore(File file) throws IOException {
+        this(file, DEFAULT_SLOT_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens the store, loading the checkpoints the file has.
+     *
+     * @param file                created if it doesn't exist
+     * @param slotSize            bytes available for all checkpoints, ignored if the file exists
+     * @param flushIntervalMillis how often acknowledged IDs are written and synced
+     */
+    public MappedFileCheckpointStore(File file, int slotSize, long flushIntervalMillis) throws IOException {
+        if (slotSize <= SLOT_HEADER_SIZE) {
+            throw new IllegalArgumentException("slotSize must be greater than " + SLOT_HEADER_SIZE + ": " + slotSize);
+        }
+        if (flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("flushIntervalMillis must be positive: " + flushIntervalMillis);
+        }
+        this.file = file;
+        raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() >= FILE_HEADER_SIZE) {
+                if (raf.readInt() != MAGIC) {
+                    throw new IOException("Not a checkpoint file: " + file);
+                }
+                slotSize = raf.readInt();
+            } else {
+                raf.setLength(0);
+                raf.writeInt(MAGIC);
+                raf.writeInt(slotSize);
+            }
+            this.slotSize = slotSize;
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER_SIZE + 2L * slotSize);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        load();
+
+        flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "checkpoint-flusher " + MappedFileCheckpointStore.this.file);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void load() {
+        long newest = -1;
+        Map<String, String> loaded = null;
+        for (int slot = 0; slot < 2; slot++) {
+            int offset = slotOffset(slot);
+            long slotSequence = buffer.getLong(offset);
+            if (slotSequence <= newest) {
+                continue;
+            }
+            Map<String, String> contents = read(offset);
+            if (contents != null) {
+                newest = slotSequence;
+                loaded = contents;
+            }
+        }
+        if (loaded != null) {
+            checkpoints.putAll(loaded);
+            sequence = newest;
+        }
+    }
+
+    /**
+     * @return the slot's checkpoints, null if it is empty or damaged
+     */
+    private Map<String, String> read(int offset) {
+        int length = buffer.getInt(offset + 8);
+        int checksum = buffer.getInt(offset + 12);
+        if (length <= 0 || length > slotSize - SLOT_HEADER_SIZE) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        ByteBuffer slot = buffer.duplicate();
+        slot.position(offset + SLOT_HEADER_SIZE);
+        slot.get(payload);
+        if (checksum != checksum(payload, length)) {
+            return null;
+        }
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        try {
+            int count = in.getInt();
+            Map<String, String> contents = new ConcurrentHashMap<String, String>();
+            for (int i = 0; i < count; i++) {
+                contents.put(readString(in), readString(in));
+            }
+            return contents;
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String load(String stream) {
+        return checkpoints.get(stream);
+    }
+
+    @Override
+    public void acknowledge(String stream, String lastEventId) {
+        checkpoints.put(stream, lastEventId);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Writes the checkpoints to the older slot and syncs the file, unless nothing was acknowledged since the last
+     * flush.
+     *
+     * @throws IOException if the checkpoints don't fit into a slot any more
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        long current = version.get();
+        if (current == flushedVersion) {
+            return;
+        }
+        byte[] payload = serialize();
+        if (payload.length > slotSize - SLOT_HEADER_SIZE) {
+            throw new IOException("Checkpoints take " + payload.length + " bytes, more than the "
+                    + (slotSize - SLOT_HEADER_SIZE) + " available in " + file);
+        }
+        long nextSequence = sequence + 1;
+        int offset = slotOffset((int) (nextSequence % 2));
+        ByteBuffer slot = buffer.duplicate();
+        slot.position(offset + SLOT_HEADER_SIZE);
+        slot.put(payload);
+        buffer.putInt(offset + 8, payload.length);
+        buffer.putInt(offset + 12, checksum(payload, payload.length));
+        buffer.putLong(offset, nextSequence);
+        // a write torn by a crash fails the checksum, the other slot still has the previous checkpoints
+        buffer.force();
+        sequence = nextSequence;
+        flushedVersion = current;
+        flushCount++;
+    }
+
+    /**
+     * @return number of times the file was synced
+     */
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     * Stops the background flushes and writes what is left.
+     */
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } finally {
+            raf.close();
+        }
+    }
+
+    private byte[] serialize() {
+        List<byte[]> fields = new ArrayList<byte[]>();
+        int length = 4;
+        for (Map.Entry<String, String> checkpoint : checkpoints.entrySet()) {
+            byte[] stream = checkpoint.getKey().getBytes(UTF_8);
+            byte[] lastEventId = checkpoint.getValue().getBytes(UTF_8);
+            fields.add(stream);
+            fields.add(lastEventId);
+            length += 8 + stream.length + lastEventId.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(length);
+        out.putInt(fields.size() / 2);
+        for (byte[] field : fields) {
+            out.putInt(field.length);
+            out.put(field);
+        }
+        return out.array();
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(in.array(), in.position(), length, UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private int slotOffset(int slot) {
+        return FILE_HEADER_SIZE + slot * slotSize;
+    }
+
+    private static int checksum(byte[] payload, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, length);
+        return (int) crc.getValue();
+    }
+}
@@ -1,16 +1,95 @@
 package com.github.eventsource.client.impl;
 
+import com.github.eventsource.client.EventListener;
 import com.github.eventsource.client.EventSourceHandler;
 import com.github.eventsource.client.MessageEvent;
+import com.github.eventsource.client.RawMessageEvent;
+import com.github.eventsource.client.StreamingEventSourceHandler;
+import com.github.eventsource.client.checkpoint.CheckpointStore;
+import com.github.eventsource.client.journal.EventJournal;
+import com.github.eventsource.client.metrics.EventSourceMetrics;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AsyncEventSourceHandler implements EventSourceHandler {
+    private static final long DROPPED_ERROR_REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final AtomicLong droppedErrors = new AtomicLong();
+    private static final AtomicLong nextDroppedErrorReport = new AtomicLong(System.nanoTime());
+
     private final Executor executor;
     private final EventSourceHandler eventSourceHandler;
+    private final EventSourceMetrics metrics;
+    private final boolean timed;
+    private final EventTypeTable eventTypes = new EventTypeTable();
+    private volatile PendingEventLimiter pendingEventLimiter;
+    private volatile CheckpointStore checkpointStore;
+    private volatile String checkpointStream;
+    private volatile EventJournal journal;
 
     public AsyncEventSourceHandler(Executor executor, EventSourceHandler eventSourceHandler) {
+        this(executor, eventSourceHandler, EventSourceMetrics.NOOP);
+    }
+
+    /**
+     * @param metrics receives queue wait and handler time of every message, measured unless metrics are
+     *                {@link EventSourceMetrics#NOOP}
+     */
+    public AsyncEventSourceHandler(Executor executor, EventSourceHandler eventSourceHandler, EventSourceMetrics metrics) {
         this.executor = executor;
         this.eventSourceHandler = eventSourceHandler;
+        this.metrics = metrics;
+        this.timed = metrics != EventSourceMetrics.NOOP;
+    }
+
+    /**
+     * @param pendingEventLimiter counts messages from the moment they are submitted until their handler has
+     *                            returned, may be null
+     */
+    public void setPendingEventLimiter(PendingEventLimiter pendingEventLimiter) {
+        this.pendingEventLimiter = pendingEventLimiter;
+    }
+
+    /**
+     * @param checkpointStore is told the last event ID of every message its handler has returned from
+     * @param stream          what the checkpoints are stored under
+     */
+    public void setCheckpointStore(CheckpointStore checkpointStore, String stream) {
+        this.checkpointStream = stream;
+        this.checkpointStore = checkpointStore;
+    }
+
+    /**
+     * @param journal every message is appended to, as it is received and before it is handed to the executor,
+     *                may be null
+     */
+    public void setJournal(EventJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * @return what messages are dispatched on
+     */
+    protected Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @return the handler messages are dispatched to
+     */
+    protected EventSourceHandler getEventSourceHandler() {
+        return eventSourceHandler;
+    }
+
+    /**
+     * @return event types of the stream, with their listeners
+     */
+    public EventTypeTable getEventTypes() {
+        return eventTypes;
     }
 
     @Override
@@ -29,29 +108,261 @@ public class AsyncEventSourceHandler implements EventSourceHandler {
 
     @Override
     public void onMessage(final String event, final MessageEvent message) {
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    eventSourceHandler.onMessage(event, message);
-                } catch (Exception e) {
-                    onError(e);
+        journal(event, message);
+        final long enqueuedAt = enqueued();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long startedAt = now();
+                    try {
+                        eventSourceHandler.onMessage(event, message);
+                        acknowledge(message.lastEventId);
+                    } catch (Exception e) {
+                        onError(e);
+                    } finally {
+                        delivered(1);
+                        dispatched(1, enqueuedAt, startedAt);
+                    }
                 }
+            });
+        } catch (RuntimeException e) {
+            rejected(1);
+            throw e;
+        }
+    }
+
+    /**
+     * Reports messages the executor didn't take.
+     */
+    protected void rejected(int count) {
+        delivered(count);
+        metrics.eventsRejected(count);
+    }
+
+    /**
+     * Delivers a message to the listeners of its event type, one after the other, instead of to the handler.
+     */
+    public void onMessage(final EventTypeTable.EventType type, final MessageEvent message) {
+        journal(type.name, message);
+        final long enqueuedAt = enqueued();
+        try {
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    long startedAt = now();
+                    try {
+                        for (EventListener listener : type.getListeners()) {
+                            try {
+                                listener.onMessage(type.name, message);
+                            } catch (Exception e) {
+                                onError(e);
+                            }
+                        }
+                        acknowledge(message.lastEventId);
+                    } finally {
+                        delivered(1);
+                        dispatched(1, enqueuedAt, startedAt);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            rejected(1);
+            throw e;
+        }
+    }
+
+    /**
+     * @return whether events too large to be parsed whole are streamed to the handler rather than skipped
+     */
+    public boolean isStreaming() {
+        return eventSourceHandler instanceof StreamingEventSourceHandler;
+    }
+
+    /**
+     * Starts streaming an event to a {@link StreamingEventSourceHandler}. Every piece of a streamed event counts
+     * as a message for flow control and metrics. Streamed events are not journaled.
+     */
+    public void onMessageStart(final String event, final String lastEventId) {
+        stream(new StreamedPiece() {
+            @Override
+            void deliver(StreamingEventSourceHandler handler) throws Exception {
+                handler.onMessageStart(event, lastEventId);
+            }
+        });
+    }
+
+    /**
+     * Passes on a piece of a streamed event, copied since the parser reuses its buffers.
+     */
+    public void onMessageData(byte[] data, int offset, int length) {
+        final ByteBuffer piece = ByteBuffer.wrap(Arrays.copyOfRange(data, offset, offset + length)).asReadOnlyBuffer();
+        stream(new StreamedPiece() {
+            @Override
+            void deliver(StreamingEventSourceHandler handler) throws Exception {
+                handler.onMessageData(piece);
             }
         });
     }
+
+    public void onMessageEnd(final String event, final String lastEventId) {
+        stream(new StreamedPiece() {
+            @Override
+            void deliver(StreamingEventSourceHandler handler) throws Exception {
+                handler.onMessageEnd(event, lastEventId);
+                acknowledge(lastEventId);
+            }
+        });
+    }
+
+    private void stream(final StreamedPiece piece) {
+        final long enqueuedAt = enqueued();
+        try {
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    long startedAt = now();
+                    try {
+                        piece.deliver((StreamingEventSourceHandler) eventSourceHandler);
+                    } catch (Exception e) {
+                        onError(e);
+                    } finally {
+                        delivered(1);
+                        dispatched(1, enqueuedAt, startedAt);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            rejected(1);
+            throw e;
+        }
+    }
+
+    /**
+     * Submits the delivery of a message to listeners or of a piece of a streamed event. Subclasses that hold messages
+     * back override this to keep such deliveries in order with them.
+     */
+    protected void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    private abstract static class StreamedPiece {
+        abstract void deliver(StreamingEventSourceHandler handler) throws Exception;
+    }
+
+    /**
+     * @return when the message was enqueued, for {@link #dispatched(int, long, long)}
+     */
+    protected long enqueued() {
+        PendingEventLimiter limiter = pendingEventLimiter;
+        if (limiter != null) {
+            limiter.enqueued();
+        }
+        metrics.eventsEnqueued(1);
+        return now();
+    }
+
+    /**
+     * Reports messages that have been passed to the handler.
+     *
+     * @param enqueuedAt when the first of them was enqueued
+     * @param startedAt  when the handler was called
+     */
+    protected void dispatched(int count, long enqueuedAt, long startedAt) {
+        if (timed) {
+            metrics.eventsDispatched(count, startedAt - enqueuedAt, System.nanoTime() - startedAt);
+        } else {
+            metrics.eventsDispatched(count, 0, 0);
+        }
+    }
+
+    /**
+     * @return {@link System#nanoTime()} if timings are measured, 0 otherwise
+     */
+    protected long now() {
+        return timed ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Appends a message to the journal, if there is one. The message is dispatched even if that fails.
+     */
+    protected void journal(String event, MessageEvent message) {
+        EventJournal current = journal;
+        if (current != null) {
+            try {
+                current.append(event, message);
+            } catch (IOException e) {
+                onError(e);
+            }
+        }
+    }
+
+    /**
+     * Appends a message to the journal as it is, without decoding its data.
+     */
+    protected void journal(String event, RawMessageEvent message) {
+        EventJournal current = journal;
+        if (current != null) {
+            try {
+                current.append(event, message);
+            } catch (IOException e) {
+                onError(e);
+            }
+        }
+    }
+
+    /**
+     * Checkpoints a message that has been handled, along with every message before it.
+     *
+     * @param lastEventId of the message, nothing is stored if it is null
+     */
+    protected void acknowledge(String lastEventId) {
+        CheckpointStore store = checkpointStore;
+        if (store != null && lastEventId != null) {
+            store.acknowledge(checkpointStream, lastEventId);
+        }
+    }
+
+    protected void delivered(int count) {
+        PendingEventLimiter limiter = pendingEventLimiter;
+        if (limiter != null) {
+            limiter.delivered(count);
+        }
+    }
     
     @Override
     public void onError(final Throwable error) {
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    eventSourceHandler.onError(error);
-                } catch (Throwable e) {
-                    e.printStackTrace();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        eventSourceHandler.onError(error);
+                    } catch (Throwable e) {
+                        metrics.dispatchFailed(e);
+                        e.printStackTrace();
+                    }
                 }
-            }
-        });
+            });
+        } catch (RejectedExecutionException e) {
+            // a bounded executor is full, there is no thread left to report the error on
+            metrics.dispatchFailed(error);
+            reportDropped(error);
+        }
+    }
+
+    /**
+     * Counts an error that couldn't be reported to its handler. This happens for every message an overflowing
+     * executor rejects, so they are summed up in a single line at most every ten seconds, across all streams.
+     */
+    private static void reportDropped(Throwable error) {
+        long dropped = droppedErrors.incrementAndGet();
+        long reportAt = nextDroppedErrorReport.get();
+        long now = System.nanoTime();
+        if (now - reportAt >= 0
+                && nextDroppedErrorReport.compareAndSet(reportAt, now + DROPPED_ERROR_REPORT_INTERVAL_NANOS)) {
+            droppedErrors.addAndGet(-dropped);
+            System.err.println("EventSource: executor full, dropped " + dropped + " error(s), the last one: " + error);
+        }
     }
 }
@@ -0,0 +1,184 @@
+package com.github.eventsource.client.impl;
+
+import com.github.eventsource.client.BatchEventSourceHandler;
+import com.github.eventsource.client.MessageEvent;
+import com.github.eventsource.client.metrics.EventSourceMetrics;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Delivers messages to a {@link BatchEventSourceHandler} on the executor. A single task is submitted for the
+ * first message of a batch; every message that arrives before that task runs is added to the same batch, up
+ * to the configured maximum size.
+ *
+ * Messages for listeners and the pieces of streamed events queue up behind the batch that is pending, and messages
+ * after them start a new batch, so the handler sees everything in the order it was received. One drain runs at a
+ * time, whatever the executor.
+ */
+public class BatchingEventSourceHandler extends AsyncEventSourceHandler {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private final Object lock = new Object();
+    // batches, and tasks to run between them, in the order they were received
+    private final ArrayDeque<Object> pending = new ArrayDeque<Object>();
+    private boolean drainScheduled;
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    public BatchingEventSourceHandler(Executor executor, BatchEventSourceHandler eventSourceHandler) {
+        this(executor, eventSourceHandler, EventSourceMetrics.NOOP);
+    }
+
+    public BatchingEventSourceHandler(Executor executor, BatchEventSourceHandler eventSourceHandler,
+                                      EventSourceMetrics metrics) {
+        super(executor, eventSourceHandler, metrics);
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be a positive integer: " + maxBatchSize);
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public void onMessage(String event, MessageEvent message) {
+        journal(event, message);
+        long enqueuedAt = enqueued();
+        synchronized (lock) {
+            Object last = pending.peekLast();
+            Batch batch;
+            if (last instanceof Batch) {
+                batch = (Batch) last;
+            } else {
+                batch = new Batch(enqueuedAt);
+                pending.add(batch);
+            }
+            batch.events.add(event);
+            batch.messages.add(message);
+            if (drainScheduled) {
+                return;
+            }
+            drainScheduled = true;
+        }
+        try {
+            getExecutor().execute(drain);
+        } catch (RejectedExecutionException e) {
+            dropPending();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void execute(Runnable task) {
+        synchronized (lock) {
+            pending.add(task);
+            if (drainScheduled) {
+                return;
+            }
+            drainScheduled = true;
+        }
+        try {
+            getExecutor().execute(drain);
+        } catch (RejectedExecutionException e) {
+            synchronized (lock) {
+                // reported as rejected by the caller
+                pending.removeLastOccurrence(task);
+            }
+            dropPending();
+            throw e;
+        }
+    }
+
+    private void drain() {
+        Object next;
+        Batch batch = null;
+        long startedAt = now();
+        synchronized (lock) {
+            next = pending.peek();
+            if (next instanceof Batch) {
+                Batch head = (Batch) next;
+                if (head.messages.size() <= maxBatchSize) {
+                    pending.poll();
+                    batch = head;
+                } else {
+                    List<String> headEvents = head.events.subList(0, maxBatchSize);
+                    List<MessageEvent> headMessages = head.messages.subList(0, maxBatchSize);
+                    batch = new Batch(head.enqueuedAt);
+                    batch.events.addAll(headEvents);
+                    batch.messages.addAll(headMessages);
+                    headEvents.clear();
+                    headMessages.clear();
+                    head.enqueuedAt = startedAt;
+                }
+            } else {
+                pending.poll();
+            }
+        }
+        if (batch != null) {
+            deliver(batch, startedAt);
+        } else if (next != null) {
+            ((Runnable) next).run();
+        }
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                drainScheduled = false;
+                return;
+            }
+        }
+        try {
+            getExecutor().execute(drain);
+        } catch (RejectedExecutionException e) {
+            dropPending();
+            onError(e);
+        }
+    }
+
+    private void deliver(Batch batch, long startedAt) {
+        int batchSize = batch.messages.size();
+        try {
+            ((BatchEventSourceHandler) getEventSourceHandler()).onMessages(batch.events, batch.messages);
+            acknowledge(batch.messages.get(batchSize - 1).lastEventId);
+        } catch (Exception e) {
+            onError(e);
+        } finally {
+            delivered(batchSize);
+            dispatched(batchSize, batch.enqueuedAt, startedAt);
+        }
+    }
+
+    /**
+     * Drops the messages and tasks no drain is going to run since the executor didn't take it, so that the next
+     * message schedules one again.
+     */
+    private void dropPending() {
+        int count = 0;
+        synchronized (lock) {
+            for (Object dropped : pending) {
+                count += dropped instanceof Batch ? ((Batch) dropped).messages.size() : 1;
+            }
+            pending.clear();
+            drainScheduled = false;
+        }
+        rejected(count);
+    }
+
+    private static final class Batch {
+        final List<String> events = new ArrayList<String>();
+        final List<MessageEvent> messages = new ArrayList<MessageEvent>();
+        long enqueuedAt;
+
+        Batch(long enqueuedAt) {
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.eventsource.client.impl;
+
+import com.github.eventsource.client.RawMessageEvent;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Byte arrays handed back by released {@link RawMessageEvent}s, kept for the parser that lent them out. Arrays
+ * are released on the handler threads and taken on the I/O thread.
+ */
+public class ByteArrayPool implements RawMessageEvent.Recycler {
+    private final Queue<byte[]> arrays = new ConcurrentLinkedQueue<byte[]>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxArrays;
+    private final int maxArrayLength;
+
+    /**
+     * @param maxArrays      how many arrays are kept at most, any more are dropped
+     * @param maxArrayLength larger arrays are dropped rather than kept
+     */
+    public ByteArrayPool(int maxArrays, int maxArrayLength) {
+        this.maxArrays = maxArrays;
+        this.maxArrayLength = maxArrayLength;
+    }
+
+    /**
+     * @return a pooled array if there is one that is long enough, a new one otherwise
+     */
+    public byte[] take(int minLength) {
+        byte[] array = arrays.poll();
+        if (array != null) {
+            size.decrementAndGet();
+            if (array.length >= minLength) {
+                return array;
+            }
+        }
+        return new byte[minLength];
+    }
+
+    @Override
+    public void recycle(byte[] bytes) {
+        if (bytes.length > maxArrayLength) {
+            return;
+        }
+        if (size.incrementAndGet() > maxArrays) {
+            size.decrementAndGet();
+            return;
+        }
+        arrays.offer(bytes);
+    }
+
+    public int size() {
+        return size.get();
+    }
+}
@@ -0,0 +1,245 @@
+package com.github.eventsource.client.impl;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves the hosts of every stream of a client, off the threads that connect. Lookups run on a few daemon
+ * threads of their own and their results are cached per host: addresses for the TTL, failures for the negative
+ * TTL. However many streams of a host connect at once, only one lookup of it is in flight, and the others wait for
+ * its result without holding a thread.
+ *
+ * Once the TTL of a host is up, its streams keep connecting to the addresses it had while they are looked up
+ * again, so only the very first connect to a host ever waits for DNS. If looking them up again fails, they are kept
+ * and looked up once more after the negative TTL. A host with several addresses is connected to on each of them in
+ * turn, which spreads the streams across them and moves a reconnect on to the next address when one goes down.
+ *
+ * The JDK doesn't tell the TTL of the records it looked up. The TTLs default to the JVM's own DNS cache settings,
+ * the <code>networkaddress.cache.ttl</code> and <code>networkaddress.cache.negative.ttl</code> security properties.
+ */
+public class DnsResolver {
+    public static final long DEFAULT_TTL_MILLIS = 30000;
+    public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 10000;
+    private static final int LOOKUP_THREADS = 4;
+
+    /**
+     * Looks up the addresses of a host, blocking until it has them.
+     */
+    public interface Lookup {
+        InetAddress[] lookup(String host) throws UnknownHostException;
+    }
+
+    /**
+     * Called once with the result of {@link #resolve}, on the thread that looked the host up, or on the calling
+     * thread if the host was cached.
+     */
+    public interface Listener {
+        void resolved(InetSocketAddress address);
+
+        void failed(UnknownHostException cause);
+    }
+
+    /**
+     * The JDK's resolver, {@link InetAddress#getAllByName(String)}.
+     */
+    public static final Lookup SYSTEM = new Lookup() {
+        @Override
+        public InetAddress[] lookup(String host) throws UnknownHostException {
+            return InetAddress.getAllByName(host);
+        }
+    };
+
+    private final Lookup lookup;
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<String, Entry>();
+    private volatile long ttlNanos = TimeUnit.MILLISECONDS.toNanos(
+            jvmTtlMillis("networkaddress.cache.ttl", DEFAULT_TTL_MILLIS));
+    private volatile long negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(
+            jvmTtlMillis("networkaddress.cache.negative.ttl", DEFAULT_NEGATIVE_TTL_MILLIS));
+
+    public DnsResolver() {
+        this(SYSTEM);
+    }
+
+    public DnsResolver(Lookup lookup) {
+        this.lookup = lookup;
+        executor = new ThreadPoolExecutor(LOOKUP_THREADS, LOOKUP_THREADS, 30, TimeUnit.SECONDS,
+                                          new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "eventsource-dns-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param ttlMillis         how long the addresses of a host are used before it is looked up again
+     * @param negativeTtlMillis how long a host that failed to resolve fails without being looked up again
+     */
+    public DnsResolver setTtl(long ttlMillis, long negativeTtlMillis) {
+        if (ttlMillis < 0 || negativeTtlMillis < 0) {
+            throw new IllegalArgumentException("TTLs must not be negative: " + ttlMillis + ", " + negativeTtlMillis);
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        return this;
+    }
+
+    /**
+     * Resolves the host to the next of its addresses, from the cache or by looking it up. Never blocks.
+     */
+    public void resolve(String host, int port, Listener listener) {
+        Entry entry = cache.get(host);
+        if (entry == null) {
+            Entry created = new Entry(host);
+            entry = cache.putIfAbsent(host, created);
+            if (entry == null) {
+                entry = created;
+            }
+        }
+        entry.resolve(port, listener);
+    }
+
+    /**
+     * @return number of hosts cached or being looked up
+     */
+    public int getCachedHostCount() {
+        return cache.size();
+    }
+
+    /**
+     * Stops the lookup threads. Streams waiting for a lookup that hasn't started yet fail.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static long jvmTtlMillis(String property, long defaultMillis) {
+        try {
+            String seconds = Security.getProperty(property);
+            if (seconds == null) {
+                return defaultMillis;
+            }
+            long value = Long.parseLong(seconds.trim());
+            // -1 caches forever
+            return value < 0 ? Long.MAX_VALUE / 1000000 : value * 1000;
+        } catch (RuntimeException e) {
+            return defaultMillis;
+        }
+    }
+
+    private final class Entry implements Runnable {
+        private final String host;
+        private final AtomicInteger next = new AtomicInteger();
+        private final List<Waiter> waiting = new ArrayList<Waiter>();
+        private InetAddress[] addresses;
+        private UnknownHostException failure;
+        private long expiresAt;
+        private boolean lookingUp;
+
+        Entry(String host) {
+            this.host = host;
+        }
+
+        void resolve(int port, Listener listener) {
+            InetAddress[] current = null;
+            UnknownHostException failed = null;
+            synchronized (this) {
+                boolean resolved = addresses != null || failure != null;
+                boolean expired = resolved && System.nanoTime() - expiresAt >= 0;
+                if ((!resolved || expired) && !lookingUp) {
+                    try {
+                        executor.execute(this);
+                        lookingUp = true;
+                    } catch (RejectedExecutionException e) {
+                        // shut down, whatever is cached is all there is
+                    }
+                }
+                if (addresses != null) {
+                    // addresses past their TTL are still used while they are looked up again
+                    current = addresses;
+                } else if (failure != null && !expired) {
+                    failed = failure;
+                } else if (lookingUp) {
+                    waiting.add(new Waiter(port, listener));
+                    return;
+                } else {
+                    failed = new UnknownHostException(host + ": resolver shut down");
+                }
+            }
+            deliver(current, failed, port, listener);
+        }
+
+        @Override
+        public void run() {
+            InetAddress[] found = null;
+            UnknownHostException failed = null;
+            try {
+                found = lookup.lookup(host);
+                if (found == null || found.length == 0) {
+                    found = null;
+                    failed = new UnknownHostException(host + ": no addresses");
+                }
+            } catch (UnknownHostException e) {
+                failed = e;
+            } catch (RuntimeException e) {
+                failed = new UnknownHostException(host + ": " + e);
+                failed.initCause(e);
+            }
+            List<Waiter> waiters;
+            synchronized (this) {
+                lookingUp = false;
+                if (found == null && addresses != null) {
+                    // the addresses the host had most likely still work, they are kept until a lookup succeeds
+                    found = addresses;
+                    failed = null;
+                    expiresAt = System.nanoTime() + negativeTtlNanos;
+                } else {
+                    addresses = found;
+                    failure = failed;
+                    expiresAt = System.nanoTime() + (found != null ? ttlNanos : negativeTtlNanos);
+                }
+                waiters = new ArrayList<Waiter>(waiting);
+                waiting.clear();
+            }
+            for (Waiter waiter : waiters) {
+                deliver(found, failed, waiter.port, waiter.listener);
+            }
+        }
+
+        private void deliver(InetAddress[] found, UnknownHostException failed, int port, Listener listener) {
+            if (found == null) {
+                listener.failed(failed);
+                return;
+            }
+            int index = (next.getAndIncrement() & Integer.MAX_VALUE) % found.length;
+            listener.resolved(new InetSocketAddress(found[index], port));
+        }
+    }
+
+    private static final class Waiter {
+        final int port;
+        final Listener listener;
+
+        Waiter(int port, Listener listener) {
+            this.port = port;
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.eventsource.client.impl;
+
+import org.jboss.netty.channel.ChannelFuture;
+
+/**
+ * The connection behind an {@link com.github.eventsource.client.EventSource}: connects, reconnects after the
+ * connection is lost and feeds the event stream to the parser. There is one implementation per transport.
+ */
+public interface EventStreamConnection extends ConnectionHandler, FlowControl {
+    /**
+     * Opens a new connection. The returned future completes once the connection is established or has failed;
+     * it has no {@link ChannelFuture#getChannel() channel} unless the transport is Netty 3.
+     */
+    ChannelFuture connect();
+
+    /**
+     * Closes the connection for good, it is not reestablished.
+     */
+    EventStreamConnection close();
+
+    /**
+     * Waits until the current connection is closed.
+     */
+    EventStreamConnection join() throws InterruptedException;
+
+    /**
+     * Continues a stream received in an earlier run: the ID is sent as Last-Event-ID on the first connect, and
+     * events take it as their last event ID until the server sends a new one. Called before connecting.
+     */
+    void resumeFrom(String lastEventId);
+
+    /**
+     * Closes a connection that has received nothing for the given time, so that it is reestablished. Anything
+     * counts, comment lines sent as heartbeats included. Takes effect from the next connection on.
+     *
+     * @param readTimeoutMillis 0 to wait forever
+     */
+    void setReadTimeoutMillis(long readTimeoutMillis);
+
+    /**
+     * @see EventStreamParser#setMaxEventSize(int)
+     */
+    void setMaxEventSize(int maxEventSize);
+
+    /**
+     * Asks the server for a gzip or deflate compressed body, which is then inflated chunk by chunk ahead of the
+     * line decoder. Takes effect from the next connection on.
+     */
+    void setCompression(boolean compression);
+
+    long getBytesReceived();
+
+    long getEventsReceived();
+}
@@ -1,92 +1,534 @@
 package com.github.eventsource.client.impl;
 
+import com.github.eventsource.client.EventSourceException;
 import com.github.eventsource.client.EventSourceHandler;
 import com.github.eventsource.client.MessageEvent;
-import java.util.regex.Pattern;
+import com.github.eventsource.client.RawEventSourceHandler;
+import com.github.eventsource.client.RawMessageEvent;
+import com.github.eventsource.client.metrics.EventSourceMetrics;
+import java.nio.charset.Charset;
+import org.jboss.netty.buffer.ChannelBuffer;
 
 /**
  * <a href="http://dev.w3.org/html5/eventsource/#event-stream-interpretation">Interprets an event stream</a>
  * and dispatches messages to the {@link com.github.eventsource.client.EventSourceHandler}.
+ *
+ * Lines are interpreted on their raw UTF-8 bytes: field names are matched byte by byte and data lines are
+ * copied into a reusable buffer, so the only String built for an ordinary event is its data, once, when
+ * the event is dispatched. A {@link RawEventSourceHandler} gets the data buffer itself instead, and the parser
+ * continues with a buffer released by an earlier message.
+ *
+ * Event names are resolved in the {@link EventTypeTable} of the handler: events of a type with listeners go to
+ * them, and events of a type nobody listens to can be dropped without their data ever being decoded, like the
+ * events the table's {@link com.github.eventsource.client.EventFilter} rejects. Fields may come in any order, so
+ * whether an event is dropped is decided once it is complete, with its final name and ID; only an event that
+ * outgrows the maximum size is decided on at that point, and the rest of it is only scanned for line ends.
+ *
+ * The data of an event is limited to {@link #setMaxEventSize(int) a maximum size}. A larger event is skipped, or
+ * streamed in pieces if the handler is a {@link com.github.eventsource.client.StreamingEventSourceHandler}; its
+ * lines may come in parts, see {@link #linePart(byte[], int, int)}, so it is never held in memory as a whole.
  */
 public class EventStreamParser {
-    private static final String DATA = "data";
-    private static final String ID = "id";
-    private static final String EVENT = "event";
-    private static final String RETRY = "retry";
+    public static final int DEFAULT_MAX_EVENT_SIZE = 8 * 1024 * 1024;
 
-    private static final String DEFAULT_EVENT = "message";
-    private static final String EMPTY_STRING = "";
-    private static final Pattern DIGITS_ONLY = Pattern.compile("^[\\d]+$");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte[] DATA = "data".getBytes(UTF_8);
+    private static final byte[] ID = "id".getBytes(UTF_8);
+    private static final byte[] EVENT = "event".getBytes(UTF_8);
+    private static final byte[] RETRY = "retry".getBytes(UTF_8);
+
+    private static final byte LF = '\n';
+    private static final byte COLON = ':';
+    private static final byte SPACE = ' ';
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 16;
+
+    // what the rest of a line that is being passed in parts is
+    private static final int NO_PART = 0;
+    private static final int DATA_PART = 1;
+    private static final int IGNORED_PART = 2;
 
     private final EventSourceHandler eventSourceHandler;
+    private final RawEventSourceHandler rawHandler;
+    private final ByteArrayPool dataPool;
+    private final AsyncEventSourceHandler router;
+    private final EventTypeTable eventTypes;
     private final ConnectionHandler connectionHandler;
     private final String origin;
+    private final EventSourceMetrics metrics;
+    private final boolean timed;
 
-    private StringBuffer data = new StringBuffer();
+    private byte[] data = new byte[INITIAL_BUFFER_SIZE];
+    private int dataLength;
+    private byte[] scratch = new byte[INITIAL_BUFFER_SIZE];
     private String lastEventId;
-    private String eventName = DEFAULT_EVENT;
+    private EventTypeTable.EventType eventType;
+    private boolean dropping;
+    private boolean streaming;
+    private int linePart = NO_PART;
+    private boolean skipSpace;
+    private volatile int maxEventSize = DEFAULT_MAX_EVENT_SIZE;
+    private volatile long eventCount;
+    private long lineStartedAt;
+    private long parseNanos;
 
     public EventStreamParser(String origin, EventSourceHandler eventSourceHandler, ConnectionHandler connectionHandler) {
+        this(origin, eventSourceHandler, connectionHandler, EventSourceMetrics.NOOP);
+    }
+
+    /**
+     * @param metrics receives every parsed event with the time spent on its lines, which is only measured when
+     *                metrics are not {@link EventSourceMetrics#NOOP}
+     */
+    public EventStreamParser(String origin, EventSourceHandler eventSourceHandler, ConnectionHandler connectionHandler,
+                             EventSourceMetrics metrics) {
         this.eventSourceHandler = eventSourceHandler;
+        if (eventSourceHandler instanceof RawEventSourceHandler) {
+            this.rawHandler = (RawEventSourceHandler) eventSourceHandler;
+            this.dataPool = new ByteArrayPool(MAX_POOLED_BUFFERS, MAX_RETAINED_BUFFER_SIZE);
+        } else {
+            this.rawHandler = null;
+            this.dataPool = null;
+        }
+        if (eventSourceHandler instanceof AsyncEventSourceHandler) {
+            this.router = (AsyncEventSourceHandler) eventSourceHandler;
+            this.eventTypes = router.getEventTypes();
+        } else {
+            this.router = null;
+            this.eventTypes = new EventTypeTable();
+        }
+        this.eventType = eventTypes.getDefault();
         this.origin = origin;
         this.connectionHandler = connectionHandler;
+        this.metrics = metrics;
+        this.timed = metrics != EventSourceMetrics.NOOP;
     }
 
     public void line(String line) {
-        int colonIndex;
-        if (line.trim().length() == 0) {
+        byte[] bytes = line.getBytes(UTF_8);
+        line(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Interprets the readable bytes of the buffer as a single line, without the line terminator.
+     * The buffer's indexes are left untouched.
+     */
+    public void line(ChannelBuffer line) {
+        line(line, line.readerIndex(), line.readableBytes());
+    }
+
+    public void lines(String lines) {
+        String[] lineArray = lines.split("\n", -1);
+        for (String line : lineArray) {
+            line(line);
+        }
+    }
+
+    /**
+     * Splits the readable bytes of the buffer on LF and interprets every piece as a line, exactly like
+     * {@link #lines(String)} does for a decoded String. The buffer's indexes are left untouched.
+     */
+    public void lines(ChannelBuffer lines) {
+        int index = lines.readerIndex();
+        int end = lines.writerIndex();
+        while (true) {
+            int lineEnd = lines.indexOf(index, end, LF);
+            if (lineEnd == -1) {
+                line(lines, index, end - index);
+                return;
+            }
+            line(lines, index, lineEnd - index);
+            index = lineEnd + 1;
+        }
+    }
+
+    private void line(ChannelBuffer buffer, int index, int length) {
+        if (buffer.hasArray()) {
+            line(buffer.array(), buffer.arrayOffset() + index, length);
+        } else {
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.getBytes(index, scratch, 0, length);
+            line(scratch, 0, length);
+        }
+    }
+
+    /**
+     * Interprets the readable bytes of the buffer like {@link #linePart(byte[], int, int)} does.
+     */
+    public void linePart(ChannelBuffer part) {
+        if (part.hasArray()) {
+            linePart(part.array(), part.arrayOffset() + part.readerIndex(), part.readableBytes());
+        } else {
+            int length = part.readableBytes();
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            part.getBytes(part.readerIndex(), scratch, 0, length);
+            linePart(scratch, 0, length);
+        }
+    }
+
+    /**
+     * Interprets a piece of a line that is too long to be passed whole: the first piece, or one in the middle.
+     * The last piece is passed to {@link #line(byte[], int, int)} like a line of its own. Only data lines are
+     * kept, their data counts against the maximum event size as it comes in; other fields that long are ignored.
+     */
+    public void linePart(byte[] part, int offset, int length) {
+        if (linePart == DATA_PART) {
+            appendLinePart(part, offset, length, false);
+        } else if (linePart == NO_PART) {
+            int end = offset + length;
+            int colonIndex = indexOf(part, offset, end, COLON);
+            if (colonIndex != -1 && matches(part, offset, colonIndex, DATA)) {
+                linePart = DATA_PART;
+                int valueStart = colonIndex + 1;
+                // the space after the colon may come with the next piece
+                skipSpace = valueStart == end;
+                if (valueStart < end && part[valueStart] == SPACE) {
+                    valueStart++;
+                }
+                appendData(part, valueStart, end - valueStart, false);
+            } else {
+                linePart = IGNORED_PART;
+            }
+        }
+    }
+
+    private void appendLinePart(byte[] part, int offset, int length, boolean lineEnd) {
+        if (skipSpace && length > 0) {
+            skipSpace = false;
+            if (part[offset] == SPACE) {
+                offset++;
+                length--;
+            }
+        }
+        appendData(part, offset, length, lineEnd);
+    }
+
+    /**
+     * Interprets <code>length</code> bytes of the array as a single line, without the line terminator.
+     */
+    public void line(byte[] line, int offset, int length) {
+        if (!timed) {
+            interpret(line, offset, length);
+            return;
+        }
+        lineStartedAt = System.nanoTime();
+        interpret(line, offset, length);
+        // zero if the line completed an event, its time has been reported with it
+        if (lineStartedAt != 0) {
+            parseNanos += System.nanoTime() - lineStartedAt;
+        }
+    }
+
+    private void interpret(byte[] line, int offset, int length) {
+        if (linePart != NO_PART) {
+            // the last piece of a long line
+            if (linePart == DATA_PART) {
+                appendLinePart(line, offset, length, true);
+            }
+            linePart = NO_PART;
+            skipSpace = false;
+            return;
+        }
+        int end = offset + length;
+        int start = skipWhitespace(line, offset, end);
+        if (start == end) {
             dispatchEvent();
-        } else if (line.startsWith(":")) {
+        } else if (line[offset] == COLON) {
             // ignore
-        } else if ((colonIndex = line.indexOf(":")) != -1) {
-            String field = line.substring(0, colonIndex);
-            String value = line.substring(colonIndex + 1).replaceFirst(" ", EMPTY_STRING);
-            processField(field, value);
         } else {
-            processField(line.trim(), EMPTY_STRING); // The spec doesn't say we need to trim the line, but I assume that's an oversight.
+            int colonIndex = indexOf(line, offset, end, COLON);
+            if (colonIndex != -1) {
+                int valueStart = colonIndex + 1;
+                if (valueStart < end && line[valueStart] == SPACE) {
+                    valueStart++;
+                }
+                processField(line, offset, colonIndex, valueStart, end);
+            } else {
+                // The spec doesn't say we need to trim the line, but I assume that's an oversight.
+                int stop = end;
+                while (isWhitespace(line[stop - 1])) {
+                    stop--;
+                }
+                processField(line, start, stop, stop, stop);
+            }
+        }
+    }
+
+    private void processField(byte[] line, int fieldStart, int fieldEnd, int valueStart, int valueEnd) {
+        if (matches(line, fieldStart, fieldEnd, DATA)) {
+            appendData(line, valueStart, valueEnd - valueStart, true);
+        } else if (matches(line, fieldStart, fieldEnd, ID)) {
+            lastEventId = new String(line, valueStart, valueEnd - valueStart, UTF_8);
+        } else if (matches(line, fieldStart, fieldEnd, EVENT)) {
+            eventType = eventTypes.lookup(line, valueStart, valueEnd - valueStart);
+        } else if (matches(line, fieldStart, fieldEnd, RETRY)) {
+            long retry = parseNumber(line, valueStart, valueEnd);
+            if (retry != -1) {
+                connectionHandler.setReconnectionTimeMillis(retry);
+            }
+        }
+    }
+
+    /**
+     * @param lineEnd whether the data line ends here, or more of it follows in the next piece
+     */
+    private void appendData(byte[] line, int offset, int length, boolean lineEnd) {
+        if (dropping) {
+            return;
+        }
+        int required = dataLength + length + 1;
+        if (required > maxEventSize) {
+            if (!streaming && isDropped()) {
+                // too large to wait for the rest of its fields, so it goes by the name and ID it has so far
+                dropping = true;
+                return;
+            }
+            if (!streaming && !startStreaming()) {
+                return;
+            }
+            // more data is coming, so the LF at the end of the buffer is not the last one and goes as well
+            if (dataLength > 0) {
+                router.onMessageData(data, 0, dataLength);
+                dataLength = 0;
+            }
+            if (length + 1 > maxEventSize) {
+                router.onMessageData(line, offset, length);
+                if (lineEnd) {
+                    data[dataLength++] = LF;
+                }
+                return;
+            }
+            required = length + 1;
+        }
+        if (data.length < required) {
+            byte[] grown = new byte[Math.max(required, data.length * 2)];
+            System.arraycopy(data, 0, grown, 0, dataLength);
+            data = grown;
+        }
+        System.arraycopy(line, offset, data, dataLength, length);
+        dataLength += length;
+        if (lineEnd) {
+            data[dataLength++] = LF;
         }
     }
 
-    private void processField(String field, String value) {
-        if (DATA.equals(field)) {
-            data.append(value).append("\n");
-        } else if (ID.equals(field)) {
-            lastEventId = value;
-        } else if (EVENT.equals(field)) {
-            eventName = value;
-        } else if (RETRY.equals(field) && isNumber(value)) {
-            connectionHandler.setReconnectionTimeMillis(Long.parseLong(value));
+    /**
+     * Starts streaming the current event in pieces if the handler takes them, skips it otherwise.
+     *
+     * @return whether it is streamed
+     */
+    private boolean startStreaming() {
+        if (router == null || !router.isStreaming()) {
+            eventSourceHandler.onError(new EventSourceException("Skipped an event larger than " + maxEventSize
+                    + " bytes"));
+            dropping = true;
+            return false;
         }
+        streaming = true;
+        router.onMessageStart(eventType.name, lastEventId);
+        return true;
     }
 
-    private boolean isNumber(String value) {
-        return DIGITS_ONLY.matcher(value).matches();
+    /**
+     * @return whether nobody listens to the event's type or the filter rejects the event, asked once per event
+     */
+    private boolean isDropped() {
+        if (eventTypes.isDropped(eventType)) {
+            return true;
+        }
+        try {
+            return !eventTypes.accepts(eventType, lastEventId);
+        } catch (RuntimeException e) {
+            eventSourceHandler.onError(e);
+            return false;
+        }
     }
 
     private void dispatchEvent() {
-        if (data.length() == 0) {
+        if (dropping) {
+            drop();
             return;
         }
-        String dataString = data.toString();
-        if (dataString.endsWith("\n")) {
-            dataString = dataString.substring(0, dataString.length() - 1);
+        if (streaming) {
+            // the LF at the end is not part of the data
+            if (dataLength > 1) {
+                router.onMessageData(data, 0, dataLength - 1);
+            }
+            parsed();
+            connectionHandler.setLastEventId(lastEventId);
+            router.onMessageEnd(eventType.name, lastEventId);
+            reset();
+            return;
+        }
+        if (dataLength == 0) {
+            return;
         }
-        MessageEvent message = new MessageEvent(dataString, lastEventId, origin);
+        // fields may come in any order, only now are the event's name and ID final
+        if (isDropped()) {
+            drop();
+            return;
+        }
+        // Every data line is followed by LF in the buffer, the last one is not part of the data.
+        String dataString = rawHandler == null ? new String(data, 0, dataLength - 1, UTF_8) : null;
+        parsed();
         connectionHandler.setLastEventId(lastEventId);
         try {
-            eventSourceHandler.onMessage(eventName, message);
+            if (router != null && eventType.hasListeners()) {
+                router.onMessage(eventType, new MessageEvent(decode(dataString), lastEventId, origin));
+            } else if (rawHandler == null) {
+                eventSourceHandler.onMessage(eventType.name, new MessageEvent(dataString, lastEventId, origin));
+            } else {
+                // the buffer goes along with the message until its handler releases it
+                RawMessageEvent message = new RawMessageEvent(data, dataLength - 1, lastEventId, origin, dataPool);
+                data = dataPool.take(INITIAL_BUFFER_SIZE);
+                rawHandler.onRawMessage(eventType.name, message);
+            }
         } catch (Exception e) {
             eventSourceHandler.onError(e);
         }
-        data = new StringBuffer();
-        eventName = DEFAULT_EVENT;
+        reset();
     }
 
-    public void lines(String lines) {
-        String[] lineArray = lines.split("\n", -1);
-        for (String line : lineArray) {
-            line(line);
+    private void drop() {
+        // still counts for reconnecting, the server doesn't know we dropped it
+        connectionHandler.setLastEventId(lastEventId);
+        parseNanos = 0;
+        lineStartedAt = 0;
+        reset();
+    }
+
+    private void parsed() {
+        eventCount++;
+        if (timed) {
+            metrics.eventParsed(parseNanos + System.nanoTime() - lineStartedAt);
+            parseNanos = 0;
+            lineStartedAt = 0;
+        } else {
+            metrics.eventParsed(0);
+        }
+    }
+
+    /**
+     * @return the data as a String, decoding it if that hasn't been done yet
+     */
+    private String decode(String dataString) {
+        return dataString != null ? dataString : new String(data, 0, dataLength - 1, UTF_8);
+    }
+
+    private void reset() {
+        dataLength = 0;
+        if (data.length > MAX_RETAINED_BUFFER_SIZE) {
+            data = new byte[INITIAL_BUFFER_SIZE];
+        }
+        eventType = eventTypes.getDefault();
+        dropping = false;
+        streaming = false;
+    }
+
+    /**
+     * Forgets the event that was being parsed when the connection was lost. If it was being streamed, the
+     * handler gets an error instead of its end.
+     */
+    public void discardPartialEvent() {
+        if (streaming) {
+            eventSourceHandler.onError(new EventSourceException("Connection lost while streaming an event"));
+        }
+        linePart = NO_PART;
+        skipSpace = false;
+        reset();
+    }
+
+    /**
+     * @param maxEventSize maximum size of the data of an event in bytes, larger events are streamed in pieces or
+     *                     skipped
+     */
+    public void setMaxEventSize(int maxEventSize) {
+        if (maxEventSize <= 0) {
+            throw new IllegalArgumentException("maxEventSize must be a positive integer: " + maxEventSize);
+        }
+        this.maxEventSize = maxEventSize;
+    }
+
+    /**
+     * Starts from the last event ID of an earlier connection, it is the ID of every event up to the first one
+     * that sets a new one.
+     */
+    public void setLastEventId(String lastEventId) {
+        this.lastEventId = lastEventId;
+    }
+
+    /**
+     * @return event types of the stream, which decide what is dropped
+     */
+    public EventTypeTable getEventTypes() {
+        return eventTypes;
+    }
+
+    /**
+     * @return number of events dispatched so far
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    private static boolean matches(byte[] line, int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (line[start + i] != expected[i]) {
+                return false;
+            }
         }
+        return true;
     }
 
+    private static int indexOf(byte[] line, int start, int end, byte value) {
+        for (int i = start; i < end; i++) {
+            if (line[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(byte[] line, int start, int end) {
+        while (start < end && isWhitespace(line[start])) {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * Same notion of whitespace as {@link String#trim()}. Bytes of multi-byte UTF-8 sequences are negative
+     * and never qualify.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b >= 0 && b <= SPACE;
+    }
+
+    /**
+     * @return the value if it consists of ASCII digits only, -1 otherwise
+     */
+    private static long parseNumber(byte[] line, int start, int end) {
+        if (start == end || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = line[i];
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
 }
@@ -0,0 +1,206 @@
+package com.github.eventsource.client.impl;
+
+import com.github.eventsource.client.EventFilter;
+import com.github.eventsource.client.EventListener;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * The event types of a stream and the listeners added for them. The parser looks up the raw bytes of every
+ * <code>event:</code> field here, which hashes and matches them byte by byte and returns the same
+ * {@link EventType} - name String and listeners - every time, so an event is routed without decoding or comparing
+ * its name.
+ *
+ * Lookups don't lock: the table is replaced as a whole when a name is added, which happens once per name. Names
+ * beyond the first {@value #MAX_INTERNED_TYPES} a stream uses are not kept, so a stream making up new names
+ * doesn't grow the table without bounds.
+ */
+public class EventTypeTable {
+    public static final String DEFAULT_EVENT = "message";
+    static final int MAX_INTERNED_TYPES = 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final EventListener[] NO_LISTENERS = new EventListener[0];
+
+    private volatile EventType[] types = new EventType[16];
+    private int size;
+    private volatile boolean dropUnlistened;
+    private volatile EventFilter filter;
+    private final EventType defaultType = lookup(DEFAULT_EVENT);
+
+    /**
+     * @return the type of events without an <code>event:</code> field
+     */
+    public EventType getDefault() {
+        return defaultType;
+    }
+
+    public EventType lookup(String name) {
+        byte[] bytes = name.getBytes(UTF_8);
+        return lookup(bytes, 0, bytes.length);
+    }
+
+    public EventType lookup(byte[] name, int offset, int length) {
+        int hash = hash(name, offset, length);
+        EventType type = find(types, hash, name, offset, length);
+        if (type != null) {
+            return type;
+        }
+        byte[] bytes = Arrays.copyOfRange(name, offset, offset + length);
+        return intern(new EventType(new String(bytes, UTF_8), bytes, hash), false);
+    }
+
+    public void addListener(String event, EventListener listener) {
+        EventType type = lookup(event);
+        // keep it even if the table is full, or the listener would be lost
+        type = intern(type, true);
+        synchronized (type) {
+            EventListener[] listeners = Arrays.copyOf(type.listeners, type.listeners.length + 1);
+            listeners[listeners.length - 1] = listener;
+            type.listeners = listeners;
+        }
+    }
+
+    /**
+     * @return whether the listener had been added for the event type
+     */
+    public boolean removeListener(String event, EventListener listener) {
+        EventType type = lookup(event);
+        synchronized (type) {
+            EventListener[] listeners = type.listeners;
+            for (int i = 0; i < listeners.length; i++) {
+                if (listeners[i] == listener) {
+                    EventListener[] removed = new EventListener[listeners.length - 1];
+                    System.arraycopy(listeners, 0, removed, 0, i);
+                    System.arraycopy(listeners, i + 1, removed, i, removed.length - i);
+                    type.listeners = removed.length == 0 ? NO_LISTENERS : removed;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @param dropUnlistened whether events of types without listeners are dropped by the parser, without
+     *                       decoding their data
+     */
+    public void setDropUnlistened(boolean dropUnlistened) {
+        this.dropUnlistened = dropUnlistened;
+    }
+
+    /**
+     * @param filter decides which events are dropped by the parser, may be null
+     */
+    public void setFilter(EventFilter filter) {
+        this.filter = filter;
+    }
+
+    public boolean isDropped(EventType type) {
+        return dropUnlistened && type.listeners.length == 0;
+    }
+
+    /**
+     * @return whether the event passes the filter, true if there is none
+     */
+    public boolean accepts(EventType type, String lastEventId) {
+        EventFilter current = filter;
+        return current == null || current.accept(type.name, lastEventId);
+    }
+
+    private synchronized EventType intern(EventType type, boolean force) {
+        EventType[] table = types;
+        EventType existing = find(table, type.hash, type.bytes, 0, type.bytes.length);
+        if (existing != null) {
+            return existing;
+        }
+        if (size >= MAX_INTERNED_TYPES && !force) {
+            return type;
+        }
+        // at most half full, so probes stay short and always end at an empty slot
+        int capacity = (size + 1) * 2 > table.length ? table.length * 2 : table.length;
+        EventType[] copy = new EventType[capacity];
+        for (EventType entry : table) {
+            if (entry != null) {
+                insert(copy, entry);
+            }
+        }
+        insert(copy, type);
+        size++;
+        types = copy;
+        return type;
+    }
+
+    private static void insert(EventType[] table, EventType type) {
+        int mask = table.length - 1;
+        int i = type.hash & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = type;
+    }
+
+    private static EventType find(EventType[] table, int hash, byte[] name, int offset, int length) {
+        int mask = table.length - 1;
+        for (int i = hash & mask; table[i] != null; i = (i + 1) & mask) {
+            EventType type = table[i];
+            if (type.hash == hash && type.matches(name, offset, length)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        // spread the higher bits, the table only uses the lower ones
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * An event name along with the listeners added for it.
+     */
+    public static final class EventType {
+        public final String name;
+        private final byte[] bytes;
+        private final int hash;
+        private volatile EventListener[] listeners = NO_LISTENERS;
+
+        EventType(String name, byte[] bytes, int hash) {
+            this.name = name;
+            this.bytes = bytes;
+            this.hash = hash;
+        }
+
+        /**
+         * @return the listeners at the moment, the array must not be modified
+         */
+        public EventListener[] getListeners() {
+            return listeners;
+        }
+
+        public boolean hasListeners() {
+            return listeners.length != 0;
+        }
+
+        private boolean matches(byte[] name, int offset, int length) {
+            if (length != bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (name[offset + i] != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
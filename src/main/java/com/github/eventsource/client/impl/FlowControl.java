@@ -0,0 +1,11 @@
+package com.github.eventsource.client.impl;
+
+/**
+ * Lets the dispatch side stop and restart reading from the connection, so that TCP flow control slows down
+ * the server while handlers are behind.
+ */
+public interface FlowControl {
+    void suspendReads();
+
+    void resumeReads();
+}
@@ -0,0 +1,54 @@
+package com.github.eventsource.client.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the events of a stream that were handed to the executor but not delivered yet. Reading from the
+ * connection is suspended when the count reaches the high watermark and resumed once it has drained to the low
+ * watermark. Only crossing a watermark takes a lock, counting itself is a single atomic operation.
+ */
+public class PendingEventLimiter {
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final FlowControl flowControl;
+    private final AtomicInteger pending = new AtomicInteger();
+    private boolean suspended;
+
+    public PendingEventLimiter(int lowWatermark, int highWatermark, FlowControl flowControl) {
+        if (lowWatermark < 0 || lowWatermark >= highWatermark) {
+            throw new IllegalArgumentException("Watermarks must satisfy 0 <= low < high: " + lowWatermark + ", " + highWatermark);
+        }
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.flowControl = flowControl;
+    }
+
+    public void enqueued() {
+        if (pending.incrementAndGet() == highWatermark) {
+            update();
+        }
+    }
+
+    public void delivered(int count) {
+        int after = pending.addAndGet(-count);
+        if (after <= lowWatermark && after + count > lowWatermark) {
+            update();
+        }
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    private synchronized void update() {
+        // the count may have moved on since the watermark was crossed, act on its current value
+        int current = pending.get();
+        if (!suspended && current >= highWatermark) {
+            suspended = true;
+            flowControl.suspendReads();
+        } else if (suspended && current <= lowWatermark) {
+            suspended = false;
+            flowControl.resumeReads();
+        }
+    }
+}
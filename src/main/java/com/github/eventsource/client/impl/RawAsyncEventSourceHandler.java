@@ -0,0 +1,49 @@
+package com.github.eventsource.client.impl;
+
+import com.github.eventsource.client.RawEventSourceHandler;
+import com.github.eventsource.client.RawMessageEvent;
+import com.github.eventsource.client.metrics.EventSourceMetrics;
+import java.util.concurrent.Executor;
+
+/**
+ * Delivers undecoded messages to a {@link RawEventSourceHandler} on the executor, and releases every message
+ * once its handler has returned, so that the parser can reuse its buffer.
+ */
+public class RawAsyncEventSourceHandler extends AsyncEventSourceHandler implements RawEventSourceHandler {
+    public RawAsyncEventSourceHandler(Executor executor, RawEventSourceHandler eventSourceHandler) {
+        this(executor, eventSourceHandler, EventSourceMetrics.NOOP);
+    }
+
+    public RawAsyncEventSourceHandler(Executor executor, RawEventSourceHandler eventSourceHandler,
+                                      EventSourceMetrics metrics) {
+        super(executor, eventSourceHandler, metrics);
+    }
+
+    @Override
+    public void onRawMessage(final String event, final RawMessageEvent message) {
+        journal(event, message);
+        final long enqueuedAt = enqueued();
+        try {
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    long startedAt = now();
+                    try {
+                        ((RawEventSourceHandler) getEventSourceHandler()).onRawMessage(event, message);
+                        acknowledge(message.lastEventId);
+                    } catch (Exception e) {
+                        onError(e);
+                    } finally {
+                        message.release();
+                        delivered(1);
+                        dispatched(1, enqueuedAt, startedAt);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            message.release();
+            rejected(1);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.eventsource.client.impl;
+
+import com.github.eventsource.client.reconnect.ReconnectPolicy;
+
+/**
+ * Reconnect delays of a single stream. Without a {@link ReconnectPolicy} the stream waits its reconnection time,
+ * which a <code>retry:</code> field from the server replaces, as the spec has it. With a policy, the server's retry
+ * time is only a lower bound for the policy's delays.
+ */
+public class ReconnectBackoff {
+    private final long reconnectionTimeMillis;
+    private volatile ReconnectPolicy policy;
+    private volatile long serverRetryMillis = -1;
+    private int attempt;
+    private long previousDelayMillis;
+
+    /**
+     * @param reconnectionTimeMillis delay without a policy, negative to not reconnect unless the server sends a
+     *                               <code>retry:</code> time
+     * @param policy                 may be null
+     */
+    public ReconnectBackoff(long reconnectionTimeMillis, ReconnectPolicy policy) {
+        this.reconnectionTimeMillis = reconnectionTimeMillis;
+        this.policy = policy;
+    }
+
+    public boolean isEnabled() {
+        return reconnectionTimeMillis >= 0 || serverRetryMillis >= 0;
+    }
+
+    public void setPolicy(ReconnectPolicy policy) {
+        this.policy = policy;
+    }
+
+    public void setServerRetryMillis(long serverRetryMillis) {
+        this.serverRetryMillis = serverRetryMillis;
+    }
+
+    /**
+     * @return delay before the next attempt, counting it as one more failed attempt
+     */
+    public synchronized long nextDelayMillis() {
+        long serverRetry = serverRetryMillis;
+        ReconnectPolicy current = policy;
+        if (current == null) {
+            return serverRetry >= 0 ? serverRetry : reconnectionTimeMillis;
+        }
+        attempt++;
+        previousDelayMillis = current.nextDelayMillis(attempt, previousDelayMillis);
+        return Math.max(previousDelayMillis, serverRetry);
+    }
+
+    /**
+     * Starts over with the first attempt, called once a connection delivers an event stream.
+     */
+    public synchronized void connected() {
+        attempt = 0;
+        previousDelayMillis = 0;
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.eventsource.client.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+
+/**
+ * Runs the reconnect attempts of every stream of a client. Delays are kept on a single timer, and no more than a
+ * fixed number of attempts are in flight at a time: an attempt whose delay is up waits for a free slot, and the
+ * slot is freed when its connection has been established or has failed. Nothing ever blocks the timer thread.
+ */
+public class ReconnectScheduler {
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    /**
+     * A reconnect attempt.
+     */
+    public interface Attempt {
+        /**
+         * Starts connecting without waiting for the result.
+         */
+        ChannelFuture start();
+
+        /**
+         * Called when {@link #start()} throws instead of returning a future, to report it and try again later.
+         */
+        void failed(RuntimeException cause);
+    }
+
+    private final Timer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+    private final Queue<Attempt> ready = new ConcurrentLinkedQueue<Attempt>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private final TimerTask drain = new TimerTask() {
+        @Override
+        public void run(Timeout timeout) {
+            drain();
+        }
+    };
+    private final ChannelFutureListener release = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) {
+            inFlight.decrementAndGet();
+            if (!ready.isEmpty()) {
+                // not inline, the future may have completed on the thread that started the attempt
+                timer.newTimeout(drain, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+    };
+
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be a positive integer: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    public int getWaitingCount() {
+        return ready.size();
+    }
+
+    public void schedule(final Attempt attempt, long delayMillis) {
+        timer.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                ready.add(attempt);
+                drain();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void drain() {
+        while (!ready.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            Attempt attempt = ready.poll();
+            if (attempt == null) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+            try {
+                attempt.start().addListener(release);
+            } catch (RuntimeException e) {
+                inFlight.decrementAndGet();
+                attempt.failed(e);
+            }
+        }
+    }
+
+    /**
+     * @return the timer the delays are kept on, which Netty 3 connections share for their read timeouts
+     */
+    public Timer getTimer() {
+        return timer;
+    }
+
+    public void stop() {
+        timer.stop();
+        ready.clear();
+    }
+}
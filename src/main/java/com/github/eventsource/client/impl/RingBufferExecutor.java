@@ -0,0 +1,169 @@
+package com.github.eventsource.client.impl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An {@link Executor} that runs tasks on a single consumer thread, handed over through a pre-allocated ring of
+ * slots instead of a linked queue. Submitting a task claims the next sequence number with a CAS and stores the
+ * task in its slot, so there is no allocation and no lock between the I/O threads and the consumer.
+ *
+ * Tasks run in sequence order, so the tasks submitted by one thread - all events of a stream are parsed on its
+ * I/O thread - run in the order they were submitted. The ring never grows: when every slot is taken,
+ * {@link #execute(Runnable)} throws a {@link RejectedExecutionException} and the overflow is counted.
+ *
+ * Pass an instance to {@link com.github.eventsource.client.EventSourceClient#EventSourceClient(Executor)} to use
+ * it for event dispatch.
+ */
+public class RingBufferExecutor implements Executor {
+
+    /**
+     * What the consumer thread does while the ring is empty.
+     */
+    public enum WaitStrategy {
+        /** Keep polling. Lowest latency, burns a core even when idle. */
+        BUSY_SPIN,
+        /** Poll, yielding the CPU between attempts. */
+        YIELD,
+        /** Spin briefly, then park until a task is submitted. Costs an unpark per wake-up. */
+        PARK
+    }
+
+    private static final int SPIN_TRIES = 100;
+
+    private final AtomicReferenceArray<Runnable> slots;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final Thread consumer;
+
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private volatile long consumed = -1;
+    private final AtomicLong overflowCount = new AtomicLong();
+    private volatile boolean consumerParked;
+    private volatile boolean running = true;
+
+    public RingBufferExecutor() {
+        this(64 * 1024, WaitStrategy.PARK);
+    }
+
+    /**
+     * @param capacity     number of slots, rounded up to a power of two
+     * @param waitStrategy how the consumer waits for new tasks
+     */
+    public RingBufferExecutor(int capacity, WaitStrategy waitStrategy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be a positive integer: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<Runnable>(size);
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        this.consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "eventsource-ring-dispatcher");
+        consumer.start();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        if (!running) {
+            throw new RejectedExecutionException("RingBufferExecutor has been shut down");
+        }
+        long sequence;
+        do {
+            sequence = claimed.get() + 1;
+            if (sequence - slots.length() > consumed) {
+                overflowCount.incrementAndGet();
+                throw new RejectedExecutionException("Ring buffer full, " + slots.length() + " tasks pending");
+            }
+        } while (!claimed.compareAndSet(sequence - 1, sequence));
+
+        slots.set((int) sequence & mask, task);
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private void consume() {
+        long sequence = 0;
+        int idle = 0;
+        while (true) {
+            int index = (int) sequence & mask;
+            Runnable task = slots.get(index);
+            if (task == null) {
+                if (!running && claimed.get() < sequence) {
+                    return;
+                }
+                idle = await(index, idle);
+                continue;
+            }
+            idle = 0;
+            slots.lazySet(index, null);
+            consumed = sequence++;
+            try {
+                task.run();
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private int await(int index, int idle) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                return idle;
+            case YIELD:
+                Thread.yield();
+                return idle;
+            default:
+                if (idle < SPIN_TRIES) {
+                    return idle + 1;
+                }
+                consumerParked = true;
+                // re-check after announcing the park, a producer that published before seeing the flag is caught here
+                if (slots.get(index) == null && running) {
+                    LockSupport.park(this);
+                }
+                consumerParked = false;
+                return 0;
+        }
+    }
+
+    /**
+     * @return number of tasks submitted but not yet taken by the consumer
+     */
+    public long getPendingCount() {
+        return claimed.get() - consumed;
+    }
+
+    /**
+     * @return number of tasks rejected because the ring was full
+     */
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * Stops accepting tasks. Tasks already submitted are still run before the consumer thread ends.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(consumer);
+    }
+}
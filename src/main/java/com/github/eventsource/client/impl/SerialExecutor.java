@@ -0,0 +1,79 @@
+package com.github.eventsource.client.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A mailbox in front of a shared {@link Executor}: tasks run one at a time, in the order they were submitted,
+ * while other mailboxes on the same executor run in parallel. Every EventSource gets one of its own, so a handler
+ * that blocks holds up its own stream only.
+ *
+ * No thread is held while the mailbox is empty. The first task submitted to an empty mailbox hands a drain to the
+ * executor, which runs the queued tasks until the mailbox is empty again or {@link #MAX_TASKS_PER_DRAIN} have run,
+ * after which it goes to the back of the executor's queue so that busy streams take turns.
+ */
+public class SerialExecutor implements Executor {
+    static final int MAX_TASKS_PER_DRAIN = 64;
+
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        schedule();
+    }
+
+    /**
+     * @return tasks waiting to run, not counting the one running
+     */
+    public int size() {
+        return tasks.size();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(drain);
+            } catch (RejectedExecutionException e) {
+                // nothing is left to run what is queued
+                tasks.clear();
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            Runnable task;
+            for (int i = 0; i < MAX_TASKS_PER_DRAIN && (task = tasks.poll()) != null; i++) {
+                task.run();
+            }
+        } finally {
+            // a task that throws must not leave the rest stranded either
+            scheduled.set(false);
+            if (!tasks.isEmpty()) {
+                try {
+                    schedule();
+                } catch (RejectedExecutionException e) {
+                    // the executor has been shut down, what is left is dropped
+                }
+            }
+        }
+    }
+}
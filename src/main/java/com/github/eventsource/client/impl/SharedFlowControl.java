@@ -0,0 +1,49 @@
+package com.github.eventsource.client.impl;
+
+/**
+ * Lets several parties suspend reading from one connection, the pending event watermarks and a subscriber's demand
+ * for instance. Each gets a {@link FlowControl} of its own from {@link #newFlowControl()}; reading is suspended as
+ * soon as one of them suspends it, and only resumed once every one of them has resumed it.
+ */
+public class SharedFlowControl {
+    private final FlowControl connection;
+    private int suspensions;
+
+    public SharedFlowControl(FlowControl connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @return a FlowControl that suspends and resumes reading on behalf of one party; suspending it again before
+     *         resuming it, or the other way round, has no effect
+     */
+    public FlowControl newFlowControl() {
+        return new FlowControl() {
+            private boolean suspended;
+
+            @Override
+            public void suspendReads() {
+                synchronized (SharedFlowControl.this) {
+                    if (!suspended) {
+                        suspended = true;
+                        if (suspensions++ == 0) {
+                            connection.suspendReads();
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void resumeReads() {
+                synchronized (SharedFlowControl.this) {
+                    if (suspended) {
+                        suspended = false;
+                        if (--suspensions == 0) {
+                            connection.resumeReads();
+                        }
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.eventsource.client.impl;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * Creates the client side {@link SSLEngine}s of https streams. Engines are created for the peer's host and port,
+ * which lets the {@link SSLContext} resume a session it has cached for that peer: a stream that reconnects after
+ * a drop gets away with an abbreviated handshake instead of a full one.
+ */
+public class SslEngineFactory {
+    private volatile SSLContext sslContext;
+    private volatile boolean sessionResumption = true;
+
+    /**
+     * @param sslContext null for the JVM's default context
+     */
+    public void setSslContext(SSLContext sslContext) {
+        this.sslContext = sslContext;
+    }
+
+    public SSLContext getSslContext() {
+        SSLContext context = sslContext;
+        if (context == null) {
+            try {
+                context = SSLContext.getDefault();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("No default SSLContext", e);
+            }
+        }
+        return context;
+    }
+
+    public void setSessionResumption(boolean sessionResumption) {
+        this.sessionResumption = sessionResumption;
+    }
+
+    public boolean isSessionResumption() {
+        return sessionResumption;
+    }
+
+    public SSLEngine newEngine(String host, int port) {
+        return newEngine(host, port, new String[0]);
+    }
+
+    /**
+     * @param applicationProtocols protocols offered with ALPN, in order of preference; none to leave ALPN out
+     */
+    public SSLEngine newEngine(String host, int port, String... applicationProtocols) {
+        SSLContext context = getSslContext();
+        if (!sessionResumption) {
+            forgetSessions(context.getClientSessionContext(), host, port);
+        }
+        SSLEngine engine = context.createSSLEngine(host, port);
+        engine.setUseClientMode(true);
+        SSLParameters parameters = engine.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        if (applicationProtocols.length > 0) {
+            parameters.setApplicationProtocols(applicationProtocols);
+        }
+        engine.setSSLParameters(parameters);
+        return engine;
+    }
+
+    /**
+     * Drops the cached sessions for a peer, so that the next handshake with it is a full one. Engines are still
+     * created for the peer rather than without one, the peer's host name is needed to verify its certificate.
+     */
+    private static void forgetSessions(SSLSessionContext sessions, String host, int port) {
+        Enumeration<byte[]> ids = sessions.getIds();
+        while (ids.hasMoreElements()) {
+            SSLSession session = sessions.getSession(ids.nextElement());
+            if (session != null && port == session.getPeerPort() && host.equalsIgnoreCase(session.getPeerHost())) {
+                session.invalidate();
+            }
+        }
+    }
+}
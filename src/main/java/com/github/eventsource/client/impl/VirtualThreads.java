@@ -0,0 +1,49 @@
+package com.github.eventsource.client.impl;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reaches the virtual threads of Java 21 and later through reflection, so that the client still builds and runs
+ * on older JVMs.
+ */
+public final class VirtualThreads {
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = find();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return whether the JVM has virtual threads
+     */
+    public static boolean isAvailable() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * @return an executor that starts a virtual thread for every task, or where there are none, a cached pool of
+     *         platform threads that behaves the same at a higher cost per thread
+     */
+    public static ExecutorService newThreadPerTaskExecutor() {
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to create a virtual thread executor", e);
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    private static Method find() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            // on Java 19 and 20 they are a preview feature, which throws unless enabled
+            ((ExecutorService) method.invoke(null)).shutdown();
+            return method;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
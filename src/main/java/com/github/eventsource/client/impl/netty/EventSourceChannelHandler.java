@@ -3,79 +3,184 @@ package com.github.eventsource.client.impl.netty;
 import com.github.eventsource.client.EventSourceClient;
 import com.github.eventsource.client.EventSourceException;
 import com.github.eventsource.client.EventSourceHandler;
-import com.github.eventsource.client.impl.ConnectionHandler;
+import com.github.eventsource.client.impl.DnsResolver;
+import com.github.eventsource.client.impl.EventStreamConnection;
 import com.github.eventsource.client.impl.EventStreamParser;
+import com.github.eventsource.client.impl.ReconnectBackoff;
+import com.github.eventsource.client.impl.ReconnectScheduler;
+import com.github.eventsource.client.impl.SslEngineFactory;
+import com.github.eventsource.client.metrics.EventSourceMetrics;
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.net.URI;
-import java.nio.charset.Charset;
+import java.net.UnknownHostException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import javax.net.ssl.SSLException;
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelEvent;
 import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.DefaultChannelFuture;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
 import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
-import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpContentDecompressor;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpHeaders.Names;
 import org.jboss.netty.handler.codec.http.HttpMethod;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.jboss.netty.handler.codec.http.HttpVersion;
-import org.jboss.netty.util.HashedWheelTimer;
-import org.jboss.netty.util.Timeout;
-import org.jboss.netty.util.Timer;
-import org.jboss.netty.util.TimerTask;
+import org.jboss.netty.handler.ssl.SslHandler;
+import org.jboss.netty.handler.timeout.IdleState;
+import org.jboss.netty.handler.timeout.IdleStateEvent;
+import org.jboss.netty.handler.timeout.IdleStateHandler;
 
-public class EventSourceChannelHandler extends SimpleChannelUpstreamHandler implements ConnectionHandler {
+public class EventSourceChannelHandler extends SimpleChannelUpstreamHandler implements EventStreamConnection {
 
   private final EventSourceHandler eventSourceHandler;
   private final EventSourceClient client;
   private final URI uri;
   private final EventStreamParser messageDispatcher;
+  private final EventSourceMetrics metrics;
+  private final ReconnectBackoff backoff;
+  private final ReconnectScheduler reconnectScheduler;
+  private final SslEngineFactory sslEngineFactory;
+  private final boolean secure;
 
-  private static final Timer TIMER = new HashedWheelTimer();
-  private Channel channel;
-  private boolean reconnectOnClose = true;
-  private long reconnectionTimeMillis;
+  private volatile Channel channel;
+  private volatile boolean readsSuspended;
+  private volatile long readsResumedAt = System.nanoTime();
+  private volatile EventStreamLineDecoder lineDecoder;
+  private volatile long bytesReceivedOnClosedChannels;
+  private volatile boolean reconnectOnClose = true;
+  private volatile long readTimeoutMillis;
+  private volatile boolean compression;
   private String lastEventId;
+  private boolean eventStream;
   private final AtomicBoolean reconnecting = new AtomicBoolean(false);
+  private final ReconnectScheduler.Attempt reconnectAttempt = new ReconnectScheduler.Attempt() {
+    @Override
+    public ChannelFuture start() {
+      reconnecting.set(false);
+      if (!reconnectOnClose) {
+        // closed while waiting for the attempt
+        ChannelFuture closed = new DefaultChannelFuture(null, false);
+        closed.setSuccess();
+        return closed;
+      }
+      return connect();
+    }
+
+    @Override
+    public void failed(RuntimeException cause) {
+      eventSourceHandler.onError(cause);
+      reconnect();
+    }
+  };
 
   public EventSourceChannelHandler(EventSourceHandler eventSourceHandler,
-                                   long reconnectionTimeMillis,
+                                   ReconnectBackoff backoff,
                                    EventSourceClient client,
                                    URI uri) {
     this.eventSourceHandler = eventSourceHandler;
-    this.reconnectionTimeMillis = reconnectionTimeMillis;
+    this.backoff = backoff;
     this.client = client;
+    this.reconnectScheduler = client.getReconnectScheduler();
     this.uri = uri;
-    this.messageDispatcher = new EventStreamParser(uri.toString(), eventSourceHandler, this);
+    this.sslEngineFactory = client.getSslEngineFactory();
+    this.secure = "https".equalsIgnoreCase(uri.getScheme());
+    this.metrics = client.getMetrics();
+    this.messageDispatcher = new EventStreamParser(uri.toString(), eventSourceHandler, this, metrics);
   }
 
   @Override
   public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+    if (e instanceof IdleStateEvent) {
+      readTimedOut(ctx, (IdleStateEvent) e);
+      return;
+    }
     super.handleUpstream(ctx, e);
   }
 
   @Override
   public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    if (!reconnectOnClose) {
+      // closed while connecting
+      e.getChannel().close();
+      return;
+    }
+    long timeout = readTimeoutMillis;
+    if (timeout > 0) {
+      // first in the pipeline, so TLS records and chunk framing count as well
+      ctx.getPipeline().addFirst("idle", new IdleStateHandler(reconnectScheduler.getTimer(), timeout, 0, 0,
+                                                              TimeUnit.MILLISECONDS));
+    }
+    if (compression) {
+      // inflates every chunk as it arrives, so events are not held back until more compressed data comes in
+      ctx.getPipeline().addAfter("decoder", "inflater", new HttpContentDecompressor());
+    }
+    SslHandler sslHandler = ctx.getPipeline().get(SslHandler.class);
+    if (sslHandler == null) {
+      sendRequest(e.getChannel());
+    } else {
+      sslHandler.handshake().addListener(new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) {
+          // on failure SslHandler has reported the cause through exceptionCaught, which closes the channel
+          if (future.isSuccess()) {
+            sendRequest(future.getChannel());
+          }
+        }
+      });
+    }
+    channel = e.getChannel();
+    lineDecoder = ctx.getPipeline().get(EventStreamLineDecoder.class);
+    metrics.channelOpened();
+    if (readsSuspended) {
+      // consumers were still behind when the previous connection went away
+      channel.setReadable(false);
+    }
+  }
+
+  private void readTimedOut(ChannelHandlerContext ctx, IdleStateEvent e) {
+    if (e.getState() == IdleState.READER_IDLE && !readsPaused() && e.getChannel().isOpen()) {
+      eventSourceHandler.onError(new EventSourceException("Nothing received from " + uri + " for "
+          + readTimeoutMillis + "ms, reconnecting"));
+      // closing reconnects
+      e.getChannel().close();
+    }
+  }
+
+  /**
+   * Nothing is read while reads are suspended, however lively the server, and once they are resumed the server gets
+   * a whole timeout to be heard from again.
+   */
+  private boolean readsPaused() {
+    return readsSuspended || System.nanoTime() - readsResumedAt < TimeUnit.MILLISECONDS.toNanos(readTimeoutMillis);
+  }
+
+  private void sendRequest(Channel channel) {
     HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri.toString());
     request.addHeader(Names.ACCEPT, "text/event-stream");
     request.addHeader(Names.HOST, uri.getHost());
-    request.addHeader(Names.ORIGIN, "http://" + uri.getHost());
+    request.addHeader(Names.ORIGIN, uri.getScheme() + "://" + uri.getHost());
     request.addHeader(Names.CACHE_CONTROL, "no-cache");
+    if (compression) {
+      request.addHeader(Names.ACCEPT_ENCODING, "gzip, deflate");
+    }
     // application/x-www-form-urlencoded; charset=UTF-8
     if (lastEventId != null) {
       request.addHeader("Last-Event-ID", lastEventId);
     }
-    e.getChannel().write(request);
-    channel = e.getChannel();
+    channel.write(request);
   }
 
   @Override
@@ -85,6 +190,13 @@ public class EventSourceChannelHandler extends SimpleChannelUpstreamHandler impl
 
   @Override
   public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    EventStreamLineDecoder decoder = lineDecoder;
+    if (decoder != null) {
+      bytesReceivedOnClosedChannels += decoder.getBytesReceived();
+      lineDecoder = null;
+      metrics.channelClosed();
+    }
+    messageDispatcher.discardPartialEvent();
     if (reconnectOnClose) {
       reconnect();
     }
@@ -92,17 +204,18 @@ public class EventSourceChannelHandler extends SimpleChannelUpstreamHandler impl
 
   @Override
   public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
-    String line = null;
     if (e.getMessage() instanceof DefaultHttpResponse) {
       DefaultHttpResponse httpMessage = (DefaultHttpResponse) e.getMessage();
+      eventStream = false;
       HttpVersion protocolVersion = httpMessage.getProtocolVersion();
       if (!HttpResponseStatus.OK.equals(httpMessage.getStatus())) {
+        metrics.badStatus(httpMessage.getStatus().getCode());
         eventSourceHandler.onError(new EventSourceException("Bad status from " + uri + ": " + httpMessage.getStatus()));
         reconnect();
         return;
       }
       if (!HttpVersion.HTTP_1_1.equals(protocolVersion)) {
-        eventSourceHandler.onError(new EventSourceException("Not HTTP? " + uri + ": " + line));
+        eventSourceHandler.onError(new EventSourceException("Not HTTP? " + uri + ": " + protocolVersion));
         reconnect();
         return;
       }
@@ -112,15 +225,15 @@ public class EventSourceChannelHandler extends SimpleChannelUpstreamHandler impl
         reconnect();
         return;
       }
+      eventStream = true;
+      backoff.connected();
       eventSourceHandler.onConnect();
-      line = httpMessage.getContent().toString(Charset.defaultCharset());
-    } else if (e.getMessage() instanceof HttpChunk) {
-      line = ((HttpChunk) e.getMessage()).getContent().toString(Charset.defaultCharset());
-    } else {
-      line = (String) e.getMessage();
+    } else if (e.getMessage() instanceof ChannelBuffer && eventStream) {
+      // a single line of the body, split up by EventStreamLineDecoder
+      messageDispatcher.line((ChannelBuffer) e.getMessage());
+    } else if (e.getMessage() instanceof EventStreamLineDecoder.LinePart && eventStream) {
+      messageDispatcher.linePart(((EventStreamLineDecoder.LinePart) e.getMessage()).getContent());
     }
-    // split event by line separators in event parser instead of channel pipeline
-    messageDispatcher.lines(line);
   }
 
   @Override
@@ -130,12 +243,18 @@ public class EventSourceChannelHandler extends SimpleChannelUpstreamHandler impl
       error = new EventSourceException("Failed to connect to " + uri, error);
     }
     eventSourceHandler.onError(error);
-    ctx.getChannel().close();
+    ChannelHandlerContext sslContext = ctx.getPipeline().getContext(SslHandler.class);
+    if (sslContext != null && e.getCause() instanceof SSLException) {
+      // a failed engine can't send close_notify, close the socket underneath SslHandler instead of waiting for it
+      Channels.close(sslContext, Channels.future(ctx.getChannel()));
+    } else {
+      ctx.getChannel().close();
+    }
   }
 
   @Override
   public void setReconnectionTimeMillis(long reconnectionTimeMillis) {
-    this.reconnectionTimeMillis = reconnectionTimeMillis;
+    backoff.setServerRetryMillis(reconnectionTimeMillis);
   }
 
   @Override
@@ -143,6 +262,58 @@ public class EventSourceChannelHandler extends SimpleChannelUpstreamHandler impl
     this.lastEventId = lastEventId;
   }
 
+  @Override
+  public void resumeFrom(String lastEventId) {
+    this.lastEventId = lastEventId;
+    messageDispatcher.setLastEventId(lastEventId);
+  }
+
+  @Override
+  public void suspendReads() {
+    readsSuspended = true;
+    Channel current = channel;
+    if (current != null) {
+      current.setReadable(false);
+    }
+  }
+
+  @Override
+  public void resumeReads() {
+    readsResumedAt = System.nanoTime();
+    readsSuspended = false;
+    Channel current = channel;
+    if (current != null) {
+      current.setReadable(true);
+    }
+  }
+
+  @Override
+  public void setReadTimeoutMillis(long readTimeoutMillis) {
+    this.readTimeoutMillis = readTimeoutMillis;
+  }
+
+  @Override
+  public void setMaxEventSize(int maxEventSize) {
+    messageDispatcher.setMaxEventSize(maxEventSize);
+  }
+
+  @Override
+  public void setCompression(boolean compression) {
+    this.compression = compression;
+  }
+
+  @Override
+  public long getBytesReceived() {
+    EventStreamLineDecoder decoder = lineDecoder;
+    return bytesReceivedOnClosedChannels + (decoder == null ? 0 : decoder.getBytesReceived());
+  }
+
+  @Override
+  public long getEventsReceived() {
+    return messageDispatcher.getEventCount();
+  }
+
+  @Override
   public EventSourceChannelHandler close() {
     reconnectOnClose = false;
     if (channel != null) {
@@ -151,10 +322,58 @@ public class EventSourceChannelHandler extends SimpleChannelUpstreamHandler impl
     return this;
   }
 
+  /**
+   * @return a future without a channel, completed when the connect attempt is; the host is resolved first, by the
+   *         client's {@link DnsResolver}
+   */
+  @Override
   public ChannelFuture connect() {
-    return client.connect(getConnectAddress(), this);
+    final ChannelFuture connected = new DefaultChannelFuture(null, false);
+    client.getDnsResolver().resolve(uri.getHost(), getPort(), new DnsResolver.Listener() {
+      @Override
+      public void resolved(InetSocketAddress address) {
+        ChannelFuture future;
+        try {
+          future = secure
+              ? client.connect(address, sslEngineFactory.newEngine(uri.getHost(), address.getPort()),
+                               EventSourceChannelHandler.this)
+              : client.connect(address, EventSourceChannelHandler.this);
+        } catch (RuntimeException e) {
+          // there is no channel to reconnect from
+          eventSourceHandler.onError(new EventSourceException("Failed to connect to " + uri, e));
+          connected.setFailure(e);
+          if (reconnectOnClose) {
+            reconnect();
+          }
+          return;
+        }
+        // failures are reported by exceptionCaught, and the channel closing reconnects
+        future.addListener(new ChannelFutureListener() {
+          @Override
+          public void operationComplete(ChannelFuture future) {
+            if (future.isSuccess()) {
+              connected.setSuccess();
+            } else {
+              connected.setFailure(future.getCause());
+            }
+          }
+        });
+      }
+
+      @Override
+      public void failed(UnknownHostException cause) {
+        // there is no channel to reconnect from
+        eventSourceHandler.onError(new EventSourceException("Failed to resolve " + uri.getHost(), cause));
+        connected.setFailure(cause);
+        if (reconnectOnClose) {
+          reconnect();
+        }
+      }
+    });
+    return connected;
   }
 
+  @Override
   public EventSourceChannelHandler join() throws InterruptedException {
     if (channel != null) {
       channel.getCloseFuture().await();
@@ -163,21 +382,24 @@ public class EventSourceChannelHandler extends SimpleChannelUpstreamHandler impl
   }
 
   private void reconnect() {
-    if (reconnectionTimeMillis >= 0) {
-      if (!reconnecting.get()) {
-        reconnecting.set(true);
-        TIMER.newTimeout(new TimerTask() {
-          @Override
-          public void run(Timeout timeout) throws Exception {
-            reconnecting.set(false);
-            connect().await();
-          }
-        }, reconnectionTimeMillis, TimeUnit.MILLISECONDS);
-      }
+    if (backoff.isEnabled() && reconnectOnClose && reconnecting.compareAndSet(false, true)) {
+      metrics.reconnectScheduled();
+      reconnectScheduler.schedule(reconnectAttempt, backoff.nextDelayMillis());
     }
   }
 
+  /**
+   * @return the host and port connected to, unresolved
+   */
   public InetSocketAddress getConnectAddress() {
-    return new InetSocketAddress(uri.getHost(), uri.getPort() == -1 ? 80 : uri.getPort());
+    return InetSocketAddress.createUnresolved(uri.getHost(), getPort());
+  }
+
+  private int getPort() {
+    int port = uri.getPort();
+    if (port == -1) {
+      port = secure ? 443 : 80;
+    }
+    return port;
   }
 }
\ No newline at end of file
@@ -0,0 +1,194 @@
+package com.github.eventsource.client.impl.netty;
+
+import com.github.eventsource.client.metrics.EventSourceMetrics;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpMessage;
+
+/**
+ * Splits the body of an event stream response into lines as it arrives. Every complete line is sent upstream
+ * as a {@link ChannelBuffer} without its terminator (CRLF, LF or CR) as soon as the terminator has been
+ * received, no matter how the server's writes were segmented. The {@link HttpMessage} itself is passed on
+ * before any of its lines, with its content moved into the line stream.
+ *
+ * A line that fits into a single chunk is sent as a slice of that chunk. A line that spans chunks is carried
+ * over and assembled in a buffer which is reused for the next one, so upstream handlers must not keep a
+ * reference to a line once messageReceived has returned.
+ *
+ * Lines longer than the maximum line length are passed on in pieces of that length: every piece but the last as
+ * a {@link LinePart}, the last one like any other line. So no more than that is ever buffered, however long
+ * a line is.
+ */
+public class EventStreamLineDecoder extends SimpleChannelUpstreamHandler {
+
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+  private static final int INITIAL_LINE_CAPACITY = 256;
+
+  private final int maxLineLength;
+  private final EventSourceMetrics metrics;
+  private ChannelBuffer partialLine;
+  private boolean skipLineFeed;
+  private volatile long bytesReceived;
+
+  public EventStreamLineDecoder(int maxLineLength) {
+    this(maxLineLength, EventSourceMetrics.NOOP);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param maxLineLength the maximum length of a line passed on whole, longer lines are passed on in pieces
+   * @param metrics receives the number of bytes read
+   */
+  public EventStreamLineDecoder(int maxLineLength, EventSourceMetrics metrics) {
+    if (maxLineLength <= 0) {
+      throw new IllegalArgumentException("maxLineLength must be a positive integer: " + maxLineLength);
+    }
+    this.maxLineLength = maxLineLength;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    Object msg = e.getMessage();
+
+    if (msg instanceof HttpMessage) {
+      HttpMessage message = (HttpMessage) msg;
+      ChannelBuffer content = message.getContent();
+      message.setContent(ChannelBuffers.EMPTY_BUFFER);
+      reset();
+      ctx.sendUpstream(e);
+      decode(ctx, e, content);
+    } else if (msg instanceof HttpChunk) {
+      HttpChunk chunk = (HttpChunk) msg;
+      decode(ctx, e, chunk.getContent());
+      if (chunk.isLast()) {
+        // an incomplete line at the end of the stream is discarded
+        reset();
+      }
+    } else {
+      // Neither HttpMessage or HttpChunk
+      ctx.sendUpstream(e);
+    }
+  }
+
+  private void decode(ChannelHandlerContext ctx, MessageEvent e, ChannelBuffer content) {
+    int index = content.readerIndex();
+    int end = content.writerIndex();
+    bytesReceived += end - index;
+    metrics.bytesRead(end - index);
+
+    if (skipLineFeed && index < end) {
+      // the previous chunk ended with CR, this LF belongs to the same terminator
+      if (content.getByte(index) == LF) {
+        index++;
+      }
+      skipLineFeed = false;
+    }
+
+    while (index < end) {
+      int lineEnd = indexOfLineTerminator(content, index, end);
+      if (lineEnd == -1) {
+        appendPartialLine(ctx, e, content, index, end - index);
+        return;
+      }
+
+      if (partialLine != null && partialLine.readable()) {
+        appendPartialLine(ctx, e, content, index, lineEnd - index);
+        Channels.fireMessageReceived(ctx, partialLine, e.getRemoteAddress());
+        partialLine.clear();
+      } else {
+        // also the last piece of a long line whose other pieces have been passed on already
+        fireLine(ctx, e, content, index, lineEnd - index);
+      }
+
+      if (content.getByte(lineEnd) == CR) {
+        if (lineEnd + 1 == end) {
+          skipLineFeed = true;
+        } else if (content.getByte(lineEnd + 1) == LF) {
+          lineEnd++;
+        }
+      }
+      index = lineEnd + 1;
+    }
+  }
+
+  /**
+   * @return bytes of response content seen by this decoder
+   */
+  public long getBytesReceived() {
+    return bytesReceived;
+  }
+
+  private void appendPartialLine(ChannelHandlerContext ctx, MessageEvent e, ChannelBuffer content, int index,
+                                 int length) {
+    if (partialLine == null) {
+      partialLine = ChannelBuffers.dynamicBuffer(INITIAL_LINE_CAPACITY);
+    }
+    while (partialLine.readableBytes() + length > maxLineLength) {
+      int part = maxLineLength - partialLine.readableBytes();
+      partialLine.writeBytes(content, index, part);
+      Channels.fireMessageReceived(ctx, new LinePart(partialLine), e.getRemoteAddress());
+      partialLine.clear();
+      index += part;
+      length -= part;
+    }
+    partialLine.writeBytes(content, index, length);
+  }
+
+  private void fireLine(ChannelHandlerContext ctx, MessageEvent e, ChannelBuffer content, int index, int length) {
+    while (length > maxLineLength) {
+      Channels.fireMessageReceived(ctx, new LinePart(content.slice(index, maxLineLength)), e.getRemoteAddress());
+      index += maxLineLength;
+      length -= maxLineLength;
+    }
+    Channels.fireMessageReceived(ctx, content.slice(index, length), e.getRemoteAddress());
+  }
+
+  private void reset() {
+    partialLine = null;
+    skipLineFeed = false;
+  }
+
+  private static int indexOfLineTerminator(ChannelBuffer buffer, int index, int end) {
+    if (buffer.hasArray()) {
+      byte[] array = buffer.array();
+      int offset = buffer.arrayOffset();
+      for (int i = index + offset; i < end + offset; i++) {
+        if (array[i] == LF || array[i] == CR) {
+          return i - offset;
+        }
+      }
+      return -1;
+    }
+    for (int i = index; i < end; i++) {
+      byte b = buffer.getByte(i);
+      if (b == LF || b == CR) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * A piece of a line that is too long to be passed on whole, followed by more of the same line. Valid only
+   * during messageReceived, like a line.
+   */
+  public static final class LinePart {
+    private final ChannelBuffer content;
+
+    LinePart(ChannelBuffer content) {
+      this.content = content;
+    }
+
+    public ChannelBuffer getContent() {
+      return content;
+    }
+  }
+}
@@ -0,0 +1,433 @@
+package com.github.eventsource.client.impl.netty4;
+
+import com.github.eventsource.client.EventSourceException;
+import com.github.eventsource.client.EventSourceHandler;
+import com.github.eventsource.client.impl.DnsResolver;
+import com.github.eventsource.client.impl.EventStreamConnection;
+import com.github.eventsource.client.impl.EventStreamParser;
+import com.github.eventsource.client.impl.ReconnectBackoff;
+import com.github.eventsource.client.impl.ReconnectScheduler;
+import com.github.eventsource.client.impl.SslEngineFactory;
+import com.github.eventsource.client.metrics.EventSourceMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpContentDecompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.net.ssl.SSLEngine;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.DefaultChannelFuture;
+
+/**
+ * Netty 4 counterpart of {@link com.github.eventsource.client.impl.netty.EventSourceChannelHandler}. The same
+ * instance is added to the pipeline of every connection it makes, one connection at a time.
+ */
+@ChannelHandler.Sharable
+public class EventSourceChannelHandler extends ChannelInboundHandlerAdapter implements EventStreamConnection {
+
+  private final EventSourceHandler eventSourceHandler;
+  private final Netty4Transport transport;
+  private final URI uri;
+  private final EventStreamParser messageDispatcher;
+  private final EventSourceMetrics metrics;
+  private final ReconnectBackoff backoff;
+  private final ReconnectScheduler reconnectScheduler;
+  private final SslEngineFactory sslEngineFactory;
+  private final boolean secure;
+
+  private volatile Channel channel;
+  private volatile boolean readsSuspended;
+  private volatile long readsResumedAt = System.nanoTime();
+  private volatile EventStreamLineDecoder lineDecoder;
+  private volatile long bytesReceivedOnClosedChannels;
+  private volatile boolean reconnectOnClose = true;
+  private volatile long readTimeoutMillis;
+  private volatile boolean compression;
+  private String lastEventId;
+  private boolean eventStream;
+  private byte[] scratch = new byte[256];
+  private final AtomicBoolean reconnecting = new AtomicBoolean(false);
+  private final ReconnectScheduler.Attempt reconnectAttempt = new ReconnectScheduler.Attempt() {
+    @Override
+    public ChannelFuture start() {
+      reconnecting.set(false);
+      if (!reconnectOnClose) {
+        // closed while waiting for the attempt
+        ChannelFuture closed = new DefaultChannelFuture(null, false);
+        closed.setSuccess();
+        return closed;
+      }
+      return connect();
+    }
+
+    @Override
+    public void failed(RuntimeException cause) {
+      eventSourceHandler.onError(cause);
+      reconnect();
+    }
+  };
+
+  public EventSourceChannelHandler(EventSourceHandler eventSourceHandler,
+                                   ReconnectBackoff backoff,
+                                   Netty4Transport transport,
+                                   URI uri) {
+    this.eventSourceHandler = eventSourceHandler;
+    this.backoff = backoff;
+    this.transport = transport;
+    this.reconnectScheduler = transport.getReconnectScheduler();
+    this.uri = uri;
+    this.sslEngineFactory = transport.getSslEngineFactory();
+    this.secure = "https".equalsIgnoreCase(uri.getScheme());
+    this.metrics = transport.getMetrics();
+    this.messageDispatcher = new EventStreamParser(uri.toString(), eventSourceHandler, this, metrics);
+  }
+
+  @Override
+  public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+    if (!reconnectOnClose) {
+      // closed while connecting
+      ctx.close();
+      return;
+    }
+    long timeout = readTimeoutMillis;
+    if (timeout > 0) {
+      // first in the pipeline, so TLS records and chunk framing count as well; runs on the channel's event loop
+      ctx.pipeline().addFirst("idle", new IdleStateHandler(timeout, 0, 0, TimeUnit.MILLISECONDS));
+    }
+    if (compression) {
+      // inflates every chunk as it arrives, so events are not held back until more compressed data comes in
+      ctx.pipeline().addAfter("decoder", "inflater", new HttpContentDecompressor());
+    }
+    SslHandler sslHandler = ctx.pipeline().get(SslHandler.class);
+    if (sslHandler == null) {
+      sendRequest(ctx);
+    } else {
+      // SslHandler has started the handshake when the channel became active
+      sslHandler.handshakeFuture().addListener(new GenericFutureListener<Future<Channel>>() {
+        @Override
+        public void operationComplete(Future<Channel> future) {
+          if (future.isSuccess()) {
+            sendRequest(ctx);
+          } else {
+            eventSourceHandler.onError(new EventSourceException("TLS handshake with " + uri + " failed",
+                                                                future.cause()));
+            ctx.close();
+          }
+        }
+      });
+    }
+    channel = ctx.channel();
+    lineDecoder = ctx.pipeline().get(EventStreamLineDecoder.class);
+    metrics.channelOpened();
+    if (readsSuspended) {
+      // consumers were still behind when the previous connection went away
+      channel.config().setAutoRead(false);
+    }
+  }
+
+  private void sendRequest(ChannelHandlerContext ctx) {
+    DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri.toString());
+    HttpHeaders headers = request.headers();
+    headers.add(HttpHeaderNames.ACCEPT, "text/event-stream");
+    headers.add(HttpHeaderNames.HOST, uri.getHost());
+    headers.add(HttpHeaderNames.ORIGIN, uri.getScheme() + "://" + uri.getHost());
+    headers.add(HttpHeaderNames.CACHE_CONTROL, "no-cache");
+    if (compression) {
+      headers.add(HttpHeaderNames.ACCEPT_ENCODING, "gzip, deflate");
+    }
+    if (lastEventId != null) {
+      headers.add("Last-Event-ID", lastEventId);
+    }
+    ctx.writeAndFlush(request);
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    channel = null;
+    EventStreamLineDecoder decoder = lineDecoder;
+    if (decoder != null) {
+      bytesReceivedOnClosedChannels += decoder.getBytesReceived();
+      lineDecoder = null;
+      metrics.channelClosed();
+    }
+    messageDispatcher.discardPartialEvent();
+    if (reconnectOnClose) {
+      reconnect();
+    }
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (msg instanceof HttpResponse) {
+      HttpResponse response = (HttpResponse) msg;
+      eventStream = false;
+      HttpVersion protocolVersion = response.protocolVersion();
+      if (!HttpResponseStatus.OK.equals(response.status())) {
+        metrics.badStatus(response.status().code());
+        eventSourceHandler.onError(new EventSourceException("Bad status from " + uri + ": " + response.status()));
+        reconnect();
+        return;
+      }
+      if (!HttpVersion.HTTP_1_1.equals(protocolVersion)) {
+        eventSourceHandler.onError(new EventSourceException("Not HTTP? " + uri + ": " + protocolVersion));
+        reconnect();
+        return;
+      }
+      if (!"text/event-stream".equals(response.headers().get(HttpHeaderNames.CONTENT_TYPE))) {
+        eventSourceHandler.onError(new EventSourceException("Not event stream: " + uri
+            + " (expected Content-Type: text/event-stream"));
+        reconnect();
+        return;
+      }
+      eventStream = true;
+      backoff.connected();
+      eventSourceHandler.onConnect();
+    } else if (msg instanceof ByteBuf) {
+      // a single line of the body, owned by EventStreamLineDecoder
+      if (eventStream) {
+        line((ByteBuf) msg, false);
+      }
+    } else if (msg instanceof EventStreamLineDecoder.LinePart) {
+      if (eventStream) {
+        line(((EventStreamLineDecoder.LinePart) msg).content(), true);
+      }
+    } else {
+      ReferenceCountUtil.release(msg);
+    }
+  }
+
+  /**
+   * @param part whether it is a piece of a longer line rather than a whole line
+   */
+  private void line(ByteBuf line, boolean part) {
+    int length = line.readableBytes();
+    byte[] bytes;
+    int offset;
+    if (line.hasArray()) {
+      bytes = line.array();
+      offset = line.arrayOffset() + line.readerIndex();
+    } else {
+      // pooled direct buffers have no array, copy into one that is reused for every line
+      if (scratch.length < length) {
+        scratch = new byte[Math.max(length, scratch.length * 2)];
+      }
+      line.getBytes(line.readerIndex(), scratch, 0, length);
+      bytes = scratch;
+      offset = 0;
+    }
+    if (part) {
+      messageDispatcher.linePart(bytes, offset, length);
+    } else {
+      messageDispatcher.line(bytes, offset, length);
+    }
+  }
+
+  @Override
+  public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+    if (evt instanceof IdleStateEvent) {
+      if (((IdleStateEvent) evt).state() == IdleState.READER_IDLE && !readsPaused() && ctx.channel().isOpen()) {
+        eventSourceHandler.onError(new EventSourceException("Nothing received from " + uri + " for "
+            + readTimeoutMillis + "ms, reconnecting"));
+        // closing reconnects
+        ctx.close();
+      }
+      return;
+    }
+    super.userEventTriggered(ctx, evt);
+  }
+
+  /**
+   * Nothing is read while reads are suspended, however lively the server, and once they are resumed the server gets
+   * a whole timeout to be heard from again.
+   */
+  private boolean readsPaused() {
+    return readsSuspended || System.nanoTime() - readsResumedAt < TimeUnit.MILLISECONDS.toNanos(readTimeoutMillis);
+  }
+
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+    eventSourceHandler.onError(cause);
+    ctx.close();
+  }
+
+  @Override
+  public void setReconnectionTimeMillis(long reconnectionTimeMillis) {
+    backoff.setServerRetryMillis(reconnectionTimeMillis);
+  }
+
+  @Override
+  public void setLastEventId(String lastEventId) {
+    this.lastEventId = lastEventId;
+  }
+
+  @Override
+  public void resumeFrom(String lastEventId) {
+    this.lastEventId = lastEventId;
+    messageDispatcher.setLastEventId(lastEventId);
+  }
+
+  @Override
+  public void suspendReads() {
+    readsSuspended = true;
+    Channel current = channel;
+    if (current != null) {
+      current.config().setAutoRead(false);
+    }
+  }
+
+  @Override
+  public void resumeReads() {
+    readsResumedAt = System.nanoTime();
+    readsSuspended = false;
+    Channel current = channel;
+    if (current != null) {
+      current.config().setAutoRead(true);
+    }
+  }
+
+  @Override
+  public void setReadTimeoutMillis(long readTimeoutMillis) {
+    this.readTimeoutMillis = readTimeoutMillis;
+  }
+
+  @Override
+  public void setMaxEventSize(int maxEventSize) {
+    messageDispatcher.setMaxEventSize(maxEventSize);
+  }
+
+  @Override
+  public void setCompression(boolean compression) {
+    this.compression = compression;
+  }
+
+  @Override
+  public long getBytesReceived() {
+    EventStreamLineDecoder decoder = lineDecoder;
+    return bytesReceivedOnClosedChannels + (decoder == null ? 0 : decoder.getBytesReceived());
+  }
+
+  @Override
+  public long getEventsReceived() {
+    return messageDispatcher.getEventCount();
+  }
+
+  @Override
+  public EventSourceChannelHandler close() {
+    reconnectOnClose = false;
+    Channel current = channel;
+    if (current != null) {
+      current.close();
+    }
+    return this;
+  }
+
+  /**
+   * @return a Netty 3 future without a channel, completed when the Netty 4 connect attempt is; the host is resolved
+   *         first, by the transport's {@link DnsResolver}
+   */
+  @Override
+  public ChannelFuture connect() {
+    final ChannelFuture connected = new DefaultChannelFuture(null, false);
+    transport.getDnsResolver().resolve(uri.getHost(), getPort(), new DnsResolver.Listener() {
+      @Override
+      public void resolved(InetSocketAddress address) {
+        try {
+          connect(address, connected);
+        } catch (RuntimeException e) {
+          connectFailed(e, connected);
+        }
+      }
+
+      @Override
+      public void failed(UnknownHostException cause) {
+        eventSourceHandler.onError(new EventSourceException("Failed to resolve " + uri.getHost(), cause));
+        connected.setFailure(cause);
+        if (reconnectOnClose) {
+          reconnect();
+        }
+      }
+    });
+    return connected;
+  }
+
+  private void connect(InetSocketAddress address, final ChannelFuture connected) {
+    io.netty.channel.ChannelFuture future;
+    if (transport.isHttp2()) {
+      future = transport.openStream(address, secure ? uri.getHost() : null, this);
+    } else {
+      SSLEngine sslEngine = secure ? sslEngineFactory.newEngine(uri.getHost(), address.getPort()) : null;
+      future = transport.connect(address, sslEngine, this);
+    }
+    future.addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(io.netty.channel.ChannelFuture future) {
+        if (future.isSuccess()) {
+          connected.setSuccess();
+          return;
+        }
+        // the channel never became active, so there is no channelInactive to reconnect from
+        connectFailed(future.cause(), connected);
+      }
+    });
+  }
+
+  private void connectFailed(Throwable cause, ChannelFuture connected) {
+    eventSourceHandler.onError(new EventSourceException("Failed to connect to " + uri, cause));
+    connected.setFailure(cause);
+    if (reconnectOnClose) {
+      reconnect();
+    }
+  }
+
+  @Override
+  public EventSourceChannelHandler join() throws InterruptedException {
+    Channel current = channel;
+    if (current != null) {
+      current.closeFuture().await();
+    }
+    return this;
+  }
+
+  private void reconnect() {
+    if (backoff.isEnabled() && reconnectOnClose && reconnecting.compareAndSet(false, true)) {
+      metrics.reconnectScheduled();
+      reconnectScheduler.schedule(reconnectAttempt, backoff.nextDelayMillis());
+    }
+  }
+
+  /**
+   * @return the host and port connected to, unresolved
+   */
+  public InetSocketAddress getConnectAddress() {
+    return InetSocketAddress.createUnresolved(uri.getHost(), getPort());
+  }
+
+  private int getPort() {
+    int port = uri.getPort();
+    if (port == -1) {
+      port = secure ? 443 : 80;
+    }
+    return port;
+  }
+}
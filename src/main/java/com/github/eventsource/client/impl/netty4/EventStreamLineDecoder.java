@@ -0,0 +1,172 @@
+package com.github.eventsource.client.impl.netty4;
+
+import com.github.eventsource.client.metrics.EventSourceMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ByteProcessor;
+
+/**
+ * Netty 4 counterpart of {@link com.github.eventsource.client.impl.netty.EventStreamLineDecoder}: splits the
+ * body of an event stream response into lines, each sent upstream as a {@link ByteBuf} without its terminator.
+ * The {@link HttpResponse} is passed on before any of its lines.
+ *
+ * Lines are slices of the received content, or of a pooled buffer that a line spanning several chunks is
+ * assembled in. Either way they are owned by this decoder: upstream handlers must neither release them nor keep
+ * a reference once channelRead has returned. The content itself is released as soon as it has been split.
+ * Lines longer than the maximum line length are passed on in pieces, every piece but the last as a
+ * {@link LinePart}.
+ */
+public class EventStreamLineDecoder extends ChannelInboundHandlerAdapter {
+
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+  private static final int INITIAL_LINE_CAPACITY = 256;
+
+  private final int maxLineLength;
+  private final EventSourceMetrics metrics;
+  private ByteBuf partialLine;
+  private boolean skipLineFeed;
+  private volatile long bytesReceived;
+
+  public EventStreamLineDecoder(int maxLineLength) {
+    this(maxLineLength, EventSourceMetrics.NOOP);
+  }
+
+  /**
+   * @param maxLineLength the maximum length of a line passed on whole, longer lines are passed on in pieces
+   * @param metrics receives the number of bytes read
+   */
+  public EventStreamLineDecoder(int maxLineLength, EventSourceMetrics metrics) {
+    if (maxLineLength <= 0) {
+      throw new IllegalArgumentException("maxLineLength must be a positive integer: " + maxLineLength);
+    }
+    this.maxLineLength = maxLineLength;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (msg instanceof HttpResponse) {
+      reset();
+      ctx.fireChannelRead(msg);
+    } else if (msg instanceof HttpContent) {
+      HttpContent content = (HttpContent) msg;
+      try {
+        decode(ctx, content.content());
+        if (content instanceof LastHttpContent) {
+          // an incomplete line at the end of the stream is discarded
+          reset();
+        }
+      } finally {
+        content.release();
+      }
+    } else {
+      ctx.fireChannelRead(msg);
+    }
+  }
+
+  private void decode(ChannelHandlerContext ctx, ByteBuf content) {
+    int index = content.readerIndex();
+    int end = content.writerIndex();
+    bytesReceived += end - index;
+    metrics.bytesRead(end - index);
+
+    if (skipLineFeed && index < end) {
+      // the previous chunk ended with CR, this LF belongs to the same terminator
+      if (content.getByte(index) == LF) {
+        index++;
+      }
+      skipLineFeed = false;
+    }
+
+    while (index < end) {
+      int lineEnd = content.forEachByte(index, end - index, ByteProcessor.FIND_CRLF);
+      if (lineEnd == -1) {
+        appendPartialLine(ctx, content, index, end - index);
+        return;
+      }
+
+      if (partialLine != null && partialLine.isReadable()) {
+        appendPartialLine(ctx, content, index, lineEnd - index);
+        ctx.fireChannelRead(partialLine);
+        partialLine.clear();
+      } else {
+        // also the last piece of a long line whose other pieces have been passed on already
+        fireLine(ctx, content, index, lineEnd - index);
+      }
+
+      if (content.getByte(lineEnd) == CR) {
+        if (lineEnd + 1 == end) {
+          skipLineFeed = true;
+        } else if (content.getByte(lineEnd + 1) == LF) {
+          lineEnd++;
+        }
+      }
+      index = lineEnd + 1;
+    }
+  }
+
+  /**
+   * @return bytes of response content seen by this decoder
+   */
+  public long getBytesReceived() {
+    return bytesReceived;
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx) {
+    reset();
+  }
+
+  private void appendPartialLine(ChannelHandlerContext ctx, ByteBuf content, int index, int length) {
+    if (partialLine == null) {
+      partialLine = ctx.alloc().buffer(INITIAL_LINE_CAPACITY);
+    }
+    while (partialLine.readableBytes() + length > maxLineLength) {
+      int part = maxLineLength - partialLine.readableBytes();
+      partialLine.writeBytes(content, index, part);
+      ctx.fireChannelRead(new LinePart(partialLine));
+      partialLine.clear();
+      index += part;
+      length -= part;
+    }
+    partialLine.writeBytes(content, index, length);
+  }
+
+  private void fireLine(ChannelHandlerContext ctx, ByteBuf content, int index, int length) {
+    while (length > maxLineLength) {
+      ctx.fireChannelRead(new LinePart(content.slice(index, maxLineLength)));
+      index += maxLineLength;
+      length -= maxLineLength;
+    }
+    ctx.fireChannelRead(content.slice(index, length));
+  }
+
+  private void reset() {
+    if (partialLine != null) {
+      partialLine.release();
+      partialLine = null;
+    }
+    skipLineFeed = false;
+  }
+
+  /**
+   * A piece of a line that is too long to be passed on whole, followed by more of the same line. Owned by the
+   * decoder like a line.
+   */
+  public static final class LinePart {
+    private final ByteBuf content;
+
+    LinePart(ByteBuf content) {
+      this.content = content;
+    }
+
+    public ByteBuf content() {
+      return content;
+    }
+  }
+}
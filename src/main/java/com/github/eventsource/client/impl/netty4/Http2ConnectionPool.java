@@ -0,0 +1,270 @@
+package com.github.eventsource.client.impl.netty4;
+
+import com.github.eventsource.client.EventSourceException;
+import com.github.eventsource.client.impl.SslEngineFactory;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.handler.codec.http2.DefaultHttp2WindowUpdateFrame;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2ConnectionPrefaceAndSettingsFrameWrittenEvent;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The HTTP/2 connections of a {@link Netty4Transport}. Streams to the same host and port share a connection, each
+ * as an h2 stream of its own, and a new connection is only made once the existing ones have as many streams as
+ * the server allows. Plain http connections speak h2c with prior knowledge, https ones negotiate h2 with ALPN.
+ *
+ * A stream's pipeline turns frames back into the {@link io.netty.handler.codec.http.HttpResponse} and content an
+ * HTTP/1.1 connection would produce, so the line decoder and the channel handler work on it unchanged. Every stream
+ * has a flow-control window of its own: while a stream's reads are suspended, its unread frames are not
+ * acknowledged, so the server stops sending on that stream once {@link #STREAM_WINDOW_SIZE} bytes are in flight
+ * while the other streams of the connection carry on. The connection window is opened all the way for that reason.
+ */
+public class Http2ConnectionPool {
+  /** Flow-control window of every stream, the most a suspended stream lets the server send ahead. */
+  public static final int STREAM_WINDOW_SIZE = 1024 * 1024;
+  private static final int CONNECTION_WINDOW_SIZE = Integer.MAX_VALUE;
+  /** Streams per connection assumed until the server's settings have arrived. */
+  private static final int DEFAULT_MAX_STREAMS = 100;
+
+  private final Bootstrap bootstrap;
+  private final ChannelGroup channels;
+  private final SslEngineFactory sslEngineFactory;
+  private final Map<String, List<Connection>> connections = new HashMap<String, List<Connection>>();
+
+  Http2ConnectionPool(Bootstrap bootstrap, ChannelGroup channels, SslEngineFactory sslEngineFactory) {
+    this.bootstrap = bootstrap;
+    this.channels = channels;
+    this.sslEngineFactory = sslEngineFactory;
+  }
+
+  /**
+   * Opens a stream whose pipeline ends with the given handler, on a connection to the address that has room for
+   * it or on a new one.
+   *
+   * @param host   the server's host name, for TLS; null for a plain h2c connection
+   * @param stream sets up the stream's pipeline
+   * @return completed once the stream is open, which is before its request is sent
+   */
+  public ChannelFuture openStream(InetSocketAddress address, String host, final ChannelInitializer<Channel> stream) {
+    final Connection connection = connectionFor(address, host);
+    final ChannelPromise opened = connection.channel.newPromise();
+    connection.ready.addListener(new GenericFutureListener<Future<Void>>() {
+      @Override
+      public void operationComplete(Future<Void> ready) {
+        if (!ready.isSuccess()) {
+          connection.streams.decrementAndGet();
+          opened.setFailure(ready.cause());
+          return;
+        }
+        new Http2StreamChannelBootstrap(connection.channel).handler(stream).open().addListener(
+            new GenericFutureListener<Future<Http2StreamChannel>>() {
+              @Override
+              public void operationComplete(Future<Http2StreamChannel> future) {
+                if (!future.isSuccess()) {
+                  connection.streams.decrementAndGet();
+                  opened.setFailure(future.cause());
+                  return;
+                }
+                future.getNow().closeFuture().addListener(new ChannelFutureListener() {
+                  @Override
+                  public void operationComplete(ChannelFuture closed) {
+                    connection.streams.decrementAndGet();
+                  }
+                });
+                opened.setSuccess();
+              }
+            });
+      }
+    });
+    return opened;
+  }
+
+  /**
+   * @return number of connections, connected or connecting
+   */
+  public synchronized int getConnectionCount() {
+    int count = 0;
+    for (List<Connection> list : connections.values()) {
+      count += list.size();
+    }
+    return count;
+  }
+
+  /**
+   * Picks a connection with room for one more stream and counts the stream against it.
+   */
+  private synchronized Connection connectionFor(InetSocketAddress address, String host) {
+    final String key = (host != null ? "https://" : "http://") + address.getHostString() + ":" + address.getPort();
+    List<Connection> list = connections.get(key);
+    if (list == null) {
+      list = new ArrayList<Connection>();
+      connections.put(key, list);
+    }
+    for (Connection connection : list) {
+      if (connection.hasRoom()) {
+        connection.streams.incrementAndGet();
+        return connection;
+      }
+    }
+    final Connection connection = connect(address, host);
+    connection.streams.incrementAndGet();
+    list.add(connection);
+    connection.channel.closeFuture().addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) {
+        remove(key, connection);
+      }
+    });
+    return connection;
+  }
+
+  private synchronized void remove(String key, Connection connection) {
+    List<Connection> list = connections.get(key);
+    if (list != null && list.remove(connection) && list.isEmpty()) {
+      connections.remove(key);
+    }
+  }
+
+  private Connection connect(InetSocketAddress address, final String host) {
+    final int port = address.getPort();
+    final Connection connection = new Connection(host != null);
+    ChannelFuture connected = bootstrap.clone().handler(new ChannelInitializer<Channel>() {
+      @Override
+      protected void initChannel(Channel channel) {
+        ChannelPipeline pipeline = channel.pipeline();
+        if (host != null) {
+          pipeline.addLast("ssl", new SslHandler(sslEngineFactory.newEngine(host, port, ApplicationProtocolNames.HTTP_2)));
+        }
+        pipeline.addLast("h2", Http2FrameCodecBuilder.forClient()
+            .initialSettings(Http2Settings.defaultSettings().initialWindowSize(STREAM_WINDOW_SIZE).pushEnabled(false))
+            .build());
+        pipeline.addLast("connection", connection);
+        pipeline.addLast("streams", new Http2MultiplexHandler(RefusePushes.INSTANCE));
+      }
+    }).connect(address);
+    connection.connecting(connected);
+    channels.add(connected.channel());
+    return connection;
+  }
+
+  /**
+   * A connection and the streams counted against it. Sits between the frame codec and the multiplexer, where it
+   * sees the codec's preface go out: streams can be opened from then on, and for TLS once h2 has been negotiated.
+   */
+  private static final class Connection extends ChannelInboundHandlerAdapter {
+    final boolean secure;
+    final Promise<Void> ready = GlobalEventExecutor.INSTANCE.newPromise();
+    final AtomicInteger streams = new AtomicInteger();
+    volatile Channel channel;
+
+    Connection(boolean secure) {
+      this.secure = secure;
+    }
+
+    void connecting(ChannelFuture connected) {
+      channel = connected.channel();
+      connected.addListener(new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) {
+          if (!future.isSuccess()) {
+            ready.tryFailure(future.cause());
+          }
+        }
+      });
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+      if (evt instanceof Http2ConnectionPrefaceAndSettingsFrameWrittenEvent) {
+        // unread data of suspended streams must not use up the window the other streams need
+        ctx.writeAndFlush(new DefaultHttp2WindowUpdateFrame(CONNECTION_WINDOW_SIZE - Http2CodecUtil.DEFAULT_WINDOW_SIZE));
+        if (secure) {
+          awaitHandshake(ctx.pipeline().get(SslHandler.class));
+        } else {
+          ready.trySuccess(null);
+        }
+      }
+      super.userEventTriggered(ctx, evt);
+    }
+
+    private void awaitHandshake(final SslHandler sslHandler) {
+      sslHandler.handshakeFuture().addListener(new GenericFutureListener<Future<Channel>>() {
+        @Override
+        public void operationComplete(Future<Channel> handshake) {
+          if (!handshake.isSuccess()) {
+            ready.tryFailure(handshake.cause());
+            return;
+          }
+          String protocol = sslHandler.engine().getApplicationProtocol();
+          if (!ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+            ready.tryFailure(new EventSourceException("HTTP/2 not negotiated with " + channel.remoteAddress()
+                + ", ALPN protocol: " + protocol));
+            channel.close();
+            return;
+          }
+          ready.trySuccess(null);
+        }
+      });
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      ready.tryFailure(new ClosedChannelException());
+      super.channelInactive(ctx);
+    }
+
+    boolean hasRoom() {
+      if (channel.closeFuture().isDone()) {
+        return false;
+      }
+      Http2FrameCodec codec = channel.pipeline().get(Http2FrameCodec.class);
+      if (codec == null || !ready.isSuccess()) {
+        // still connecting
+        return streams.get() < DEFAULT_MAX_STREAMS;
+      }
+      return !codec.connection().goAwayReceived()
+          && streams.get() < codec.connection().local().maxActiveStreams();
+    }
+  }
+
+  /**
+   * Push is disabled in the client's settings, so a pushed stream is a protocol error on the server's part.
+   */
+  @ChannelHandler.Sharable
+  private static final class RefusePushes extends ChannelInboundHandlerAdapter {
+    static final RefusePushes INSTANCE = new RefusePushes();
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+      ctx.close();
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package com.github.eventsource.client.impl.netty4;
+
+import com.github.eventsource.client.EventSourceHandler;
+import com.github.eventsource.client.impl.DnsResolver;
+import com.github.eventsource.client.impl.ReconnectBackoff;
+import com.github.eventsource.client.impl.ReconnectScheduler;
+import com.github.eventsource.client.impl.SslEngineFactory;
+import com.github.eventsource.client.metrics.EventSourceMetrics;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.HttpRequestEncoder;
+import io.netty.handler.codec.http.HttpResponseDecoder;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLEngine;
+
+/**
+ * The Netty 4 side of an {@link com.github.eventsource.client.EventSourceClient}: one event loop group that every
+ * connection is registered with, buffers from the pooled allocator, and the native epoll transport when it is
+ * on the classpath and supported by the platform, NIO otherwise. Created for HTTP/2, streams are multiplexed over
+ * shared connections by an {@link Http2ConnectionPool} instead of getting a connection each.
+ */
+public class Netty4Transport {
+  private final EventLoopGroup group;
+  private final Bootstrap bootstrap;
+  private final ChannelGroup channels = new DefaultChannelGroup("eventsource-client", GlobalEventExecutor.INSTANCE);
+  private final boolean nativeTransport;
+  private final ReconnectScheduler reconnectScheduler;
+  private final SslEngineFactory sslEngineFactory;
+  private final DnsResolver dnsResolver;
+  private final Http2ConnectionPool http2;
+  private volatile EventSourceMetrics metrics = EventSourceMetrics.NOOP;
+
+  /**
+   * @param workerCount        number of event loop threads the connections are spread across
+   * @param reconnectScheduler runs the reconnects of every connection
+   * @param sslEngineFactory   creates the engines of https connections
+   */
+  public Netty4Transport(int workerCount, ReconnectScheduler reconnectScheduler, SslEngineFactory sslEngineFactory) {
+    this(workerCount, reconnectScheduler, sslEngineFactory, false);
+  }
+
+  /**
+   * @param http2 whether streams are opened as HTTP/2 streams over shared connections
+   */
+  public Netty4Transport(int workerCount,
+                         ReconnectScheduler reconnectScheduler,
+                         SslEngineFactory sslEngineFactory,
+                         boolean http2) {
+    this(workerCount, reconnectScheduler, sslEngineFactory, new DnsResolver(), http2);
+  }
+
+  /**
+   * @param dnsResolver resolves the hosts connected to
+   * @param http2       whether streams are opened as HTTP/2 streams over shared connections
+   */
+  public Netty4Transport(int workerCount,
+                         ReconnectScheduler reconnectScheduler,
+                         SslEngineFactory sslEngineFactory,
+                         DnsResolver dnsResolver,
+                         boolean http2) {
+    this.reconnectScheduler = reconnectScheduler;
+    this.sslEngineFactory = sslEngineFactory;
+    this.dnsResolver = dnsResolver;
+    nativeTransport = NativeEpoll.isAvailable();
+    bootstrap = new Bootstrap();
+    if (nativeTransport) {
+      group = NativeEpoll.newEventLoopGroup(workerCount);
+      bootstrap.channel(NativeEpoll.channelClass());
+    } else {
+      group = new NioEventLoopGroup(workerCount);
+      bootstrap.channel(NioSocketChannel.class);
+    }
+    bootstrap.group(group)
+        .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+        .option(ChannelOption.TCP_NODELAY, true);
+    this.http2 = http2 ? new Http2ConnectionPool(bootstrap, channels, sslEngineFactory) : null;
+  }
+
+  public EventSourceChannelHandler newConnection(EventSourceHandler eventSourceHandler,
+                                                 ReconnectBackoff backoff,
+                                                 URI uri) {
+    return new EventSourceChannelHandler(eventSourceHandler, backoff, this, uri);
+  }
+
+  /**
+   * Opens a new connection whose pipeline ends with the given handler.
+   */
+  public ChannelFuture connect(InetSocketAddress address, ChannelHandler handler) {
+    return connect(address, null, handler);
+  }
+
+  /**
+   * Opens a new connection whose pipeline ends with the given handler.
+   *
+   * @param sslEngine engine to encrypt the connection with, null for a plain one
+   */
+  public ChannelFuture connect(InetSocketAddress address, final SSLEngine sslEngine, final ChannelHandler handler) {
+    ChannelFuture future = bootstrap.clone().handler(new ChannelInitializer<Channel>() {
+      @Override
+      protected void initChannel(Channel channel) {
+        ChannelPipeline pipeline = channel.pipeline();
+        if (sslEngine != null) {
+          pipeline.addLast("ssl", new SslHandler(sslEngine));
+        }
+        pipeline.addLast("decoder", new HttpResponseDecoder());
+        pipeline.addLast("lines", new EventStreamLineDecoder(32 * 1024, metrics));
+        pipeline.addLast("encoder", new HttpRequestEncoder());
+        pipeline.addLast("es-handler", handler);
+      }
+    }).connect(address);
+    channels.add(future.channel());
+    return future;
+  }
+
+  /**
+   * Opens an HTTP/2 stream whose pipeline ends with the given handler, see {@link Http2ConnectionPool}.
+   *
+   * @param host the server's host name for https, null for plain h2c
+   */
+  public ChannelFuture openStream(InetSocketAddress address, String host, final ChannelHandler handler) {
+    return http2.openStream(address, host, new ChannelInitializer<Channel>() {
+      @Override
+      protected void initChannel(Channel stream) {
+        ChannelPipeline pipeline = stream.pipeline();
+        // frames in, HttpResponse and HttpContent out, as a line decoder and handler made for HTTP/1.1 expect
+        pipeline.addLast("decoder", new Http2StreamFrameToHttpObjectCodec(false));
+        pipeline.addLast("lines", new EventStreamLineDecoder(32 * 1024, metrics));
+        pipeline.addLast("es-handler", handler);
+      }
+    });
+  }
+
+  /**
+   * @return whether streams are HTTP/2 streams over shared connections
+   */
+  public boolean isHttp2() {
+    return http2 != null;
+  }
+
+  public EventSourceMetrics getMetrics() {
+    return metrics;
+  }
+
+  public void setMetrics(EventSourceMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  public ReconnectScheduler getReconnectScheduler() {
+    return reconnectScheduler;
+  }
+
+  public SslEngineFactory getSslEngineFactory() {
+    return sslEngineFactory;
+  }
+
+  public DnsResolver getDnsResolver() {
+    return dnsResolver;
+  }
+
+  /**
+   * @return true if connections use native epoll rather than NIO
+   */
+  public boolean isNative() {
+    return nativeTransport;
+  }
+
+  public int getOpenChannelCount() {
+    return channels.size();
+  }
+
+  public void shutdown() {
+    channels.close().awaitUninterruptibly();
+    group.shutdownGracefully(0, 2, TimeUnit.SECONDS).awaitUninterruptibly();
+  }
+
+  /**
+   * Keeps every reference to the epoll classes in one place, so that the transport still loads when the optional
+   * netty-transport-native-epoll dependency is missing.
+   */
+  private static final class NativeEpoll {
+    static boolean isAvailable() {
+      try {
+        return Epoll.isAvailable();
+      } catch (NoClassDefFoundError e) {
+        return false;
+      }
+    }
+
+    static EventLoopGroup newEventLoopGroup(int workerCount) {
+      return new EpollEventLoopGroup(workerCount);
+    }
+
+    static Class<? extends Channel> channelClass() {
+      return EpollSocketChannel.class;
+    }
+  }
+}
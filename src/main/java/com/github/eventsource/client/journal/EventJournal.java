@@ -0,0 +1,468 @@
+package com.github.eventsource.client.journal;
+
+import com.github.eventsource.client.MessageEvent;
+import com.github.eventsource.client.RawMessageEvent;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only log of received events in a directory of memory-mapped segment files. Every event is written
+ * with its name, last event ID, data and the time it was received; {@link #reader()} reads them back in order,
+ * also while events are still being appended, and {@link JournalReader#replay} feeds them to any
+ * {@link com.github.eventsource.client.EventSourceHandler}.
+ *
+ * A segment is a file of fixed size named after the sequence number of its first event. Once an event doesn't
+ * fit into the current segment anymore, a new one is started and the full one is synced to disk by a background
+ * thread, which then deletes old segments, see {@link #setRetention(long, long)}. Appending never waits for the
+ * disk: it only copies the event into the mapping, so an event reaches the disk when the operating system writes
+ * the page back, its segment has been rolled and synced or {@link #flush()} is called.
+ *
+ * Records are a length, the receive time and three length-prefixed UTF-8 strings. The length is written last, so
+ * readers never see a partial record.
+ */
+public class EventJournal implements Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    static final int MAGIC = 0x45534a4c;
+    static final int VERSION = 1;
+    // magic, version, first sequence, receive time of the last event once the segment is rolled
+    static final int HEADER_SIZE = 24;
+    private static final int LAST_RECEIVED_AT_OFFSET = 16;
+    private static final String SUFFIX = ".journal";
+
+    private final File directory;
+    private final int segmentSize;
+    private final LinkedList<Segment> segments = new LinkedList<Segment>();
+    private volatile long maxBytes = Long.MAX_VALUE;
+    private volatile long maxAgeMillis = Long.MAX_VALUE;
+    private volatile Segment current;
+    private MappedByteBuffer buffer;
+    private ByteBuffer out;
+    private volatile int writePosition;
+    private volatile long nextSequence;
+    private long lastReceivedAtMillis;
+    private boolean closed;
+    private final ExecutorService roller;
+
+    public EventJournal(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens the journal in the given directory, appending to its last segment if it has any.
+     *
+     * @param segmentSize size of a segment file, which limits the size of a single event
+     */
+    public EventJournal(File directory, int segmentSize) throws IOException {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("segmentSize must be greater than " + HEADER_SIZE + ": " + segmentSize);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().endsWith(SUFFIX);
+            }
+        });
+        // names are zero-padded sequence numbers
+        Arrays.sort(files);
+        for (File file : files) {
+            segments.add(readHeader(file));
+        }
+        if (segments.isEmpty()) {
+            openSegment(0);
+        } else {
+            recover(segments.getLast());
+        }
+        roller = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "journal-roller " + EventJournal.this.directory);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Deletes the oldest segments once the journal is larger than <code>maxBytes</code>, and segments whose last
+     * event was received more than <code>maxAgeMillis</code> ago. Checked in the background whenever a segment is
+     * rolled; the current segment is always kept.
+     *
+     * @return self
+     */
+    public EventJournal setRetention(long maxBytes, long maxAgeMillis) {
+        if (maxBytes <= 0 || maxAgeMillis <= 0) {
+            throw new IllegalArgumentException("Retention limits must be positive: " + maxBytes + ", " + maxAgeMillis);
+        }
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        return this;
+    }
+
+    /**
+     * Appends a message received just now.
+     *
+     * @return the sequence number of the event
+     */
+    public long append(String event, MessageEvent message) throws IOException {
+        return append(event, message.lastEventId, message.data, System.currentTimeMillis());
+    }
+
+    /**
+     * Appends a message received just now, copying its data as it is.
+     *
+     * @return the sequence number of the event
+     */
+    public long append(String event, RawMessageEvent message) throws IOException {
+        return append(event, message.lastEventId, message.dataBuffer(), System.currentTimeMillis());
+    }
+
+    /**
+     * @return the sequence number of the event
+     * @throws IOException if the journal is closed, the event is larger than a segment or a new segment can't
+     *                     be created
+     */
+    public long append(String event, String lastEventId, String data, long receivedAtMillis) throws IOException {
+        return append(event, lastEventId, data == null ? null : ByteBuffer.wrap(data.getBytes(UTF_8)), receivedAtMillis);
+    }
+
+    /**
+     * @param data the remaining bytes are the UTF-8 encoded data, null for none
+     * @return the sequence number of the event
+     * @throws IOException if the journal is closed, the event is larger than a segment or a new segment can't
+     *                     be created
+     */
+    public synchronized long append(String event, String lastEventId, ByteBuffer data, long receivedAtMillis)
+            throws IOException {
+        if (closed) {
+            throw new IOException("Journal is closed: " + directory);
+        }
+        byte[] eventBytes = bytes(event);
+        byte[] idBytes = bytes(lastEventId);
+        int length = 8 + sizeOf(eventBytes) + sizeOf(idBytes) + sizeOf(data == null ? -1 : data.remaining());
+        int recordSize = 4 + length;
+        if (recordSize > segmentSize - HEADER_SIZE) {
+            throw new IOException("Event of " + recordSize + " bytes doesn't fit into a segment of " + segmentSize);
+        }
+        if (writePosition + recordSize > segmentSize) {
+            roll();
+        }
+        int start = writePosition;
+        out.position(start + 4);
+        out.putLong(receivedAtMillis);
+        putBytes(out, eventBytes);
+        putBytes(out, idBytes);
+        putBytes(out, data);
+        buffer.putInt(start, length);
+        lastReceivedAtMillis = receivedAtMillis;
+        writePosition = start + recordSize;
+        return nextSequence++;
+    }
+
+    /**
+     * @return a reader positioned at the oldest event still in the journal
+     */
+    public JournalReader reader() throws IOException {
+        return reader(getFirstSequence());
+    }
+
+    /**
+     * @param fromSequence sequence number of the first event to read; if it has been deleted already, reading
+     *                     starts at the oldest event there is
+     */
+    public JournalReader reader(long fromSequence) throws IOException {
+        return new JournalReader(this, fromSequence);
+    }
+
+    public synchronized long getFirstSequence() {
+        return segments.getFirst().firstSequence;
+    }
+
+    /**
+     * @return the sequence number the next event will get
+     */
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Syncs the current segment to disk, once the segments rolled before it have been synced and retention has
+     * been applied to them.
+     */
+    public void flush() throws IOException {
+        awaitRolled();
+        synchronized (this) {
+            if (!closed) {
+                buffer.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            buffer.force();
+            closed = true;
+        }
+        roller.shutdown();
+        try {
+            roller.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while syncing rolled segments: " + directory);
+        }
+    }
+
+    /**
+     * Starts a new segment, and leaves syncing the full one to disk and retention to the roller. Appending runs on
+     * the I/O threads, which must not wait for a 64MB segment to be synced.
+     */
+    private void roll() throws IOException {
+        final MappedByteBuffer full = buffer;
+        full.putLong(LAST_RECEIVED_AT_OFFSET, lastReceivedAtMillis);
+        current.lastReceivedAtMillis = lastReceivedAtMillis;
+        openSegment(nextSequence);
+        roller.execute(new Runnable() {
+            @Override
+            public void run() {
+                full.force();
+                applyRetention();
+            }
+        });
+    }
+
+    private void awaitRolled() throws IOException {
+        try {
+            roller.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to sync rolled segments: " + directory, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while syncing rolled segments: " + directory);
+        } catch (RejectedExecutionException e) {
+            // closed, close() waited for them
+        }
+    }
+
+    private void applyRetention() {
+        List<Segment> deleted = new ArrayList<Segment>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            while (segments.size() > 1) {
+                Segment oldest = segments.getFirst();
+                boolean tooLarge = (long) segments.size() * segmentSize > maxBytes;
+                boolean tooOld = now - oldest.lastReceivedAtMillis > maxAgeMillis;
+                if (!tooLarge && !tooOld) {
+                    break;
+                }
+                deleted.add(segments.removeFirst());
+            }
+        }
+        for (Segment segment : deleted) {
+            // readers that have it mapped can finish it
+            segment.file.delete();
+        }
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        File file = new File(directory, String.format("%019d%s", firstSequence, SUFFIX));
+        Segment segment = new Segment(file, firstSequence);
+        map(segment);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, firstSequence);
+        buffer.putLong(LAST_RECEIVED_AT_OFFSET, 0);
+        segments.add(segment);
+        current = segment;
+        writePosition = HEADER_SIZE;
+        nextSequence = firstSequence;
+    }
+
+    /**
+     * Continues the last segment of an existing journal after its last complete record.
+     */
+    private void recover(Segment segment) throws IOException {
+        map(segment);
+        int position = HEADER_SIZE;
+        long count = 0;
+        while (position + 4 <= segmentSize) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + 4 + length > segmentSize) {
+                break;
+            }
+            lastReceivedAtMillis = buffer.getLong(position + 4);
+            position += 4 + length;
+            count++;
+        }
+        current = segment;
+        writePosition = position;
+        nextSequence = segment.firstSequence + count;
+    }
+
+    private void map(Segment segment) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(segment.file, "rw");
+        try {
+            raf.setLength(segmentSize);
+            // the mapping stays valid once the file is closed
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } finally {
+            raf.close();
+        }
+        out = buffer.duplicate();
+    }
+
+    private static Segment readHeader(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC) {
+                throw new IOException("Not a journal segment: " + file);
+            }
+            if (raf.readInt() != VERSION) {
+                throw new IOException("Unknown journal version: " + file);
+            }
+            Segment segment = new Segment(file, raf.readLong());
+            segment.lastReceivedAtMillis = raf.readLong();
+            return segment;
+        } finally {
+            raf.close();
+        }
+    }
+
+    synchronized Segment segmentFor(long sequence) {
+        Segment found = segments.getFirst();
+        for (Segment segment : segments) {
+            if (segment.firstSequence > sequence) {
+                break;
+            }
+            found = segment;
+        }
+        return found;
+    }
+
+    /**
+     * @return the segment following the given one, which may have been deleted already, null if there is none
+     */
+    synchronized Segment segmentAfter(Segment previous) {
+        for (Segment segment : segments) {
+            if (segment.firstSequence > previous.firstSequence) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return how far the segment has been written if it is the current one, -1 if it is complete
+     */
+    synchronized int limit(Segment segment) {
+        return segment == current ? writePosition : -1;
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(UTF_8);
+    }
+
+    private static int sizeOf(byte[] bytes) {
+        return sizeOf(bytes == null ? -1 : bytes.length);
+    }
+
+    /**
+     * @param byteCount -1 for null
+     */
+    private static int sizeOf(int byteCount) {
+        int length = byteCount + 1;
+        int size = 1;
+        while ((length >>>= 7) != 0) {
+            size++;
+        }
+        return size + Math.max(byteCount, 0);
+    }
+
+    /**
+     * Writes the length + 1 as a varint, 0 for null, followed by the bytes.
+     */
+    private static void putBytes(ByteBuffer out, byte[] bytes) {
+        putLength(out, bytes == null ? 0 : bytes.length + 1);
+        if (bytes != null) {
+            out.put(bytes);
+        }
+    }
+
+    private static void putBytes(ByteBuffer out, ByteBuffer bytes) {
+        putLength(out, bytes == null ? 0 : bytes.remaining() + 1);
+        if (bytes != null) {
+            out.put(bytes.duplicate());
+        }
+    }
+
+    private static void putLength(ByteBuffer out, int length) {
+        while ((length & ~0x7f) != 0) {
+            out.put((byte) ((length & 0x7f) | 0x80));
+            length >>>= 7;
+        }
+        out.put((byte) length);
+    }
+
+    static String getString(ByteBuffer in) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            length |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    static final class Segment {
+        final File file;
+        final long firstSequence;
+        volatile long lastReceivedAtMillis;
+
+        Segment(File file, long firstSequence) {
+            this.file = file;
+            this.firstSequence = firstSequence;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.eventsource.client.journal;
+
+import com.github.eventsource.client.MessageEvent;
+
+/**
+ * An event read back from an {@link EventJournal}.
+ */
+public class JournalEntry {
+    /** Position of the event in the journal, starting at 0 and incremented for every event appended. */
+    public final long sequence;
+    public final long receivedAtMillis;
+    public final String event;
+    /** The message as it was received, except for its origin, which is not journaled. */
+    public final MessageEvent message;
+
+    public JournalEntry(long sequence, long receivedAtMillis, String event, MessageEvent message) {
+        this.sequence = sequence;
+        this.receivedAtMillis = receivedAtMillis;
+        this.event = event;
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalEntry{" +
+                "sequence=" + sequence +
+                ", receivedAtMillis=" + receivedAtMillis +
+                ", event='" + event + '\'' +
+                ", message=" + message +
+                '}';
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.eventsource.client.journal;
+
+import com.github.eventsource.client.EventSourceHandler;
+import com.github.eventsource.client.MessageEvent;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads an {@link EventJournal} sequentially, from segment to segment. Once it has caught up with the journal,
+ * {@link #next()} returns null until more events are appended. Segments deleted by retention before the reader
+ * got to them are skipped. Not thread-safe, every consumer needs its own reader.
+ */
+public class JournalReader {
+    private final EventJournal journal;
+    private EventJournal.Segment segment;
+    private ByteBuffer buffer;
+    private int position;
+    private int limit;
+    private boolean complete;
+    private long sequence;
+
+    JournalReader(EventJournal journal, long fromSequence) throws IOException {
+        this.journal = journal;
+        open(journal.segmentFor(fromSequence));
+        while (sequence < fromSequence && next() != null) {
+            // skip to the first event asked for
+        }
+    }
+
+    /**
+     * @return the next event, null if there is none yet
+     */
+    public JournalEntry next() throws IOException {
+        while (true) {
+            if (position >= limit && !complete) {
+                int written = journal.limit(segment);
+                if (written == -1) {
+                    // rolled, records go up to the first zero length
+                    complete = true;
+                    limit = buffer.capacity();
+                } else {
+                    limit = written;
+                }
+            }
+            int length = recordLength();
+            if (length > 0) {
+                return read(length);
+            }
+            if (!complete) {
+                // caught up with the current segment
+                return null;
+            }
+            EventJournal.Segment next = journal.segmentAfter(segment);
+            if (next == null) {
+                return null;
+            }
+            open(next);
+        }
+    }
+
+    /**
+     * Passes every event from the current position up to the end of the journal to the handler.
+     *
+     * @return number of events replayed
+     */
+    public long replay(EventSourceHandler handler) throws Exception {
+        long count = 0;
+        JournalEntry entry;
+        while ((entry = next()) != null) {
+            handler.onMessage(entry.event, entry.message);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return sequence number of the event {@link #next()} returns next
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return length of the record at the current position, 0 if there is none (yet)
+     */
+    private int recordLength() {
+        if (position + 4 > limit) {
+            return 0;
+        }
+        int length = buffer.getInt(position);
+        return length > 0 && position + 4 + length <= limit ? length : 0;
+    }
+
+    private JournalEntry read(int length) {
+        buffer.limit(position + 4 + length);
+        buffer.position(position + 4);
+        long receivedAtMillis = buffer.getLong();
+        String event = EventJournal.getString(buffer);
+        String lastEventId = EventJournal.getString(buffer);
+        String data = EventJournal.getString(buffer);
+        buffer.limit(buffer.capacity());
+        position += 4 + length;
+        return new JournalEntry(sequence++, receivedAtMillis, event, new MessageEvent(data, lastEventId, null));
+    }
+
+    private void open(EventJournal.Segment next) throws IOException {
+        while (true) {
+            try {
+                RandomAccessFile raf = new RandomAccessFile(next.file, "r");
+                try {
+                    buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+                } finally {
+                    raf.close();
+                }
+                break;
+            } catch (FileNotFoundException e) {
+                // deleted by retention in the meantime, continue with the oldest segment left
+                next = journal.segmentFor(next.firstSequence);
+            }
+        }
+        segment = next;
+        sequence = next.firstSequence;
+        position = EventJournal.HEADER_SIZE;
+        limit = 0;
+        complete = false;
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.eventsource.client.metrics;
+
+/**
+ * Receives measurements from the connections, parsers and dispatchers of an
+ * {@link com.github.eventsource.client.EventSourceClient}. Every method is called on the hot path, from I/O threads
+ * or event executor threads, and must return quickly without blocking.
+ *
+ * Timings are only taken when the client has metrics other than {@link #NOOP}, so the default costs nothing but
+ * a handful of empty calls the JIT removes.
+ *
+ * @see JmxEventSourceMetrics
+ */
+public interface EventSourceMetrics {
+    EventSourceMetrics NOOP = new NoopEventSourceMetrics();
+
+    /** A connection was established. */
+    void channelOpened();
+
+    /** An established connection was closed. */
+    void channelClosed();
+
+    /** A reconnect was scheduled after a connection was lost or refused. */
+    void reconnectScheduled();
+
+    /** The server answered with a status other than 200 OK. */
+    void badStatus(int statusCode);
+
+    /** Bytes of response body were read from a connection. */
+    void bytesRead(int bytes);
+
+    /** An event was parsed, <code>parseNanos</code> were spent on its lines. */
+    void eventParsed(long parseNanos);
+
+    /** An event or a batch of events was handed to the event executor. */
+    void eventsEnqueued(int count);
+
+    /** An event or a batch of events was refused by the event executor. */
+    void eventsRejected(int count);
+
+    /**
+     * Events were passed to a handler.
+     *
+     * @param count          events in the call, more than one for a batch
+     * @param queueWaitNanos time from submission to the executor until the handler was called
+     * @param handlerNanos   time the handler took to return
+     */
+    void eventsDispatched(int count, long queueWaitNanos, long handlerNanos);
+
+    /** An error could not be passed to a handler, or the handler threw while being told about it. */
+    void dispatchFailed(Throwable error);
+}
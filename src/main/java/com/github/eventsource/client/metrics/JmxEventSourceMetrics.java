@@ -0,0 +1,208 @@
+package com.github.eventsource.client.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Keeps counters, gauges and {@link LatencyHistogram histograms} in memory and exposes them as an MBean:
+ *
+ * <pre>
+ * JmxEventSourceMetrics metrics = new JmxEventSourceMetrics().register("quotes");
+ * EventSourceClient client = new EventSourceClient(executor).setMetrics(metrics);
+ * </pre>
+ *
+ * The MBean is registered as <code>com.github.eventsource:type=EventSourceClient,name=quotes</code>.
+ */
+public class JmxEventSourceMetrics implements EventSourceMetrics, JmxEventSourceMetricsMBean {
+    private static final double PERCENTILE_99 = 0.99;
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong eventsParsed = new AtomicLong();
+    private final AtomicLong eventsEnqueued = new AtomicLong();
+    private final AtomicLong eventsRejected = new AtomicLong();
+    private final AtomicLong eventsDispatched = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong badStatusResponses = new AtomicLong();
+    private final AtomicLong dispatchFailures = new AtomicLong();
+    private final AtomicLong channelsOpened = new AtomicLong();
+    private final AtomicLong channelsClosed = new AtomicLong();
+    private final LatencyHistogram parseTime = new LatencyHistogram();
+    private final LatencyHistogram handlerTime = new LatencyHistogram();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private ObjectName objectName;
+
+    /**
+     * Registers the MBean with the platform MBean server.
+     *
+     * @param name distinguishes the clients of one JVM
+     * @return self
+     */
+    public synchronized JmxEventSourceMetrics register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("com.github.eventsource:type=EventSourceClient,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register metrics MBean for " + name, e);
+        }
+        return this;
+    }
+
+    public synchronized void unregister() {
+        if (objectName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                throw new IllegalStateException("Failed to unregister metrics MBean " + objectName, e);
+            }
+            objectName = null;
+        }
+    }
+
+    @Override
+    public void channelOpened() {
+        channelsOpened.incrementAndGet();
+    }
+
+    @Override
+    public void channelClosed() {
+        channelsClosed.incrementAndGet();
+    }
+
+    @Override
+    public void reconnectScheduled() {
+        reconnects.incrementAndGet();
+    }
+
+    @Override
+    public void badStatus(int statusCode) {
+        badStatusResponses.incrementAndGet();
+    }
+
+    @Override
+    public void bytesRead(int bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    @Override
+    public void eventParsed(long parseNanos) {
+        eventsParsed.incrementAndGet();
+        parseTime.record(parseNanos);
+    }
+
+    @Override
+    public void eventsEnqueued(int count) {
+        eventsEnqueued.addAndGet(count);
+    }
+
+    @Override
+    public void eventsRejected(int count) {
+        eventsRejected.addAndGet(count);
+    }
+
+    @Override
+    public void eventsDispatched(int count, long queueWaitNanos, long handlerNanos) {
+        eventsDispatched.addAndGet(count);
+        queueWait.record(queueWaitNanos);
+        handlerTime.record(handlerNanos);
+    }
+
+    @Override
+    public void dispatchFailed(Throwable error) {
+        dispatchFailures.incrementAndGet();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    @Override
+    public long getEventsParsed() {
+        return eventsParsed.get();
+    }
+
+    @Override
+    public long getEventsDispatched() {
+        return eventsDispatched.get();
+    }
+
+    @Override
+    public long getEventsRejected() {
+        return eventsRejected.get();
+    }
+
+    @Override
+    public long getReconnects() {
+        return reconnects.get();
+    }
+
+    @Override
+    public long getBadStatusResponses() {
+        return badStatusResponses.get();
+    }
+
+    @Override
+    public long getDispatchFailures() {
+        return dispatchFailures.get();
+    }
+
+    @Override
+    public long getOpenChannels() {
+        return channelsOpened.get() - channelsClosed.get();
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return eventsEnqueued.get() - eventsDispatched.get() - eventsRejected.get();
+    }
+
+    @Override
+    public long getParseTimeMean() {
+        return parseTime.getMean();
+    }
+
+    @Override
+    public long getParseTime99thPercentile() {
+        return parseTime.getQuantile(PERCENTILE_99);
+    }
+
+    @Override
+    public long getParseTimeMax() {
+        return parseTime.getMax();
+    }
+
+    @Override
+    public long getHandlerTimeMean() {
+        return handlerTime.getMean();
+    }
+
+    @Override
+    public long getHandlerTime99thPercentile() {
+        return handlerTime.getQuantile(PERCENTILE_99);
+    }
+
+    @Override
+    public long getHandlerTimeMax() {
+        return handlerTime.getMax();
+    }
+
+    @Override
+    public long getQueueWaitMean() {
+        return queueWait.getMean();
+    }
+
+    @Override
+    public long getQueueWait99thPercentile() {
+        return queueWait.getQuantile(PERCENTILE_99);
+    }
+
+    @Override
+    public long getQueueWaitMax() {
+        return queueWait.getMax();
+    }
+}
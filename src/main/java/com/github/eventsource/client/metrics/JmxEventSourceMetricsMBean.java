@@ -0,0 +1,43 @@
+package com.github.eventsource.client.metrics;
+
+/**
+ * Management interface of {@link JmxEventSourceMetrics}. Durations are in nanoseconds, percentiles are accurate
+ * to within a factor of two.
+ */
+public interface JmxEventSourceMetricsMBean {
+    long getBytesRead();
+
+    long getEventsParsed();
+
+    long getEventsDispatched();
+
+    long getEventsRejected();
+
+    long getReconnects();
+
+    long getBadStatusResponses();
+
+    long getDispatchFailures();
+
+    long getOpenChannels();
+
+    long getQueueDepth();
+
+    long getParseTimeMean();
+
+    long getParseTime99thPercentile();
+
+    long getParseTimeMax();
+
+    long getHandlerTimeMean();
+
+    long getHandlerTime99thPercentile();
+
+    long getHandlerTimeMax();
+
+    long getQueueWaitMean();
+
+    long getQueueWait99thPercentile();
+
+    long getQueueWaitMax();
+}
@@ -0,0 +1,72 @@
+package com.github.eventsource.client.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of nanosecond durations with one bucket per power of two. Percentiles are therefore
+ * accurate to within a factor of two, which is plenty to tell microseconds from milliseconds, and recording is
+ * a couple of atomic increments.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        // bucket i holds [2^i, 2^(i+1)), zero goes with one
+        buckets.incrementAndGet(Math.max(0, BUCKETS - 1 - Long.numberOfLeadingZeros(nanos)));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long current;
+        while (nanos > (current = max.get())) {
+            if (max.compareAndSet(current, nanos)) {
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return upper bound of the bucket the quantile falls into, in nanoseconds
+     */
+    public long getQuantile(double quantile) {
+        long n = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return i >= 62 ? Long.MAX_VALUE : (2L << i) - 1;
+            }
+        }
+        return max.get();
+    }
+}
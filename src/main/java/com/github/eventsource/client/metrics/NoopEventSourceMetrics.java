@@ -0,0 +1,46 @@
+package com.github.eventsource.client.metrics;
+
+/**
+ * Ignores every measurement, the default of every client.
+ */
+final class NoopEventSourceMetrics implements EventSourceMetrics {
+    @Override
+    public void channelOpened() {
+    }
+
+    @Override
+    public void channelClosed() {
+    }
+
+    @Override
+    public void reconnectScheduled() {
+    }
+
+    @Override
+    public void badStatus(int statusCode) {
+    }
+
+    @Override
+    public void bytesRead(int bytes) {
+    }
+
+    @Override
+    public void eventParsed(long parseNanos) {
+    }
+
+    @Override
+    public void eventsEnqueued(int count) {
+    }
+
+    @Override
+    public void eventsRejected(int count) {
+    }
+
+    @Override
+    public void eventsDispatched(int count, long queueWaitNanos, long handlerNanos) {
+    }
+
+    @Override
+    public void dispatchFailed(Throwable error) {
+    }
+}
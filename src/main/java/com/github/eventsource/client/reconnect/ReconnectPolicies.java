@@ -0,0 +1,76 @@
+package com.github.eventsource.client.reconnect;
+
+import java.util.Random;
+
+/**
+ * The common {@link ReconnectPolicy reconnect policies}.
+ */
+public final class ReconnectPolicies {
+    private ReconnectPolicies() {
+    }
+
+    /**
+     * Always waits the same time. Streams that lost their connection at the same moment reconnect at the same
+     * moment, too.
+     */
+    public static ReconnectPolicy fixed(final long delayMillis) {
+        checkNotNegative("delayMillis", delayMillis);
+        return new ReconnectPolicy() {
+            @Override
+            public long nextDelayMillis(int attempt, long previousDelayMillis) {
+                return delayMillis;
+            }
+        };
+    }
+
+    /**
+     * Doubles the delay with every failed attempt, starting at <code>baseMillis</code>, up to
+     * <code>capMillis</code>.
+     */
+    public static ReconnectPolicy exponential(final long baseMillis, final long capMillis) {
+        checkRange(baseMillis, capMillis);
+        return new ReconnectPolicy() {
+            @Override
+            public long nextDelayMillis(int attempt, long previousDelayMillis) {
+                long delay = baseMillis;
+                for (int i = 1; i < attempt && delay < capMillis; i++) {
+                    delay = delay > capMillis / 2 ? capMillis : delay * 2;
+                }
+                return Math.min(capMillis, delay);
+            }
+        };
+    }
+
+    /**
+     * "Decorrelated jitter": picks a random delay between <code>baseMillis</code> and three times the previous
+     * one, up to <code>capMillis</code>. The delay grows about as fast as with {@link #exponential}, but streams
+     * that failed together spread out instead of retrying in lockstep.
+     */
+    public static ReconnectPolicy decorrelatedJitter(final long baseMillis, final long capMillis) {
+        checkRange(baseMillis, capMillis);
+        final Random random = new Random();
+        return new ReconnectPolicy() {
+            @Override
+            public long nextDelayMillis(int attempt, long previousDelayMillis) {
+                long upper = Math.min(capMillis, Math.max(baseMillis, previousDelayMillis) * 3);
+                if (upper <= baseMillis) {
+                    return baseMillis;
+                }
+                return baseMillis + (long) (random.nextDouble() * (upper - baseMillis));
+            }
+        };
+    }
+
+    private static void checkRange(long baseMillis, long capMillis) {
+        checkNotNegative("baseMillis", baseMillis);
+        if (capMillis < baseMillis) {
+            throw new IllegalArgumentException("capMillis must not be less than baseMillis: " + capMillis);
+        }
+    }
+
+    private static void checkNotNegative(String name, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(name + " must not be negative: " + value);
+        }
+    }
+}
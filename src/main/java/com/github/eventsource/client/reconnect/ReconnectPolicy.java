@@ -0,0 +1,17 @@
+package com.github.eventsource.client.reconnect;
+
+/**
+ * Decides how long an {@link com.github.eventsource.client.EventSource} waits before it reconnects. A retry time
+ * sent by the server is used as a lower bound for whatever the policy returns.
+ *
+ * @see ReconnectPolicies
+ */
+public interface ReconnectPolicy {
+    /**
+     * @param attempt             1 for the first reconnect after a working connection was lost, incremented for
+     *                            every further attempt until a connection succeeds again
+     * @param previousDelayMillis what this method returned for the previous attempt, 0 for the first one
+     * @return delay before the next attempt, in milliseconds
+     */
+    long nextDelayMillis(int attempt, long previousDelayMillis);
+}
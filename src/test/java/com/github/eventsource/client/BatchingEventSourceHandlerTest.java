@@ -0,0 +1,207 @@
+package com.github.eventsource.client;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.github.eventsource.client.impl.BatchingEventSourceHandler;
+import com.github.eventsource.client.impl.EventTypeTable;
+import com.github.eventsource.client.impl.FlowControl;
+import com.github.eventsource.client.impl.PendingEventLimiter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchingEventSourceHandlerTest {
+    private final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+    private final List<List<String>> batches = new ArrayList<List<String>>();
+    private BatchingEventSourceHandler handler;
+    private boolean rejecting;
+
+    @Before
+    public void setup() {
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                if (rejecting) {
+                    throw new RejectedExecutionException("full");
+                }
+                tasks.add(command);
+            }
+        };
+        handler = new BatchingEventSourceHandler(executor, new BatchEventSourceHandler() {
+            @Override
+            public void onMessages(List<String> events, List<MessageEvent> messages) {
+                List<String> batch = new ArrayList<String>();
+                for (int i = 0; i < messages.size(); i++) {
+                    batch.add(events.get(i) + ":" + messages.get(i).data);
+                }
+                batches.add(batch);
+            }
+
+            @Override
+            public void onConnect() {
+            }
+
+            @Override
+            public void onMessage(String event, MessageEvent message) {
+                throw new AssertionError("messages should arrive in batches");
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        });
+    }
+
+    @Test
+    public void deliversMessagesReceivedBeforeTheTaskRunsAsOneBatch() throws Exception {
+        handler.onMessage("message", new MessageEvent("a"));
+        handler.onMessage("tick", new MessageEvent("b"));
+        handler.onMessage("message", new MessageEvent("c"));
+        assertEquals(1, tasks.size());
+
+        runTasks();
+        handler.onMessage("message", new MessageEvent("d"));
+        runTasks();
+
+        assertEquals(asList(asList("message:a", "tick:b", "message:c"), asList("message:d")), batches);
+    }
+
+    @Test
+    public void splitsBatchesLargerThanTheMaximum() throws Exception {
+        handler.setMaxBatchSize(2);
+        handler.onMessage("message", new MessageEvent("a"));
+        handler.onMessage("message", new MessageEvent("b"));
+        handler.onMessage("message", new MessageEvent("c"));
+        runTasks();
+
+        assertEquals(asList(asList("message:a", "message:b"), asList("message:c")), batches);
+    }
+
+    @Test
+    public void dropsTheBatchTheExecutorRejectsAndCarriesOn() throws Exception {
+        PendingEventLimiter limiter = new PendingEventLimiter(1, 3, new FlowControl() {
+            @Override
+            public void suspendReads() {
+            }
+
+            @Override
+            public void resumeReads() {
+            }
+        });
+        handler.setPendingEventLimiter(limiter);
+        rejecting = true;
+        try {
+            handler.onMessage("message", new MessageEvent("a"));
+            fail("Expected the message to be rejected");
+        } catch (RejectedExecutionException expected) {
+        }
+        assertEquals(0, limiter.getPending());
+
+        rejecting = false;
+        handler.onMessage("message", new MessageEvent("b"));
+        runTasks();
+        assertEquals(asList(asList("message:b")), batches);
+        assertEquals(0, limiter.getPending());
+    }
+
+    @Test
+    public void dropsTheRestOfASplitBatchWhenItsDrainIsRejected() throws Exception {
+        handler.setMaxBatchSize(1);
+        handler.onMessage("message", new MessageEvent("a"));
+        handler.onMessage("message", new MessageEvent("b"));
+        rejecting = true;
+        runTasks();
+        assertEquals(asList(asList("message:a")), batches);
+
+        rejecting = false;
+        handler.onMessage("message", new MessageEvent("c"));
+        runTasks();
+        assertEquals(asList(asList("message:a"), asList("message:c")), batches);
+    }
+
+    @Test
+    public void keepsStreamedEventsAndListenerMessagesInOrderWithTheBatches() throws Exception {
+        final List<String> received = new ArrayList<String>();
+        BatchingEventSourceHandler streaming = new BatchingEventSourceHandler(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        }, new StreamingBatchHandler() {
+            @Override
+            public void onMessages(List<String> events, List<MessageEvent> messages) {
+                List<String> batch = new ArrayList<String>();
+                for (MessageEvent message : messages) {
+                    batch.add(message.data);
+                }
+                received.add(batch.toString());
+            }
+
+            @Override
+            public void onMessageStart(String event, String lastEventId) {
+                received.add("start");
+            }
+
+            @Override
+            public void onMessageData(ByteBuffer data) {
+                received.add(Charset.forName("UTF-8").decode(data).toString());
+            }
+
+            @Override
+            public void onMessageEnd(String event, String lastEventId) {
+                received.add("end");
+            }
+        });
+        streaming.getEventTypes().addListener("tick", new EventListener() {
+            @Override
+            public void onMessage(String event, MessageEvent message) {
+                received.add("tick " + message.data);
+            }
+        });
+        EventTypeTable.EventType tick = streaming.getEventTypes().lookup("tick");
+
+        streaming.onMessage("message", new MessageEvent("s1"));
+        streaming.onMessageStart("message", "2");
+        byte[] large = "large".getBytes("UTF-8");
+        streaming.onMessageData(large, 0, large.length);
+        streaming.onMessageEnd("message", "2");
+        streaming.onMessage("message", new MessageEvent("s2"));
+        streaming.onMessage(tick, new MessageEvent("t1"));
+        streaming.onMessage("message", new MessageEvent("s3"));
+        streaming.onMessage("message", new MessageEvent("s4"));
+        assertEquals(1, tasks.size());
+        runTasks();
+
+        assertEquals(asList("[s1]", "start", "large", "end", "[s2]", "tick t1", "[s3, s4]"), received);
+    }
+
+    private abstract static class StreamingBatchHandler implements BatchEventSourceHandler, StreamingEventSourceHandler {
+        @Override
+        public void onConnect() {
+        }
+
+        @Override
+        public void onMessage(String event, MessageEvent message) {
+            throw new AssertionError("messages should arrive in batches");
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            throw new AssertionError(t);
+        }
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.removeFirst().run();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.eventsource.client;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Measures how many events per second reach their handlers for a growing number of connections and NIO
+ * worker threads. Handlers run directly on the I/O threads, so the numbers reflect the dispatch path from
+ * socket to {@link EventSourceHandler} and nothing else.
+ *
+ * Usage: DispatchContentionBenchmark [connections,...] [workers,...] [seconds]
+ */
+public class DispatchContentionBenchmark {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    public static void main(String[] args) throws Exception {
+        int[] connectionCounts = ints(args.length > 0 ? args[0] : "1,10,100,1000");
+        int[] workerCounts = ints(args.length > 1 ? args[1] : "1,2,4,8");
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            payload.append("data: {\"seq\":").append(i).append(",\"price\":101.25}\n\n");
+        }
+        StubEventStreamServer server = new StubEventStreamServer().stream(payload.toString(), Long.MAX_VALUE).start();
+        try {
+            System.out.println("workers\tconnections\tevents/s");
+            for (int workers : workerCounts) {
+                for (int connections : connectionCounts) {
+                    long rate = run(server, workers, connections, seconds);
+                    System.out.println(workers + "\t" + connections + "\t" + rate);
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static long run(StubEventStreamServer server, int workers, int connections, int seconds) throws Exception {
+        EventSourceClient client = new EventSourceClient(DIRECT, workers);
+        List<EventSource> eventSources = new ArrayList<EventSource>();
+        List<CountingHandler> handlers = new ArrayList<CountingHandler>();
+        try {
+            for (int i = 0; i < connections; i++) {
+                CountingHandler handler = new CountingHandler();
+                EventSource eventSource = new EventSource(client, -1, URI.create(server.uri("/bench")), handler);
+                eventSource.connect();
+                eventSources.add(eventSource);
+                handlers.add(handler);
+            }
+            Thread.sleep(1000);
+            long before = sum(handlers);
+            long start = System.nanoTime();
+            Thread.sleep(seconds * 1000L);
+            long events = sum(handlers) - before;
+            return events * 1000000000L / (System.nanoTime() - start);
+        } finally {
+            for (EventSource eventSource : eventSources) {
+                eventSource.close();
+            }
+            client.shutdown();
+        }
+    }
+
+    private static long sum(List<CountingHandler> handlers) {
+        long total = 0;
+        for (CountingHandler handler : handlers) {
+            total += handler.count;
+        }
+        return total;
+    }
+
+    private static int[] ints(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    private static class CountingHandler implements EventSourceHandler {
+        volatile long count;
+
+        @Override
+        public void onConnect() {
+        }
+
+        @Override
+        public void onMessage(String event, MessageEvent message) {
+            // only ever written by the I/O thread of this connection
+            count++;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            t.printStackTrace();
+        }
+    }
+}
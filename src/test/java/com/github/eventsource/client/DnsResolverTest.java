@@ -0,0 +1,184 @@
+package com.github.eventsource.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.github.eventsource.client.impl.DnsResolver;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class DnsResolverTest {
+    private final FakeLookup lookup = new FakeLookup();
+    private final DnsResolver resolver = new DnsResolver(lookup);
+    private final Results results = new Results();
+
+    @After
+    public void shutdown() {
+        lookup.release.countDown();
+        resolver.shutdown();
+    }
+
+    @Test
+    public void looksAHostUpOnceForAllTheStreamsConnectingToIt() throws Exception {
+        lookup.answer("10.0.0.1");
+        lookup.hold();
+        for (int i = 0; i < 50; i++) {
+            resolver.resolve("gateway", 80, results);
+        }
+        assertEquals(0, results.queue.size());
+        lookup.release.countDown();
+        for (int i = 0; i < 50; i++) {
+            assertEquals(new InetSocketAddress(InetAddress.getByName("10.0.0.1"), 80), results.next());
+        }
+        assertEquals(1, lookup.count.get());
+
+        // cached, answered right away
+        resolver.resolve("gateway", 443, results);
+        assertEquals(new InetSocketAddress(InetAddress.getByName("10.0.0.1"), 443), results.queue.poll());
+        assertEquals(1, lookup.count.get());
+    }
+
+    @Test
+    public void takesTheAddressesOfAHostInTurn() throws Exception {
+        lookup.answer("10.0.0.1", "10.0.0.2", "10.0.0.3");
+        for (int i = 0; i < 6; i++) {
+            resolver.resolve("gateway", 80, results);
+            assertEquals("10.0.0." + (i % 3 + 1), ((InetSocketAddress) results.next()).getAddress().getHostAddress());
+        }
+        assertEquals(1, lookup.count.get());
+    }
+
+    @Test
+    public void cachesFailuresForTheNegativeTtl() throws Exception {
+        resolver.setTtl(60000, 100);
+        lookup.answer();
+        resolver.resolve("nowhere", 80, results);
+        assertTrue(results.next() instanceof UnknownHostException);
+        resolver.resolve("nowhere", 80, results);
+        assertTrue(results.next() instanceof UnknownHostException);
+        assertEquals(1, lookup.count.get());
+
+        Thread.sleep(150);
+        lookup.answer("10.0.0.1");
+        resolver.resolve("nowhere", 80, results);
+        assertTrue(results.next() instanceof InetSocketAddress);
+        assertEquals(2, lookup.count.get());
+    }
+
+    @Test
+    public void usesExpiredAddressesWhileLookingTheHostUpAgain() throws Exception {
+        resolver.setTtl(50, 50);
+        lookup.answer("10.0.0.1");
+        resolver.resolve("gateway", 80, results);
+        results.next();
+
+        Thread.sleep(100);
+        lookup.answer("10.0.0.2");
+        lookup.hold();
+        resolver.resolve("gateway", 80, results);
+        assertEquals("10.0.0.1", ((InetSocketAddress) results.queue.poll()).getAddress().getHostAddress());
+        lookup.release.countDown();
+        // the old address until the new one is in
+        long deadline = System.currentTimeMillis() + 5000;
+        String address;
+        do {
+            Thread.sleep(10);
+            resolver.resolve("gateway", 80, results);
+            address = ((InetSocketAddress) results.next()).getAddress().getHostAddress();
+        } while (address.equals("10.0.0.1") && System.currentTimeMillis() < deadline);
+        assertEquals("10.0.0.2", address);
+    }
+
+    @Test
+    public void keepsTheAddressesOfAHostWhenLookingItUpAgainFails() throws Exception {
+        resolver.setTtl(50, 200);
+        lookup.answer("10.0.0.1");
+        resolver.resolve("gateway", 80, results);
+        results.next();
+
+        Thread.sleep(100);
+        lookup.answer();
+        resolver.resolve("gateway", 80, results);
+        assertEquals("10.0.0.1", ((InetSocketAddress) results.next()).getAddress().getHostAddress());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (lookup.count.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // served while the failure is cached, without looking the host up again
+        resolver.resolve("gateway", 80, results);
+        assertEquals("10.0.0.1", ((InetSocketAddress) results.next()).getAddress().getHostAddress());
+        assertEquals(2, lookup.count.get());
+
+        Thread.sleep(250);
+        lookup.answer("10.0.0.2");
+        String address;
+        do {
+            Thread.sleep(10);
+            resolver.resolve("gateway", 80, results);
+            address = ((InetSocketAddress) results.next()).getAddress().getHostAddress();
+        } while (address.equals("10.0.0.1") && System.currentTimeMillis() < deadline);
+        assertEquals("10.0.0.2", address);
+    }
+
+    private static class FakeLookup implements DnsResolver.Lookup {
+        final AtomicInteger count = new AtomicInteger();
+        volatile CountDownLatch release = new CountDownLatch(0);
+        private volatile String[] answer = new String[0];
+
+        void answer(String... addresses) {
+            answer = addresses;
+        }
+
+        void hold() {
+            release = new CountDownLatch(1);
+        }
+
+        @Override
+        public InetAddress[] lookup(String host) throws UnknownHostException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new UnknownHostException(host);
+            }
+            String[] current = answer;
+            if (current.length == 0) {
+                count.incrementAndGet();
+                throw new UnknownHostException(host);
+            }
+            InetAddress[] addresses = new InetAddress[current.length];
+            for (int i = 0; i < current.length; i++) {
+                addresses[i] = InetAddress.getByAddress(host, InetAddress.getByName(current[i]).getAddress());
+            }
+            count.incrementAndGet();
+            return addresses;
+        }
+    }
+
+    private static class Results implements DnsResolver.Listener {
+        final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+        Object next() throws InterruptedException {
+            Object result = queue.poll(5, TimeUnit.SECONDS);
+            assertTrue("Nothing resolved", result != null);
+            return result;
+        }
+
+        @Override
+        public void resolved(InetSocketAddress address) {
+            queue.add(address);
+        }
+
+        @Override
+        public void failed(UnknownHostException cause) {
+            queue.add(cause);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.eventsource.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.github.eventsource.client.journal.EventJournal;
+import com.github.eventsource.client.journal.JournalEntry;
+import com.github.eventsource.client.journal.JournalReader;
+import java.io.File;
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventJournalTest {
+    private File directory;
+
+    @Before
+    public void createDirectory() throws Exception {
+        directory = File.createTempFile("journal", "");
+        directory.delete();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void readsBackWhatWasAppended() throws Exception {
+        EventJournal journal = new EventJournal(directory, 4096);
+        assertEquals(0, journal.append("message", null, "a", 1000));
+        assertEquals(1, journal.append("tick", "7", "b\nc", 1001));
+        assertEquals(2, journal.append("message", "8", "été", 1002));
+
+        JournalReader reader = journal.reader();
+        JournalEntry entry = reader.next();
+        assertEquals(0, entry.sequence);
+        assertEquals(1000, entry.receivedAtMillis);
+        assertEquals("message", entry.event);
+        assertEquals(new MessageEvent("a", null, null), entry.message);
+        assertEquals(new MessageEvent("b\nc", "7", null), reader.next().message);
+        assertEquals("été", reader.next().message.data);
+        assertNull(reader.next());
+
+        journal.append("message", "9", "d", 1003);
+        assertEquals("d", reader.next().message.data);
+        assertEquals("8", journal.reader(2).next().message.lastEventId);
+        journal.close();
+    }
+
+    @Test
+    public void rollsSegmentsAndDeletesTheOldestBeyondTheRetention() throws Exception {
+        EventJournal journal = new EventJournal(directory, 1024).setRetention(3 * 1024, Long.MAX_VALUE);
+        JournalReader reader = journal.reader();
+        for (int i = 0; i < 100; i++) {
+            journal.append("message", Integer.toString(i), "0123456789012345678901234567890123456789", i);
+        }
+        // rolled segments are synced and deleted in the background
+        journal.flush();
+        assertEquals(3, journal.getSegmentCount());
+        assertTrue(journal.getFirstSequence() > 0);
+        assertEquals(100, journal.getNextSequence());
+
+        // the reader had its first segment mapped already, it goes on with the oldest one left after that
+        long previous = -1;
+        long count = 0;
+        JournalEntry entry;
+        while ((entry = reader.next()) != null) {
+            assertTrue(entry.sequence > previous);
+            assertEquals(Long.toString(entry.sequence), entry.message.lastEventId);
+            previous = entry.sequence;
+            count++;
+        }
+        assertEquals(99, previous);
+        assertTrue(count < 100);
+
+        journal.setRetention(Long.MAX_VALUE, 1000);
+        for (int i = 0; i < 20; i++) {
+            // received long enough ago for every segment but the current one to be deleted
+            journal.append("message", null, "0123456789012345678901234567890123456789", System.currentTimeMillis() - 5000);
+        }
+        journal.flush();
+        assertEquals(1, journal.getSegmentCount());
+        journal.close();
+    }
+
+    @Test
+    public void continuesAfterReopening() throws Exception {
+        EventJournal journal = new EventJournal(directory, 1024);
+        for (int i = 0; i < 50; i++) {
+            journal.append("message", Integer.toString(i), "data", i);
+        }
+        journal.close();
+
+        journal = new EventJournal(directory, 1024);
+        assertEquals(50, journal.getNextSequence());
+        assertEquals(50, journal.append("message", "50", "data", 50));
+        JournalReader reader = journal.reader(45);
+        for (int i = 45; i <= 50; i++) {
+            assertEquals(Integer.toString(i), reader.next().message.lastEventId);
+        }
+        assertNull(reader.next());
+        journal.close();
+    }
+
+    @Test
+    public void journalsEventsOfAnEventSourceForReplay() throws Exception {
+        StubEventStreamServer server = new StubEventStreamServer().stream("id: 1\ndata: a\n\nevent: b\ndata: b\n\n", 50).start();
+        EventSourceClient client = new EventSourceClient(Executors.newSingleThreadExecutor());
+        EventJournal journal = new EventJournal(directory, 64 * 1024);
+        try {
+            EventSourceStubServerTest.CountingHandler handler = new EventSourceStubServerTest.CountingHandler(100);
+            EventSource eventSource = new EventSource(client, -1, URI.create(server.uri("/es")), handler);
+            eventSource.setJournal(journal);
+            eventSource.connect();
+            assertTrue("Didn't get all messages", handler.received.await(5, TimeUnit.SECONDS));
+            eventSource.close();
+
+            EventSourceStubServerTest.CountingHandler replayed = new EventSourceStubServerTest.CountingHandler(100);
+            assertEquals(100, journal.reader().replay(replayed));
+            assertEquals(0, replayed.received.getCount());
+        } finally {
+            journal.close();
+            client.shutdown();
+            server.stop();
+        }
+    }
+}
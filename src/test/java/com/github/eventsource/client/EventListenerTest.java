@@ -0,0 +1,104 @@
+package com.github.eventsource.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.github.eventsource.client.impl.AsyncEventSourceHandler;
+import com.github.eventsource.client.impl.ConnectionHandler;
+import com.github.eventsource.client.impl.EventStreamParser;
+import com.github.eventsource.client.impl.EventTypeTable;
+import java.util.concurrent.Executor;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventListenerTest {
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private EventSourceHandler handler;
+    private ConnectionHandler connectionHandler;
+    private AsyncEventSourceHandler asyncHandler;
+    private EventStreamParser parser;
+
+    @Before
+    public void setup() {
+        handler = mock(EventSourceHandler.class);
+        connectionHandler = mock(ConnectionHandler.class);
+        asyncHandler = new AsyncEventSourceHandler(SAME_THREAD, handler);
+        parser = new EventStreamParser(null, asyncHandler, connectionHandler);
+    }
+
+    @Test
+    public void resolvesEveryNameToTheSameEventType() throws Exception {
+        EventTypeTable table = new EventTypeTable();
+        byte[] line = "event: tick".getBytes("UTF-8");
+        EventTypeTable.EventType tick = table.lookup(line, 7, 4);
+        assertEquals("tick", tick.name);
+        assertSame(tick, table.lookup("tick"));
+        assertSame(tick, table.lookup(line, 7, 4));
+        assertSame(table.getDefault(), table.lookup("message"));
+        assertNotSame(tick, table.lookup("tock"));
+    }
+
+    @Test
+    public void routesEventsToTheirListenersAndTheRestToTheHandler() throws Exception {
+        EventListener ticks = mock(EventListener.class);
+        EventListener alsoTicks = mock(EventListener.class);
+        asyncHandler.getEventTypes().addListener("tick", ticks);
+        asyncHandler.getEventTypes().addListener("tick", alsoTicks);
+        parser.lines("event: tick\ndata: 1\n\nevent: other\ndata: 2\n\n");
+
+        verify(ticks).onMessage(eq("tick"), eq(new MessageEvent("1")));
+        verify(alsoTicks).onMessage(eq("tick"), eq(new MessageEvent("1")));
+        verify(handler).onMessage(eq("other"), eq(new MessageEvent("2")));
+        verify(handler, never()).onMessage(eq("tick"), any(MessageEvent.class));
+
+        assertTrue(asyncHandler.getEventTypes().removeListener("tick", ticks));
+        assertFalse(asyncHandler.getEventTypes().removeListener("tick", ticks));
+        parser.lines("event: tick\ndata: 3\n\n");
+        verify(alsoTicks).onMessage(eq("tick"), eq(new MessageEvent("3")));
+    }
+
+    @Test
+    public void dropsUnlistenedEventsButKeepsTheirIds() throws Exception {
+        EventListener ticks = mock(EventListener.class);
+        asyncHandler.getEventTypes().addListener("tick", ticks);
+        asyncHandler.getEventTypes().setDropUnlistened(true);
+        parser.lines("event: other\nid: 1\ndata: dropped\n\ndata: dropped too\n\ndata: late name\nevent: other\n\n" +
+                "event: tick\nid: 2\ndata: kept\n\n");
+
+        verify(handler, never()).onMessage(anyString(), any(MessageEvent.class));
+        verify(ticks).onMessage(eq("tick"), eq(new MessageEvent("kept", "2", null)));
+        verify(connectionHandler, times(3)).setLastEventId("1");
+        verify(connectionHandler).setLastEventId("2");
+        assertEquals(1, parser.getEventCount());
+    }
+
+    @Test
+    public void decidesWhetherToDropAnEventOnceItsNameIsFinal() throws Exception {
+        EventListener ticks = mock(EventListener.class);
+        asyncHandler.getEventTypes().addListener("tick", ticks);
+        asyncHandler.getEventTypes().setDropUnlistened(true);
+        parser.lines("data: first\nevent: tick\n\nevent: tick\ndata: second\n\n" +
+                "event: tick\ndata: renamed\nevent: other\n\n");
+
+        verify(ticks).onMessage(eq("tick"), eq(new MessageEvent("first")));
+        verify(ticks).onMessage(eq("tick"), eq(new MessageEvent("second")));
+        verify(ticks, times(2)).onMessage(anyString(), any(MessageEvent.class));
+        verify(handler, never()).onMessage(anyString(), any(MessageEvent.class));
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.eventsource.client;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import org.reactivestreams.tck.TestEnvironment;
+import org.reactivestreams.tck.flow.FlowPublisherVerification;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+
+/**
+ * Runs the Reactive Streams TCK against {@link EventSourcePublisher}. A publisher streams an event stream that
+ * doesn't end, so it reports that it can't signal onComplete, and the TCK skips the rules that need a finite
+ * stream. Connection errors are not signalled either, so there is no failed publisher to verify.
+ */
+public class EventSourcePublisherTckTest extends FlowPublisherVerification<MessageEvent> {
+    private StubEventStreamServer server;
+    private EventSourceClient client;
+    private final List<EventSourcePublisher> publishers = new CopyOnWriteArrayList<EventSourcePublisher>();
+
+    public EventSourcePublisherTckTest() {
+        // the first element waits for the connection, the absence of signals is checked for much shorter
+        super(new TestEnvironment(2000, 200));
+    }
+
+    @BeforeClass
+    public void start() {
+        server = new StubEventStreamServer().start();
+        client = new EventSourceClient(Executors.newSingleThreadExecutor());
+    }
+
+    @AfterClass
+    public void stop() {
+        client.shutdown();
+        server.stop();
+    }
+
+    @AfterMethod
+    public void close() {
+        // some rules leave an unbounded subscription behind, which would hold up the streams of the next ones
+        for (EventSourcePublisher publisher : publishers) {
+            publisher.getEventSource().close();
+        }
+        publishers.clear();
+    }
+
+    @Override
+    public Flow.Publisher<MessageEvent> createFlowPublisher(long elements) {
+        EventSourcePublisher publisher = new EventSourcePublisher(client, 0, URI.create(server.uri("/es")));
+        publishers.add(publisher);
+        return publisher;
+    }
+
+    @Override
+    public Flow.Publisher<MessageEvent> createFailedFlowPublisher() {
+        return null;
+    }
+
+    @Override
+    public long maxElementsFromPublisher() {
+        return publisherUnableToSignalOnComplete();
+    }
+}
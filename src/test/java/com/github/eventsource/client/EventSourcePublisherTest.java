@@ -0,0 +1,186 @@
+package com.github.eventsource.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.github.eventsource.client.metrics.JmxEventSourceMetrics;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class EventSourcePublisherTest {
+    private StubEventStreamServer server = new StubEventStreamServer().start();
+    private EventSourceClient client;
+
+    @After
+    public void teardown() {
+        if (client != null) {
+            client.shutdown();
+        }
+        server.stop();
+    }
+
+    @Test
+    public void readsNoMoreThanIsRequested() throws Exception {
+        assertReadsNoMoreThanIsRequested(EventSourceClient.Transport.NETTY3);
+    }
+
+    @Test
+    public void readsNoMoreThanIsRequestedOverNetty4() throws Exception {
+        assertReadsNoMoreThanIsRequested(EventSourceClient.Transport.NETTY4);
+    }
+
+    private void assertReadsNoMoreThanIsRequested(EventSourceClient.Transport transport) throws Exception {
+        client = new EventSourceClient(Executors.newSingleThreadExecutor(), 1, transport);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new EventSourcePublisher(client, -1, URI.create(server.uri("/es"))).subscribe(subscriber);
+        subscriber.subscription.request(10);
+        subscriber.awaitMessages(10);
+
+        // the server is held back once the socket buffers are full
+        long deadline = System.currentTimeMillis() + 5000;
+        long written;
+        do {
+            written = server.getBytesWritten();
+            Thread.sleep(300);
+        } while (written != server.getBytesWritten() && System.currentTimeMillis() < deadline);
+        assertEquals("Still writing", written, server.getBytesWritten());
+        assertTrue("Written: " + written, written < 32 * 1024 * 1024);
+        assertEquals(10, subscriber.messages.size());
+
+        subscriber.subscription.request(1000);
+        subscriber.awaitMessages(1010);
+        Thread.sleep(100);
+        assertEquals(1010, subscriber.messages.size());
+    }
+
+    @Test
+    public void cancellingClosesTheConnection() throws Exception {
+        client = new EventSourceClient(Executors.newSingleThreadExecutor(), 1);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new EventSourcePublisher(client, 0, URI.create(server.uri("/es"))).subscribe(subscriber);
+        subscriber.subscription.request(5);
+        subscriber.awaitMessages(5);
+        assertEquals(1, client.getOpenChannelCount());
+
+        subscriber.subscription.cancel();
+        subscriber.subscription.cancel();
+        awaitNoOpenChannels();
+        subscriber.subscription.request(5);
+        Thread.sleep(100);
+        assertEquals(5, subscriber.messages.size());
+        assertEquals(0, client.getEventSourceCount());
+    }
+
+    @Test
+    public void signalsANonPositiveRequestAsAnError() throws Exception {
+        client = new EventSourceClient(Executors.newSingleThreadExecutor(), 1);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new EventSourcePublisher(client, 0, URI.create(server.uri("/es"))).subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertTrue(subscriber.failed.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        awaitNoOpenChannels();
+    }
+
+    @Test
+    public void rejectsASecondSubscriber() throws Exception {
+        client = new EventSourceClient(Executors.newSingleThreadExecutor(), 1);
+        EventSourcePublisher publisher = new EventSourcePublisher(client, 0, URI.create(server.uri("/es")));
+        publisher.subscribe(new RecordingSubscriber());
+        RecordingSubscriber second = new RecordingSubscriber();
+        publisher.subscribe(second);
+        assertTrue(second.subscription != null);
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    @Test
+    public void requestingFromOnNextDoesNotRecurse() throws Exception {
+        client = new EventSourceClient(Executors.newSingleThreadExecutor(), 1);
+        final AtomicInteger depth = new AtomicInteger();
+        final AtomicInteger maxDepth = new AtomicInteger();
+        RecordingSubscriber subscriber = new RecordingSubscriber() {
+            @Override
+            public void onNext(MessageEvent item) {
+                maxDepth.set(Math.max(maxDepth.get(), depth.incrementAndGet()));
+                super.onNext(item);
+                subscription.request(1);
+                depth.decrementAndGet();
+            }
+        };
+        new EventSourcePublisher(client, 0, URI.create(server.uri("/es"))).subscribe(subscriber);
+        subscriber.subscription.request(1);
+        subscriber.awaitMessages(10000);
+        assertEquals(1, maxDepth.get());
+        subscriber.subscription.cancel();
+    }
+
+    @Test
+    public void countsASubscriberThatThrowsAsAFailedDispatchAndStops() throws Exception {
+        JmxEventSourceMetrics metrics = new JmxEventSourceMetrics();
+        client = new EventSourceClient(Executors.newSingleThreadExecutor(), 1).setMetrics(metrics);
+        RecordingSubscriber subscriber = new RecordingSubscriber() {
+            @Override
+            public void onNext(MessageEvent item) {
+                super.onNext(item);
+                throw new IllegalStateException("broken subscriber");
+            }
+        };
+        new EventSourcePublisher(client, 0, URI.create(server.uri("/es"))).subscribe(subscriber);
+        subscriber.subscription.request(5);
+        subscriber.awaitMessages(1);
+        awaitNoOpenChannels();
+        assertEquals(1, metrics.getDispatchFailures());
+        assertEquals(1, subscriber.messages.size());
+    }
+
+    private void awaitNoOpenChannels() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.getOpenChannelCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, client.getOpenChannelCount());
+    }
+
+    static class RecordingSubscriber implements Flow.Subscriber<MessageEvent> {
+        final List<MessageEvent> messages = new CopyOnWriteArrayList<MessageEvent>();
+        final CountDownLatch failed = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(MessageEvent item) {
+            messages.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            failed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        void awaitMessages(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (messages.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue("Got " + messages.size() + " of " + count + " messages", messages.size() >= count);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.github.eventsource.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * End-to-end tests against {@link StubEventStreamServer}.
+ */
+public class EventSourceStubServerTest {
+    private StubEventStreamServer server;
+    private EventSourceClient client;
+    private EventSource eventSource;
+
+    @Before
+    public void setup() {
+        server = new StubEventStreamServer().start();
+        client = new EventSourceClient(Executors.newSingleThreadExecutor());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        if (eventSource != null) {
+            eventSource.close();
+        }
+        client.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void receivesEveryEvent() throws Exception {
+        server.stream("data: a\n\ndata: b\r\n\r\n", 500);
+        CountingHandler handler = new CountingHandler(1000);
+        eventSource = new EventSource(client, -1, URI.create(server.uri("/es")), handler);
+        eventSource.connect();
+
+        assertTrue("Didn't get all messages", handler.received.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void receivesEveryEventOverNetty4() throws Exception {
+        client.shutdown();
+        client = new EventSourceClient(Executors.newSingleThreadExecutor(), 2, EventSourceClient.Transport.NETTY4);
+        receivesEveryEvent();
+    }
+
+    @Test
+    public void boundsPendingEventsWhileTheHandlerIsBlocked() throws Exception {
+        boundsPendingEventsWhileTheHandlerIsBlocked(EventSourceClient.Transport.NETTY3);
+    }
+
+    @Test
+    public void boundsPendingEventsOverNetty4() throws Exception {
+        boundsPendingEventsWhileTheHandlerIsBlocked(EventSourceClient.Transport.NETTY4);
+    }
+
+    private void boundsPendingEventsWhileTheHandlerIsBlocked(EventSourceClient.Transport transport) throws Exception {
+        server.stream("data: tick\n\n", 20000);
+        final CountDownLatch unblock = new CountDownLatch(1);
+        final AtomicInteger maxPending = new AtomicInteger();
+        final AtomicInteger pending = new AtomicInteger();
+        CountingHandler handler = new CountingHandler(20000) {
+            @Override
+            public void onMessage(String event, MessageEvent message) throws Exception {
+                unblock.await();
+                pending.decrementAndGet();
+                super.onMessage(event, message);
+            }
+        };
+        client.shutdown();
+        client = new EventSourceClient(new Executor() {
+            private final Executor delegate = Executors.newSingleThreadExecutor();
+
+            @Override
+            public void execute(Runnable command) {
+                int now = pending.incrementAndGet();
+                if (now > maxPending.get()) {
+                    maxPending.set(now);
+                }
+                delegate.execute(command);
+            }
+        }, 2, transport);
+        eventSource = new EventSource(client, -1, URI.create(server.uri("/es")), handler);
+        eventSource.setPendingEventWatermarks(10, 100);
+        eventSource.connect();
+
+        Thread.sleep(500);
+        unblock.countDown();
+        assertTrue("Didn't get all messages", handler.received.await(10, TimeUnit.SECONDS));
+        // reading stops at the high watermark, only what was already read keeps coming in
+        assertTrue("Too many pending events: " + maxPending.get(), maxPending.get() < 5000);
+    }
+
+    @Test
+    public void reconnectsWhenTheStreamGoesQuiet() throws Exception {
+        reconnectsWhenTheStreamGoesQuiet(EventSourceClient.Transport.NETTY3);
+    }
+
+    @Test
+    public void reconnectsWhenTheStreamGoesQuietOverNetty4() throws Exception {
+        reconnectsWhenTheStreamGoesQuiet(EventSourceClient.Transport.NETTY4);
+    }
+
+    private void reconnectsWhenTheStreamGoesQuiet(EventSourceClient.Transport transport) throws Exception {
+        // response headers, then nothing
+        server.stream(": ping\n", 1).tickEvery(60000);
+        client.shutdown();
+        client = new EventSourceClient(Executors.newSingleThreadExecutor(), 1, transport);
+        final CountDownLatch connects = new CountDownLatch(2);
+        final CountDownLatch timeouts = new CountDownLatch(1);
+        eventSource = new EventSource(client, 10, URI.create(server.uri("/es")), new CountingHandler(0) {
+            @Override
+            public void onConnect() {
+                connects.countDown();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (t instanceof EventSourceException) {
+                    timeouts.countDown();
+                }
+            }
+        });
+        eventSource.setReadTimeoutMillis(200);
+        eventSource.connect();
+
+        assertTrue("Didn't time out", timeouts.await(5, TimeUnit.SECONDS));
+        assertTrue("Didn't reconnect", connects.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void commentLinesKeepTheStreamAlive() throws Exception {
+        server.stream(": heartbeat\n", 1).tickEvery(50);
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch connected = new CountDownLatch(1);
+        eventSource = new EventSource(client, 10, URI.create(server.uri("/es")), new CountingHandler(0) {
+            @Override
+            public void onConnect() {
+                connected.countDown();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                errors.incrementAndGet();
+            }
+        });
+        eventSource.setReadTimeoutMillis(300);
+        eventSource.connect();
+
+        assertTrue("Didn't connect", connected.await(5, TimeUnit.SECONDS));
+        Thread.sleep(1000);
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void doesNotTimeOutWhileReadsAreSuspended() throws Exception {
+        doesNotTimeOutWhileReadsAreSuspended(EventSourceClient.Transport.NETTY3);
+    }
+
+    @Test
+    public void doesNotTimeOutWhileReadsAreSuspendedOverNetty4() throws Exception {
+        doesNotTimeOutWhileReadsAreSuspended(EventSourceClient.Transport.NETTY4);
+    }
+
+    private void doesNotTimeOutWhileReadsAreSuspended(EventSourceClient.Transport transport) throws Exception {
+        server.stream("data: tick\n\n", 5000);
+        client.shutdown();
+        client = new EventSourceClient(Executors.newSingleThreadExecutor(), 1, transport);
+        final CountDownLatch unblock = new CountDownLatch(1);
+        final AtomicInteger connects = new AtomicInteger();
+        final List<Throwable> errors = new CopyOnWriteArrayList<Throwable>();
+        CountingHandler handler = new CountingHandler(5000) {
+            @Override
+            public void onConnect() {
+                connects.incrementAndGet();
+            }
+
+            @Override
+            public void onMessage(String event, MessageEvent message) throws Exception {
+                unblock.await();
+                super.onMessage(event, message);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                errors.add(t);
+            }
+        };
+        eventSource = new EventSource(client, -1, URI.create(server.uri("/es")), handler);
+        eventSource.setPendingEventWatermarks(10, 100);
+        eventSource.setReadTimeoutMillis(200);
+        eventSource.connect();
+
+        // the server would be heard from well within the timeout, had the client not stopped reading
+        Thread.sleep(1000);
+        unblock.countDown();
+        assertTrue("Didn't get all messages", handler.received.await(10, TimeUnit.SECONDS));
+        assertEquals(errors.toString(), 0, errors.size());
+        assertEquals(1, connects.get());
+    }
+
+    @Test
+    public void inflatesCompressedStreams() throws Exception {
+        inflatesCompressedStreams(EventSourceClient.Transport.NETTY3);
+    }
+
+    @Test
+    public void inflatesCompressedStreamsOverNetty4() throws Exception {
+        inflatesCompressedStreams(EventSourceClient.Transport.NETTY4);
+    }
+
+    private void inflatesCompressedStreams(EventSourceClient.Transport transport) throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 20; i++) {
+            json.append(i == 0 ? "" : ", ").append("{\"symbol\": \"ABC\", \"price\": ").append(i).append('}');
+        }
+        final String quotes = json.append(']').toString();
+        // verbose enough to shrink even when every event is flushed on its own
+        server.gzip().stream("data: " + quotes + "\n\n", 500);
+        client.shutdown();
+        client = new EventSourceClient(Executors.newSingleThreadExecutor(), 1, transport);
+        final List<String> data = new CopyOnWriteArrayList<String>();
+        CountingHandler handler = new CountingHandler(500) {
+            @Override
+            public void onMessage(String event, MessageEvent message) throws Exception {
+                data.add(message.data);
+                super.onMessage(event, message);
+            }
+        };
+        eventSource = new EventSource(client, -1, URI.create(server.uri("/es")), handler);
+        eventSource.setCompression(true);
+        eventSource.connect();
+
+        assertTrue("Didn't get all messages", handler.received.await(5, TimeUnit.SECONDS));
+        assertTrue(server.getLastRequest(), server.getLastRequest().contains("gzip"));
+        assertEquals(quotes, data.get(499));
+        assertTrue(server.getBytesWritten() < eventSource.getBytesReceived());
+    }
+
+    @Test
+    public void doesNotAskForCompressionByDefault() throws Exception {
+        server.gzip().stream("data: a\n\n", 10);
+        CountingHandler handler = new CountingHandler(10);
+        eventSource = new EventSource(client, -1, URI.create(server.uri("/es")), handler);
+        eventSource.connect();
+
+        assertTrue("Didn't get all messages", handler.received.await(5, TimeUnit.SECONDS));
+        assertTrue(server.getLastRequest(), !server.getLastRequest().toLowerCase().contains("accept-encoding"));
+    }
+
+    static class CountingHandler implements EventSourceHandler {
+        final CountDownLatch received;
+
+        CountingHandler(int expected) {
+            received = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onConnect() {
+        }
+
+        @Override
+        public void onMessage(String event, MessageEvent message) throws Exception {
+            received.countDown();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            t.printStackTrace();
+        }
+    }
+}
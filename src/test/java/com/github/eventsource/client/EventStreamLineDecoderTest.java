@@ -0,0 +1,96 @@
+package com.github.eventsource.client;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+import com.github.eventsource.client.impl.netty.EventStreamLineDecoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.http.DefaultHttpChunk;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventStreamLineDecoderTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final List<String> lines = new ArrayList<String>();
+    private DecoderEmbedder<Object> embedder;
+
+    @Before
+    public void setup() {
+        embedder = new DecoderEmbedder<Object>(new EventStreamLineDecoder(16), new SimpleChannelUpstreamHandler() {
+            @Override
+            public void messageReceived(ChannelHandlerContext ctx, org.jboss.netty.channel.MessageEvent e) {
+                if (e.getMessage() instanceof ChannelBuffer) {
+                    // lines are only valid during the callback
+                    lines.add(((ChannelBuffer) e.getMessage()).toString(UTF_8));
+                } else if (e.getMessage() instanceof EventStreamLineDecoder.LinePart) {
+                    lines.add(((EventStreamLineDecoder.LinePart) e.getMessage()).getContent().toString(UTF_8) + "...");
+                }
+            }
+        });
+        embedder.offer(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+    }
+
+    @Test
+    public void emitsLinesAsSoonAsTheyAreComplete() throws Exception {
+        chunk("data: a\ndata");
+        assertEquals(asList("data: a"), lines);
+
+        chunk(": b\n\n");
+        assertEquals(asList("data: a", "data: b", ""), lines);
+    }
+
+    @Test
+    public void supportsAllLineTerminators() throws Exception {
+        chunk("a\r\nb\rc\n\r\n");
+        assertEquals(asList("a", "b", "c", ""), lines);
+    }
+
+    @Test
+    public void handlesCrLfSplitAcrossChunks() throws Exception {
+        chunk("a\r");
+        chunk("\nb\r");
+        chunk("c\n");
+        assertEquals(asList("a", "b", "c"), lines);
+    }
+
+    @Test
+    public void reassemblesLinesSpanningSeveralChunks() throws Exception {
+        chunk("da");
+        chunk("ta: ");
+        chunk("hello\n");
+        chunk("\n");
+        assertEquals(asList("data: hello", ""), lines);
+    }
+
+    @Test
+    public void decodesContentOfTheResponseItself() throws Exception {
+        DefaultHttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        response.setContent(ChannelBuffers.copiedBuffer("data: x\n\n", UTF_8));
+        embedder.offer(response);
+        assertEquals(asList("data: x", ""), lines);
+    }
+
+    @Test
+    public void passesLinesLongerThanTheLimitOnInPieces() throws Exception {
+        chunk("data: 0123456789");
+        chunk("abcdef\n");
+        chunk("data: 0123456789abcdefghijklmnopqrstuvwxyz\n\n");
+        assertEquals(asList("data: 0123456789...", "abcdef",
+                            "data: 0123456789...", "abcdefghijklmnop...", "qrstuvwxyz", ""), lines);
+    }
+
+    private void chunk(String content) {
+        embedder.offer(new DefaultHttpChunk(ChannelBuffers.copiedBuffer(content, UTF_8)));
+    }
+}
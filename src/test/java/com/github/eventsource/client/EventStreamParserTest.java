@@ -10,6 +10,11 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import com.github.eventsource.client.impl.ConnectionHandler;
 import com.github.eventsource.client.impl.EventStreamParser;
 import com.github.eventsource.client.stubs.StubHandler;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -129,4 +134,94 @@ public class EventStreamParserTest {
                 "\n");
         assertEquals(asList(new MessageEvent("hello\nworld"), new MessageEvent("bonjour\nmonde")), stubHandler.getMessageEvents());
     }
+
+    @Test
+    public void onlyRemovesSpaceDirectlyAfterColon() throws Exception {
+        esp.line("data:hello world");
+        esp.line("");
+
+        verify(eh).onMessage(eq("message"), eq(new MessageEvent("hello world", null, ORIGIN)));
+    }
+
+    @Test
+    public void parsesChannelBuffersWithoutDecodingThemFirst() throws Exception {
+        StubHandler stubHandler = new StubHandler();
+        EventStreamParser esp = new EventStreamParser(null, stubHandler, stubHandler);
+        esp.lines(ChannelBuffers.copiedBuffer("" +
+                "retry: 500\n" +
+                "event: greeting\n" +
+                "data: hello\n" +
+                "data: w\u00f6rld\n" +
+                "id: 42\n" +
+                "\n", Charset.forName("UTF-8")));
+        assertEquals(asList(new MessageEvent("hello\nw\u00f6rld", "42", null)), stubHandler.getMessageEvents("greeting"));
+        assertEquals(Long.valueOf(500), stubHandler.getReconnectionTimeMillis());
+        assertEquals("42", stubHandler.getLastEventId());
+    }
+
+    @Test
+    public void parsesDirectChannelBuffers() throws Exception {
+        byte[] bytes = "data: \u20ac\n\n".getBytes("UTF-8");
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        esp.lines(ChannelBuffers.wrappedBuffer(direct));
+
+        verify(eh).onMessage(eq("message"), eq(new MessageEvent("\u20ac", null, ORIGIN)));
+    }
+
+    @Test
+    public void skipsEventsTheFilterRejects() throws Exception {
+        final List<String> asked = new ArrayList<String>();
+        esp.getEventTypes().setFilter(new EventFilter() {
+            @Override
+            public boolean accept(String event, String lastEventId) {
+                asked.add(event + "/" + lastEventId);
+                return !event.equals("heartbeat") && !"skip".equals(lastEventId);
+            }
+        });
+        esp.lines("" +
+                "event: heartbeat\n" +
+                "data: beat\n" +
+                "\n" +
+                "data: kept\n" +
+                "\n" +
+                "data: rejected by its id\n" +
+                "id: skip\n" +
+                "\n" +
+                "id: 2\n" +
+                "data: kept too\n" +
+                "\n");
+
+        verify(eh).onMessage(eq("message"), eq(new MessageEvent("kept", null, ORIGIN)));
+        verify(eh).onMessage(eq("message"), eq(new MessageEvent("kept too", "2", ORIGIN)));
+        verifyNoMoreInteractions(eh);
+        verify(ch).setLastEventId("skip");
+        assertEquals(asList("heartbeat/null", "message/null", "message/skip", "message/2"), asked);
+    }
+
+    @Test
+    public void filtersEventsByTheirFinalNameAndIdWhateverTheOrderOfTheirFields() throws Exception {
+        final List<String> asked = new ArrayList<String>();
+        esp.getEventTypes().setFilter(new EventFilter() {
+            @Override
+            public boolean accept(String event, String lastEventId) {
+                asked.add(event + "/" + lastEventId);
+                return event.equals("trade");
+            }
+        });
+        esp.lines("" +
+                "event: trade\nid: 1\ndata: a\n\n" +
+                "id: 2\nevent: trade\ndata: b\n\n" +
+                "data: c\nid: 3\nevent: trade\n\n" +
+                "event: trade\ndata: d\nevent: quote\nid: 4\n\n" +
+                "id: 5\ndata: e\nevent: trade\n\n");
+
+        verify(eh).onMessage(eq("trade"), eq(new MessageEvent("a", "1", ORIGIN)));
+        verify(eh).onMessage(eq("trade"), eq(new MessageEvent("b", "2", ORIGIN)));
+        verify(eh).onMessage(eq("trade"), eq(new MessageEvent("c", "3", ORIGIN)));
+        verify(eh).onMessage(eq("trade"), eq(new MessageEvent("e", "5", ORIGIN)));
+        verifyNoMoreInteractions(eh);
+        verify(ch).setLastEventId("4");
+        assertEquals(asList("trade/1", "trade/2", "trade/3", "quote/4", "trade/5"), asked);
+    }
 }
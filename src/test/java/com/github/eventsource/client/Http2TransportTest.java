@@ -0,0 +1,94 @@
+package com.github.eventsource.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.github.eventsource.client.impl.netty4.Http2ConnectionPool;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class Http2TransportTest {
+    private StubHttp2EventStreamServer server;
+    private EventSourceClient client;
+
+    @After
+    public void teardown() {
+        if (client != null) {
+            client.shutdown();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void multiplexesStreamsOverOneConnection() throws Exception {
+        server = new StubHttp2EventStreamServer().stream("data: a\n\ndata: b\n\n", 50).start();
+        client = new EventSourceClient(Executors.newSingleThreadExecutor(), 2, EventSourceClient.Transport.HTTP2);
+        List<EventSourceStubServerTest.CountingHandler> handlers = new ArrayList<EventSourceStubServerTest.CountingHandler>();
+        for (int i = 0; i < 50; i++) {
+            EventSourceStubServerTest.CountingHandler handler = new EventSourceStubServerTest.CountingHandler(100);
+            new EventSource(client, -1, URI.create(server.uri("/es/" + i)), handler).connect();
+            handlers.add(handler);
+        }
+        for (EventSourceStubServerTest.CountingHandler handler : handlers) {
+            assertTrue("Didn't get all messages", handler.received.await(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void negotiatesHttp2OverTls() throws Exception {
+        server = new StubHttp2EventStreamServer().stream("data: a\n\n", 10).secure(TlsReconnectTest.sslContext()).start();
+        client = new EventSourceClient(Executors.newSingleThreadExecutor(), 1, EventSourceClient.Transport.HTTP2)
+                .setSslContext(TlsReconnectTest.sslContext());
+        EventSourceStubServerTest.CountingHandler first = new EventSourceStubServerTest.CountingHandler(10);
+        EventSourceStubServerTest.CountingHandler second = new EventSourceStubServerTest.CountingHandler(10);
+        new EventSource(client, -1, URI.create(server.uri("/first")), first).connect();
+        new EventSource(client, -1, URI.create(server.uri("/second")), second).connect();
+
+        assertTrue("Didn't get all messages", first.received.await(5, TimeUnit.SECONDS));
+        assertTrue("Didn't get all messages", second.received.await(5, TimeUnit.SECONDS));
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void holdsBackASuspendedStreamWithItsOwnFlowControlWindow() throws Exception {
+        StringBuilder event = new StringBuilder("data: ");
+        while (event.length() < 1024) {
+            event.append('x');
+        }
+        server = new StubHttp2EventStreamServer().stream(event.append("\n\n").toString(), Long.MAX_VALUE).start();
+        // a mailbox per stream, so the blocked handler holds up nothing but its own stream
+        client = EventSourceClient.withVirtualThreads(1, EventSourceClient.Transport.HTTP2);
+        final CountDownLatch release = new CountDownLatch(1);
+        EventSource blocked = new EventSource(client, -1, URI.create(server.uri("/blocked")),
+                                              new EventSourceStubServerTest.CountingHandler(0) {
+            @Override
+            public void onMessage(String event, MessageEvent message) throws Exception {
+                release.await();
+            }
+        });
+        blocked.setPendingEventWatermarks(16, 64);
+        blocked.connect();
+        EventSourceStubServerTest.CountingHandler other = new EventSourceStubServerTest.CountingHandler(20000);
+        new EventSource(client, -1, URI.create(server.uri("/other")), other).connect();
+        try {
+            // 20MB on the other stream while this one is stuck
+            assertTrue("The other stream was held up", other.received.await(10, TimeUnit.SECONDS));
+            long written = server.getBytesWritten("/blocked");
+            assertTrue(written + " bytes written to the blocked stream",
+                       written < 2 * Http2ConnectionPool.STREAM_WINDOW_SIZE);
+            assertEquals(1, server.getConnectionCount());
+        } finally {
+            blocked.close().join();
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.eventsource.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.github.eventsource.client.metrics.JmxEventSourceMetrics;
+import com.github.eventsource.client.metrics.LatencyHistogram;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.management.ObjectName;
+import org.junit.Test;
+
+public class JmxEventSourceMetricsTest {
+    @Test
+    public void countsWhatHappensOnAStream() throws Exception {
+        StubEventStreamServer server = new StubEventStreamServer().stream("data: a\n\n: heartbeat\n\n", 100).start();
+        JmxEventSourceMetrics metrics = new JmxEventSourceMetrics().register("test");
+        EventSourceClient client = new EventSourceClient(Executors.newSingleThreadExecutor()).setMetrics(metrics);
+        try {
+            EventSourceStubServerTest.CountingHandler handler = new EventSourceStubServerTest.CountingHandler(100);
+            EventSource eventSource = new EventSource(client, -1, URI.create(server.uri("/es")), handler);
+            eventSource.connect();
+            assertTrue("Didn't get all messages", handler.received.await(5, TimeUnit.SECONDS));
+            eventSource.close();
+            // the last dispatch is reported just after the handler has returned
+            for (int i = 0; i < 100 && metrics.getEventsDispatched() < 100; i++) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(100, metrics.getEventsParsed());
+            assertEquals(100, metrics.getEventsDispatched());
+            assertEquals(0, metrics.getQueueDepth());
+            assertEquals(eventSource.getBytesReceived(), metrics.getBytesRead());
+            assertEquals(0, metrics.getBadStatusResponses());
+            assertTrue(metrics.getHandlerTimeMax() > 0);
+            ObjectName name = new ObjectName("com.github.eventsource:type=EventSourceClient,name=\"test\"");
+            assertEquals(100L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "EventsDispatched"));
+        } finally {
+            metrics.unregister();
+            client.shutdown();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void histogramQuantilesAreWithinAFactorOfTwo() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50500, histogram.getMean());
+        assertEquals(100000, histogram.getMax());
+        long p50 = histogram.getQuantile(0.5);
+        assertTrue("p50 " + p50, p50 >= 50000 && p50 < 100000);
+        long p99 = histogram.getQuantile(0.99);
+        assertTrue("p99 " + p99, p99 >= 99000 && p99 < 2 * 99000);
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.eventsource.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static java.util.Arrays.asList;
+
+import com.github.eventsource.client.impl.AsyncEventSourceHandler;
+import com.github.eventsource.client.impl.ConnectionHandler;
+import com.github.eventsource.client.impl.EventStreamParser;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LargeEventTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private RecordingHandler handler;
+    private EventStreamParser parser;
+
+    @Before
+    public void setup() {
+        handler = new RecordingHandler();
+        parser = new EventStreamParser(null, new AsyncEventSourceHandler(SAME_THREAD, handler), mock(ConnectionHandler.class));
+        parser.setMaxEventSize(8);
+    }
+
+    @Test
+    public void streamsEventsLargerThanTheMaximumInPieces() throws Exception {
+        parser.lines("event: snapshot\nid: 1\ndata: 0123\ndata: 456789\ndata: abcdefghijkl\n\ndata: small\n\n");
+
+        assertEquals(asList("start snapshot 1", "end snapshot 1", "message small"), handler.calls);
+        assertEquals("0123\n456789\nabcdefghijkl", handler.streamed.toString("UTF-8"));
+        for (int size : handler.pieceSizes) {
+            assertTrue("Piece of " + size + " bytes", size <= 12);
+        }
+    }
+
+    @Test
+    public void assemblesDataLinesPassedInParts() throws Exception {
+        parser.setMaxEventSize(1024);
+        parser.linePart(bytes("data:"), 0, 5);
+        parser.linePart(bytes(" 0123"), 0, 5);
+        parser.line(bytes("4567"), 0, 4);
+        parser.linePart(bytes("id: ignored"), 0, 11);
+        parser.line(bytes("because it is too long"), 0, 22);
+        parser.line("");
+
+        assertEquals(asList("message 01234567"), handler.calls);
+    }
+
+    @Test
+    public void skipsLargeEventsUnlessTheHandlerStreamsThem() throws Exception {
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        final List<String> messages = new ArrayList<String>();
+        parser = new EventStreamParser(null, new AsyncEventSourceHandler(SAME_THREAD, new EventSourceHandler() {
+            @Override
+            public void onConnect() {
+            }
+
+            @Override
+            public void onMessage(String event, MessageEvent message) {
+                messages.add(message.data);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                errors.add(t);
+            }
+        }), mock(ConnectionHandler.class));
+        parser.setMaxEventSize(8);
+        parser.lines("data: 0123456789\n\ndata: small\n\n");
+
+        assertEquals(asList("small"), messages);
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0) instanceof EventSourceException);
+    }
+
+    @Test
+    public void streamsALargeEventFromTheServer() throws Exception {
+        streamsALargeEventFromTheServer(EventSourceClient.Transport.NETTY3);
+    }
+
+    @Test
+    public void streamsALargeEventFromTheServerOverNetty4() throws Exception {
+        streamsALargeEventFromTheServer(EventSourceClient.Transport.NETTY4);
+    }
+
+    private void streamsALargeEventFromTheServer(EventSourceClient.Transport transport) throws Exception {
+        StringBuilder data = new StringBuilder();
+        while (data.length() < 200 * 1024) {
+            data.append("0123456789");
+        }
+        StubEventStreamServer server = new StubEventStreamServer().stream("data: " + data + "\n\n", 2).start();
+        EventSourceClient client = new EventSourceClient(Executors.newSingleThreadExecutor(), 1, transport);
+        final CountDownLatch ended = new CountDownLatch(2);
+        RecordingHandler handler = new RecordingHandler() {
+            @Override
+            public void onMessageEnd(String event, String lastEventId) {
+                super.onMessageEnd(event, lastEventId);
+                ended.countDown();
+            }
+        };
+        try {
+            EventSource eventSource = new EventSource(client, -1, URI.create(server.uri("/es")), handler);
+            eventSource.setMaxEventSize(64 * 1024);
+            eventSource.connect();
+            assertTrue("Didn't get both events", ended.await(5, TimeUnit.SECONDS));
+            assertEquals(data.toString() + data, handler.streamed.toString("UTF-8"));
+            for (int size : handler.pieceSizes) {
+                assertTrue("Piece of " + size + " bytes", size <= 64 * 1024);
+            }
+            eventSource.close();
+        } finally {
+            client.shutdown();
+            server.stop();
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(UTF_8);
+    }
+
+    static class RecordingHandler implements StreamingEventSourceHandler {
+        final List<String> calls = new ArrayList<String>();
+        final ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        final List<Integer> pieceSizes = new ArrayList<Integer>();
+
+        @Override
+        public void onMessageStart(String event, String lastEventId) {
+            calls.add("start " + event + " " + lastEventId);
+        }
+
+        @Override
+        public void onMessageData(ByteBuffer data) {
+            pieceSizes.add(data.remaining());
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            streamed.write(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void onMessageEnd(String event, String lastEventId) {
+            calls.add("end " + event + " " + lastEventId);
+        }
+
+        @Override
+        public void onConnect() {
+        }
+
+        @Override
+        public void onMessage(String event, MessageEvent message) {
+            calls.add(event + " " + message.data);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            t.printStackTrace();
+        }
+    }
+}
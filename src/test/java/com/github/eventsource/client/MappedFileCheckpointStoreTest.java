@@ -0,0 +1,114 @@
+package com.github.eventsource.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.github.eventsource.client.checkpoint.MappedFileCheckpointStore;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedFileCheckpointStoreTest {
+    private File file;
+
+    @Before
+    public void createFile() throws Exception {
+        file = File.createTempFile("checkpoints", ".dat");
+        file.delete();
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void keepsTheLastIdPerStreamAcrossReopening() throws Exception {
+        MappedFileCheckpointStore store = new MappedFileCheckpointStore(file);
+        assertNull(store.load("http://a/es"));
+        store.acknowledge("http://a/es", "1");
+        store.acknowledge("http://a/es", "2");
+        store.acknowledge("http://b/es", "été-7");
+        store.close();
+
+        store = new MappedFileCheckpointStore(file);
+        assertEquals("2", store.load("http://a/es"));
+        assertEquals("été-7", store.load("http://b/es"));
+        store.close();
+    }
+
+    @Test
+    public void syncsOncePerFlushNotOncePerEvent() throws Exception {
+        MappedFileCheckpointStore store = new MappedFileCheckpointStore(file, 4096, 60000);
+        for (int i = 0; i < 10000; i++) {
+            store.acknowledge("http://a/es", Integer.toString(i));
+        }
+        store.flush();
+        store.flush();
+        assertEquals(1, store.getFlushCount());
+        store.close();
+        assertEquals(1, store.getFlushCount());
+    }
+
+    @Test
+    public void fallsBackToThePreviousSlotWhenTheNewestIsTorn() throws Exception {
+        MappedFileCheckpointStore store = new MappedFileCheckpointStore(file, 4096, 60000);
+        store.acknowledge("http://a/es", "1");
+        store.flush();
+        store.acknowledge("http://a/es", "2");
+        store.close();
+
+        // the first write went to the second slot and the second one to the first, damage the latter
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(8 + 16 + 4);
+        raf.write(0xff);
+        raf.close();
+
+        store = new MappedFileCheckpointStore(file);
+        assertEquals("1", store.load("http://a/es"));
+        store.close();
+    }
+
+    @Test
+    public void resumesFromTheCheckpointOnTheFirstConnect() throws Exception {
+        StubEventStreamServer server = new StubEventStreamServer().stream("id: 42\ndata: a\n\n", 10).start();
+        URI uri = URI.create(server.uri("/es"));
+        MappedFileCheckpointStore store = new MappedFileCheckpointStore(file);
+        EventSourceClient client = new EventSourceClient(Executors.newSingleThreadExecutor()).setCheckpointStore(store);
+        try {
+            EventSourceStubServerTest.CountingHandler handler = new EventSourceStubServerTest.CountingHandler(10);
+            EventSource eventSource = new EventSource(client, -1, uri, handler);
+            eventSource.connect();
+            assertTrue("Didn't get all messages", handler.received.await(5, TimeUnit.SECONDS));
+            assertTrue(server.getLastRequest().indexOf("Last-Event-ID") < 0);
+            eventSource.close();
+        } finally {
+            client.shutdown();
+        }
+        // the last acknowledgement is made just after the handler has returned
+        Thread.sleep(100);
+        store.close();
+
+        // a restart
+        store = new MappedFileCheckpointStore(file);
+        client = new EventSourceClient(Executors.newSingleThreadExecutor()).setCheckpointStore(store);
+        try {
+            EventSourceStubServerTest.CountingHandler handler = new EventSourceStubServerTest.CountingHandler(1);
+            EventSource eventSource = new EventSource(client, -1, uri, handler);
+            eventSource.connect();
+            assertTrue("Didn't get a message", handler.received.await(5, TimeUnit.SECONDS));
+            assertTrue(server.getLastRequest(), server.getLastRequest().contains("Last-Event-ID: 42"));
+            eventSource.close();
+        } finally {
+            client.shutdown();
+            store.close();
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.eventsource.client;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+import com.github.eventsource.client.impl.netty4.EventStreamLineDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class Netty4EventStreamLineDecoderTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final List<String> lines = new ArrayList<String>();
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setup() {
+        channel = new EmbeddedChannel(new EventStreamLineDecoder(16), new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                if (msg instanceof ByteBuf) {
+                    // lines are only valid during the callback and are not ours to release
+                    lines.add(((ByteBuf) msg).toString(UTF_8));
+                } else if (msg instanceof EventStreamLineDecoder.LinePart) {
+                    lines.add(((EventStreamLineDecoder.LinePart) msg).content().toString(UTF_8) + "...");
+                }
+            }
+        });
+        channel.writeInbound(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+    }
+
+    @Test
+    public void splitsLinesAcrossChunksAndReleasesThem() throws Exception {
+        ByteBuf first = chunk("data: a\r\ndata");
+        ByteBuf second = chunk(": b\r");
+        ByteBuf third = chunk("\n\n");
+
+        assertEquals(asList("data: a", "data: b", ""), lines);
+        assertEquals(0, first.refCnt());
+        assertEquals(0, second.refCnt());
+        assertEquals(0, third.refCnt());
+    }
+
+    @Test
+    public void passesTooLongLinesSpanningChunksOnInPieces() throws Exception {
+        ByteBuf first = chunk("data: 0123456789");
+        ByteBuf second = chunk("0123456789\n");
+
+        assertEquals(asList("data: 0123456789...", "0123456789"), lines);
+        assertEquals(0, first.refCnt());
+        assertEquals(0, second.refCnt());
+    }
+
+    private ByteBuf chunk(String content) {
+        ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer();
+        buffer.writeBytes(content.getBytes(UTF_8));
+        channel.writeInbound(new DefaultHttpContent(buffer));
+        return buffer;
+    }
+}
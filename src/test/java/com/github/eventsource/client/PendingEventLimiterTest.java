@@ -0,0 +1,89 @@
+package com.github.eventsource.client;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+import com.github.eventsource.client.impl.FlowControl;
+import com.github.eventsource.client.impl.PendingEventLimiter;
+import com.github.eventsource.client.impl.SharedFlowControl;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class PendingEventLimiterTest {
+    private final List<String> calls = new ArrayList<String>();
+    private final PendingEventLimiter limiter = new PendingEventLimiter(1, 3, new FlowControl() {
+        @Override
+        public void suspendReads() {
+            calls.add("suspend");
+        }
+
+        @Override
+        public void resumeReads() {
+            calls.add("resume");
+        }
+    });
+
+    @Test
+    public void suspendsAtHighAndResumesAtLowWatermark() {
+        limiter.enqueued();
+        limiter.enqueued();
+        assertEquals(0, calls.size());
+
+        limiter.enqueued();
+        limiter.enqueued();
+        assertEquals(asList("suspend"), calls);
+
+        limiter.delivered(2);
+        assertEquals(asList("suspend"), calls);
+
+        limiter.delivered(1);
+        assertEquals(asList("suspend", "resume"), calls);
+        assertEquals(1, limiter.getPending());
+    }
+
+    @Test
+    public void resumesWhenABatchSkipsOverTheLowWatermark() {
+        for (int i = 0; i < 5; i++) {
+            limiter.enqueued();
+        }
+        limiter.delivered(5);
+        assertEquals(asList("suspend", "resume"), calls);
+    }
+
+    @Test
+    public void readsOnlyOnceTheWatermarksAndEveryOtherPartyAllowIt() {
+        SharedFlowControl shared = new SharedFlowControl(new FlowControl() {
+            @Override
+            public void suspendReads() {
+                calls.add("suspend");
+            }
+
+            @Override
+            public void resumeReads() {
+                calls.add("resume");
+            }
+        });
+        PendingEventLimiter watermarks = new PendingEventLimiter(1, 3, shared.newFlowControl());
+        FlowControl demand = shared.newFlowControl();
+
+        demand.suspendReads();
+        for (int i = 0; i < 3; i++) {
+            watermarks.enqueued();
+        }
+        watermarks.delivered(3);
+        // still suspended for lack of demand
+        assertEquals(asList("suspend"), calls);
+
+        for (int i = 0; i < 3; i++) {
+            watermarks.enqueued();
+        }
+        demand.resumeReads();
+        demand.resumeReads();
+        // still suspended by the watermarks
+        assertEquals(asList("suspend"), calls);
+
+        watermarks.delivered(3);
+        assertEquals(asList("suspend", "resume"), calls);
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.eventsource.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import com.github.eventsource.client.impl.ByteArrayPool;
+import com.github.eventsource.client.impl.ConnectionHandler;
+import com.github.eventsource.client.impl.EventStreamParser;
+import com.github.eventsource.client.impl.RawAsyncEventSourceHandler;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+
+public class RawMessageEventTest {
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void exposesTheUndecodedDataAndDecodesItOnDemand() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        EventStreamParser parser = new EventStreamParser("http://origin", handler, mock(ConnectionHandler.class));
+        parser.lines("event: tick\nid: 7\ndata: hé\ndata: llo\n\n");
+
+        assertEquals("tick", handler.events.get(0));
+        assertEquals("hé\nllo", handler.data.get(0));
+        assertEquals(7, handler.lengths.get(0).intValue());
+        RawMessageEvent message = handler.messages.get(0);
+        assertEquals("7", message.lastEventId);
+        assertEquals("http://origin", message.origin);
+        assertEquals(new MessageEvent("hé\nllo", "7", "http://origin"), message.toMessageEvent());
+    }
+
+    @Test
+    public void releasedMessagesOnlyKeepTheirDecodedData() throws Exception {
+        RawMessageEvent decoded = new RawMessageEvent("abc".getBytes("UTF-8"), 2, null, null);
+        assertEquals("ab", decoded.data());
+        decoded.release();
+        assertTrue(decoded.isReleased());
+        assertEquals("ab", decoded.data());
+
+        RawMessageEvent undecoded = new RawMessageEvent("abc".getBytes("UTF-8"), 2, null, null);
+        undecoded.release();
+        try {
+            undecoded.dataBuffer();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            undecoded.data();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void theDataBufferIsReadOnly() throws Exception {
+        ByteBuffer buffer = new RawMessageEvent("abc".getBytes("UTF-8"), 2, null, null).dataBuffer();
+        assertEquals(0, buffer.position());
+        assertEquals(2, buffer.remaining());
+        try {
+            buffer.put(0, (byte) 'x');
+            fail();
+        } catch (ReadOnlyBufferException expected) {
+        }
+    }
+
+    @Test
+    public void releasesMessagesOnceTheirHandlerHasReturned() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        EventStreamParser parser = new EventStreamParser(null, new RawAsyncEventSourceHandler(SAME_THREAD, handler),
+                mock(ConnectionHandler.class));
+        for (int i = 0; i < 3; i++) {
+            parser.lines("data: " + i + "\n\n");
+        }
+
+        assertEquals("0", handler.data.get(0));
+        assertEquals("2", handler.data.get(2));
+        for (RawMessageEvent message : handler.messages) {
+            assertTrue(message.isReleased());
+        }
+    }
+
+    @Test
+    public void reusesTheBuffersOfReleasedMessages() throws Exception {
+        ByteArrayPool pool = new ByteArrayPool(1, 16);
+        byte[] bytes = pool.take(8);
+        new RawMessageEvent(bytes, 0, null, null, pool).release();
+        assertEquals(1, pool.size());
+        assertSame(bytes, pool.take(8));
+
+        pool.recycle(new byte[32]);
+        pool.recycle(new byte[8]);
+        pool.recycle(new byte[8]);
+        assertEquals(1, pool.size());
+    }
+
+    private static class RecordingHandler implements RawEventSourceHandler {
+        final List<String> events = new ArrayList<String>();
+        final List<RawMessageEvent> messages = new ArrayList<RawMessageEvent>();
+        final List<String> data = new ArrayList<String>();
+        final List<Integer> lengths = new ArrayList<Integer>();
+
+        @Override
+        public void onRawMessage(String event, RawMessageEvent message) {
+            events.add(event);
+            messages.add(message);
+            lengths.add(message.dataBuffer().remaining());
+            data.add(message.data());
+        }
+
+        @Override
+        public void onConnect() {
+        }
+
+        @Override
+        public void onMessage(String event, MessageEvent message) {
+            fail("Raw handlers get raw messages");
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            throw new AssertionError(t);
+        }
+    }
+}
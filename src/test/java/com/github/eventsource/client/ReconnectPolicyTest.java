@@ -0,0 +1,140 @@
+package com.github.eventsource.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.github.eventsource.client.impl.ReconnectBackoff;
+import com.github.eventsource.client.impl.ReconnectScheduler;
+import com.github.eventsource.client.reconnect.ReconnectPolicies;
+import com.github.eventsource.client.reconnect.ReconnectPolicy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.DefaultChannelFuture;
+import org.junit.Test;
+
+public class ReconnectPolicyTest {
+    @Test
+    public void exponentialDoublesUpToTheCap() {
+        ReconnectBackoff backoff = new ReconnectBackoff(1000, ReconnectPolicies.exponential(100, 1000));
+        long[] expected = {100, 200, 400, 800, 1000, 1000};
+        for (long delay : expected) {
+            assertEquals(delay, backoff.nextDelayMillis());
+        }
+        backoff.connected();
+        assertEquals(100, backoff.nextDelayMillis());
+        assertEquals(Long.MAX_VALUE, ReconnectPolicies.exponential(1, Long.MAX_VALUE).nextDelayMillis(100, 0));
+    }
+
+    @Test
+    public void decorrelatedJitterStaysWithinBounds() {
+        ReconnectPolicy policy = ReconnectPolicies.decorrelatedJitter(100, 5000);
+        long previous = 0;
+        boolean spread = false;
+        for (int attempt = 1; attempt <= 1000; attempt++) {
+            long delay = policy.nextDelayMillis(attempt, previous);
+            assertTrue("delay " + delay, delay >= 100 && delay <= Math.min(5000, Math.max(100, previous) * 3));
+            spread |= delay != previous;
+            previous = delay;
+        }
+        assertTrue(spread);
+    }
+
+    @Test
+    public void serverRetryReplacesTheReconnectionTimeButOnlyBoundsAPolicy() {
+        ReconnectBackoff spec = new ReconnectBackoff(1000, null);
+        assertEquals(1000, spec.nextDelayMillis());
+        spec.setServerRetryMillis(50);
+        assertEquals(50, spec.nextDelayMillis());
+
+        ReconnectBackoff withPolicy = new ReconnectBackoff(1000, ReconnectPolicies.fixed(10));
+        withPolicy.setServerRetryMillis(50);
+        assertEquals(50, withPolicy.nextDelayMillis());
+        withPolicy.setPolicy(ReconnectPolicies.fixed(70));
+        assertEquals(70, withPolicy.nextDelayMillis());
+
+        assertTrue(!new ReconnectBackoff(-1, null).isEnabled());
+    }
+
+    @Test
+    public void serverRetryEnablesReconnectingAStreamCreatedWithoutIt() {
+        ReconnectBackoff backoff = new ReconnectBackoff(-1, null);
+        backoff.setServerRetryMillis(50);
+        assertTrue(backoff.isEnabled());
+        assertEquals(50, backoff.nextDelayMillis());
+    }
+
+    @Test
+    public void reportsAnAttemptThatFailsToStartAndFreesItsSlot() throws Exception {
+        ReconnectScheduler scheduler = new ReconnectScheduler();
+        scheduler.setMaxInFlight(1);
+        final CountDownLatch failed = new CountDownLatch(1);
+        try {
+            scheduler.schedule(new ReconnectScheduler.Attempt() {
+                @Override
+                public ChannelFuture start() {
+                    throw new IllegalStateException("no connection");
+                }
+
+                @Override
+                public void failed(RuntimeException cause) {
+                    failed.countDown();
+                }
+            }, 0);
+            assertTrue(failed.await(5, TimeUnit.SECONDS));
+            assertEquals(0, scheduler.getInFlightCount());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void limitsAttemptsInFlight() throws Exception {
+        ReconnectScheduler scheduler = new ReconnectScheduler();
+        scheduler.setMaxInFlight(2);
+        final List<ChannelFuture> pending = new ArrayList<ChannelFuture>();
+        final AtomicInteger started = new AtomicInteger();
+        final CountDownLatch allStarted = new CountDownLatch(5);
+        try {
+            for (int i = 0; i < 5; i++) {
+                scheduler.schedule(new ReconnectScheduler.Attempt() {
+                    @Override
+                    public ChannelFuture start() {
+                        ChannelFuture future = new DefaultChannelFuture(null, false);
+                        synchronized (pending) {
+                            pending.add(future);
+                        }
+                        started.incrementAndGet();
+                        allStarted.countDown();
+                        return future;
+                    }
+
+                    @Override
+                    public void failed(RuntimeException cause) {
+                        throw new AssertionError(cause);
+                    }
+                }, 0);
+            }
+            for (int i = 0; i < 100 && scheduler.getWaitingCount() < 3; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, started.get());
+            assertEquals(2, scheduler.getInFlightCount());
+            assertEquals(3, scheduler.getWaitingCount());
+
+            while (!allStarted.await(10, TimeUnit.MILLISECONDS)) {
+                synchronized (pending) {
+                    for (ChannelFuture future : pending) {
+                        future.setFailure(new Exception("refused"));
+                    }
+                }
+                assertTrue(scheduler.getInFlightCount() <= 2);
+            }
+        } finally {
+            scheduler.stop();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.github.eventsource.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.github.eventsource.client.impl.AsyncEventSourceHandler;
+import com.github.eventsource.client.impl.RingBufferExecutor;
+import com.github.eventsource.client.impl.RingBufferExecutor.WaitStrategy;
+import com.github.eventsource.client.metrics.JmxEventSourceMetrics;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class RingBufferExecutorTest {
+    private RingBufferExecutor executor;
+
+    @After
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void keepsTheOrderOfEachProducer() throws Exception {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            executor = new RingBufferExecutor(1024, waitStrategy);
+            final int producers = 4;
+            final int tasksPerProducer = 10000;
+            final List<List<Integer>> seen = new ArrayList<List<Integer>>();
+            for (int p = 0; p < producers; p++) {
+                seen.add(new ArrayList<Integer>());
+            }
+            final CountDownLatch done = new CountDownLatch(producers * tasksPerProducer);
+
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int p = 0; p < producers; p++) {
+                final List<Integer> mine = seen.get(p);
+                Thread thread = new Thread() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < tasksPerProducer; i++) {
+                            final int value = i;
+                            while (true) {
+                                try {
+                                    executor.execute(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            mine.add(value);
+                                            done.countDown();
+                                        }
+                                    });
+                                    break;
+                                } catch (RejectedExecutionException e) {
+                                    Thread.yield();
+                                }
+                            }
+                        }
+                    }
+                };
+                thread.start();
+                threads.add(thread);
+            }
+
+            assertTrue(waitStrategy + " didn't run all tasks", done.await(10, TimeUnit.SECONDS));
+            for (List<Integer> values : seen) {
+                for (int i = 0; i < tasksPerProducer; i++) {
+                    assertEquals(Integer.valueOf(i), values.get(i));
+                }
+            }
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectsTasksWhenFull() throws Exception {
+        executor = new RingBufferExecutor(4, WaitStrategy.PARK);
+        CountDownLatch release = new CountDownLatch(1);
+        fill(release);
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            fail("expected the full ring to reject the task");
+        } catch (RejectedExecutionException expected) {
+        }
+        assertEquals(1, executor.getOverflowCount());
+        release.countDown();
+    }
+
+    @Test
+    public void countsErrorsThatAFullRingCannotTakeWithoutPrintingEachOfThem() throws Exception {
+        executor = new RingBufferExecutor(4, WaitStrategy.PARK);
+        JmxEventSourceMetrics metrics = new JmxEventSourceMetrics();
+        AsyncEventSourceHandler handler = new AsyncEventSourceHandler(executor, new EventSourceHandler() {
+            @Override
+            public void onConnect() {
+            }
+
+            @Override
+            public void onMessage(String event, MessageEvent message) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        }, metrics);
+        CountDownLatch release = new CountDownLatch(1);
+        fill(release);
+
+        PrintStream err = System.err;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(printed, true));
+        try {
+            for (int i = 0; i < 1000; i++) {
+                try {
+                    handler.onMessage("message", new MessageEvent("overflow"));
+                    fail("expected the full ring to reject the message");
+                } catch (RejectedExecutionException e) {
+                    handler.onError(e);
+                }
+            }
+        } finally {
+            System.setErr(err);
+        }
+        release.countDown();
+
+        // every message and the error it caused
+        assertEquals(2000, executor.getOverflowCount());
+        assertEquals(1000, metrics.getEventsRejected());
+        assertEquals(1000, metrics.getDispatchFailures());
+        String output = printed.toString();
+        assertTrue(output, output.split("\n").length <= 1);
+    }
+
+    /**
+     * Blocks the consumer until released and takes every slot of the ring.
+     */
+    private void fill(final CountDownLatch release) throws InterruptedException {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        blocked.await();
+        for (int i = 0; i < executor.getCapacity(); i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        }
+    }
+}
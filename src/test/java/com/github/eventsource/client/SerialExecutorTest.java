@@ -0,0 +1,150 @@
+package com.github.eventsource.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.github.eventsource.client.impl.SerialExecutor;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class SerialExecutorTest {
+    private final ExecutorService pool = Executors.newFixedThreadPool(8);
+
+    @After
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void runsTheTasksOfAMailboxOneAtATimeInOrder() throws Exception {
+        SerialExecutor mailbox = new SerialExecutor(pool);
+        final List<Integer> order = new ArrayList<Integer>();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(10000);
+        for (int i = 0; i < 10000; i++) {
+            final int n = i;
+            mailbox.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (running.incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    order.add(n);
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, order.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void aBlockedMailboxDoesNotHoldUpTheOthers() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocking = new CountDownLatch(1);
+        final CountDownLatch ran = new CountDownLatch(1);
+        SerialExecutor blocked = new SerialExecutor(pool);
+        blocked.execute(new Runnable() {
+            @Override
+            public void run() {
+                blocking.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        blocked.execute(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        new SerialExecutor(pool).execute(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        });
+        assertTrue("Held up by the other mailbox", ran.await(5, TimeUnit.SECONDS));
+        assertTrue(blocking.await(5, TimeUnit.SECONDS));
+        assertEquals(1, blocked.size());
+        release.countDown();
+    }
+
+    @Test
+    public void keepsOtherStreamsGoingWhileAHandlerBlocks() throws Exception {
+        StubEventStreamServer server = new StubEventStreamServer().stream("data: a\n\n", 100).start();
+        EventSourceClient client = EventSourceClient.withVirtualThreads(1, EventSourceClient.Transport.NETTY3);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            EventSource blocking = new EventSource(client, -1, URI.create(server.uri("/blocking")),
+                                                   new EventSourceStubServerTest.CountingHandler(0) {
+                @Override
+                public void onMessage(String event, MessageEvent message) throws Exception {
+                    release.await();
+                }
+            });
+            blocking.connect();
+            EventSourceStubServerTest.CountingHandler handler = new EventSourceStubServerTest.CountingHandler(100);
+            new EventSource(client, -1, URI.create(server.uri("/other")), handler).connect();
+
+            assertTrue("Held up by the blocked handler", handler.received.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            client.shutdown();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void keepsTheEventsOfEveryStreamInOrderOnAWorkStealingPool() throws Exception {
+        StubEventStreamServer server = new StubEventStreamServer().stream("id: 1\ndata: a\n\nid: 2\ndata: b\n\n", 500)
+                .start();
+        EventSourceClient client = EventSourceClient.withWorkStealingPool(2, EventSourceClient.Transport.NETTY3);
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final CountDownLatch handled = new CountDownLatch(8 * 1000);
+        try {
+            for (int i = 0; i < 8; i++) {
+                EventSourceHandler handler = new EventSourceStubServerTest.CountingHandler(0) {
+                    private final AtomicInteger running = new AtomicInteger();
+                    private String expected = "1";
+
+                    @Override
+                    public void onMessage(String event, MessageEvent message) {
+                        if (running.incrementAndGet() > 1) {
+                            overlaps.incrementAndGet();
+                        }
+                        if (!expected.equals(message.lastEventId)) {
+                            outOfOrder.incrementAndGet();
+                        }
+                        expected = "1".equals(message.lastEventId) ? "2" : "1";
+                        running.decrementAndGet();
+                        handled.countDown();
+                    }
+                };
+                new EventSource(client, -1, URI.create(server.uri("/es/" + i)), handler).connect();
+            }
+            assertTrue("Didn't get all messages", handled.await(10, TimeUnit.SECONDS));
+            assertEquals(0, overlaps.get());
+            assertEquals(0, outOfOrder.get());
+        } finally {
+            client.shutdown();
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.eventsource.client;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opens a large number of streams on the {@link EventSourceClient#shared() shared client} against a local
+ * server that sends every stream one event per tick, then reports the thread count, the heap retained per
+ * stream and the event throughput. Each stream needs two file descriptors in this process, so raise the
+ * open files limit (ulimit -n) before going past a few hundred.
+ *
+ * Usage: SharedClientSoak [streams] [seconds] [tickMillis]
+ */
+public class SharedClientSoak {
+    public static void main(String[] args) throws Exception {
+        int streams = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        long tickMillis = args.length > 2 ? Long.parseLong(args[2]) : 100;
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        StubEventStreamServer server = new StubEventStreamServer()
+                .stream("data: {\"seq\":1,\"price\":101.25}\n\n", Long.MAX_VALUE)
+                .tickEvery(tickMillis)
+                .start();
+        int threadsBefore = threads.getThreadCount();
+        long heapBefore = usedHeapAfterGc(memory);
+
+        EventSourceClient client = EventSourceClient.shared();
+        List<EventSource> eventSources = new ArrayList<EventSource>(streams);
+        try {
+            URI uri = URI.create(server.uri("/soak"));
+            for (int i = 0; i < streams; i++) {
+                EventSource eventSource = new EventSource(uri, new NoopHandler());
+                eventSource.connect();
+                eventSources.add(eventSource);
+            }
+            while (server.getOpenConnections() < streams) {
+                Thread.sleep(100);
+            }
+            Thread.sleep(2 * tickMillis);
+
+            long heapAfter = usedHeapAfterGc(memory);
+            long before = eventsReceived(eventSources);
+            long start = System.nanoTime();
+            Thread.sleep(seconds * 1000L);
+            long events = eventsReceived(eventSources) - before;
+            long elapsed = System.nanoTime() - start;
+
+            System.out.println("streams            " + client.getEventSourceCount());
+            System.out.println("open channels      " + client.getOpenChannelCount());
+            System.out.println("threads            " + threads.getThreadCount() + " (" + threadsBefore + " before connecting)");
+            System.out.println("heap per stream    " + (heapAfter - heapBefore) / streams + " bytes (server included)");
+            System.out.println("events/s           " + events * 1000000000L / elapsed);
+            System.out.println("bytes received     " + bytesReceived(eventSources));
+        } finally {
+            for (EventSource eventSource : eventSources) {
+                eventSource.close();
+            }
+            client.shutdown();
+            server.stop();
+        }
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long eventsReceived(List<EventSource> eventSources) {
+        long total = 0;
+        for (EventSource eventSource : eventSources) {
+            total += eventSource.getEventsReceived();
+        }
+        return total;
+    }
+
+    private static long bytesReceived(List<EventSource> eventSources) {
+        long total = 0;
+        for (EventSource eventSource : eventSources) {
+            total += eventSource.getBytesReceived();
+        }
+        return total;
+    }
+
+    private static class NoopHandler implements EventSourceHandler {
+        @Override
+        public void onConnect() {
+        }
+
+        @Override
+        public void onMessage(String event, MessageEvent message) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            t.printStackTrace();
+        }
+    }
+}
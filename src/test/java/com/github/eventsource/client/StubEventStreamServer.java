@@ -0,0 +1,313 @@
+package com.github.eventsource.client;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.ssl.SslHandler;
+
+/**
+ * A bare-bones event stream server for tests and benchmarks. Every request is answered with a chunked
+ * text/event-stream response that repeats the configured payload, either a fixed number of times or until
+ * the client goes away. In paced mode ({@link #tickEvery(long)}) the payload is instead written once per
+ * interval to every open stream, which keeps thousands of idle-ish streams open cheaply.
+ *
+ * With {@link #gzip()} requests that accept gzip get a gzip response. The payload is compressed once up front and
+ * ends with a full flush, so every repetition is a self-contained deflate block that is written as is and can be
+ * inflated as soon as it arrives.
+ */
+public class StubEventStreamServer {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String RESPONSE_HEADERS = "" +
+            "HTTP/1.1 200 OK\r\n" +
+            "Content-Type: text/event-stream\r\n" +
+            "Cache-Control: no-cache\r\n" +
+            "Transfer-Encoding: chunked\r\n" +
+            "\r\n";
+    private static final String GZIP_RESPONSE_HEADERS = "" +
+            "HTTP/1.1 200 OK\r\n" +
+            "Content-Type: text/event-stream\r\n" +
+            "Content-Encoding: gzip\r\n" +
+            "Cache-Control: no-cache\r\n" +
+            "Transfer-Encoding: chunked\r\n" +
+            "\r\n";
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final ServerBootstrap bootstrap;
+    private final ChannelGroup channels = new DefaultChannelGroup();
+    private final ChannelGroup pacedChannels = new DefaultChannelGroup();
+    private final ChannelGroup pacedGzipChannels = new DefaultChannelGroup();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private ScheduledExecutorService ticker;
+    private volatile byte[] payload;
+    private volatile ChannelBuffer chunk;
+    private volatile ChannelBuffer gzipChunk;
+    private volatile boolean gzip;
+    private volatile long repetitions;
+    private volatile SSLContext sslContext;
+    private volatile String lastRequest;
+    private final Set<Long> tlsSessions = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private Channel serverChannel;
+
+    public StubEventStreamServer() {
+        bootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newCachedThreadPool(),
+                                                                          Executors.newCachedThreadPool()));
+        bootstrap.setOption("child.tcpNoDelay", true);
+        bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+            @Override
+            public ChannelPipeline getPipeline() throws Exception {
+                ChannelPipeline pipeline = Channels.pipeline();
+                if (sslContext != null) {
+                    SSLEngine engine = sslContext.createSSLEngine();
+                    engine.setUseClientMode(false);
+                    pipeline.addLast("ssl", new SslHandler(engine));
+                }
+                pipeline.addLast("stream", new StreamHandler());
+                return pipeline;
+            }
+        });
+        stream("data: tick\n\n", Long.MAX_VALUE);
+    }
+
+    /**
+     * @param events      raw event stream text written as one chunk
+     * @param repetitions how many times the chunk is written before the response ends and the connection
+     *                    is closed, {@link Long#MAX_VALUE} to stream until the client disconnects
+     */
+    public StubEventStreamServer stream(String events, long repetitions) {
+        payload = events.getBytes(UTF_8);
+        chunk = chunk(payload);
+        gzipChunk = chunk(deflate(payload, false));
+        this.repetitions = repetitions;
+        return this;
+    }
+
+    /**
+     * Answers requests that accept gzip with a gzip compressed response.
+     */
+    public StubEventStreamServer gzip() {
+        gzip = true;
+        return this;
+    }
+
+    /**
+     * Writes the payload to every open stream once per interval instead of as fast as the client reads it.
+     */
+    public StubEventStreamServer tickEvery(long intervalMillis) {
+        ticker = Executors.newSingleThreadScheduledExecutor();
+        ticker.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                bytesWritten.addAndGet(pacedChannels.size() * (long) chunk.readableBytes()
+                                       + pacedGzipChannels.size() * (long) gzipChunk.readableBytes());
+                pacedChannels.write(chunk.duplicate());
+                pacedGzipChannels.write(gzipChunk.duplicate());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * Serves https with the given context instead of plain http.
+     */
+    public StubEventStreamServer secure(SSLContext sslContext) {
+        this.sslContext = sslContext;
+        return this;
+    }
+
+    public StubEventStreamServer start() {
+        serverChannel = bootstrap.bind(new InetSocketAddress("127.0.0.1", 0));
+        channels.add(serverChannel);
+        return this;
+    }
+
+    public int getPort() {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    public String uri(String path) {
+        return (sslContext != null ? "https" : "http") + "://127.0.0.1:" + getPort() + path;
+    }
+
+    /**
+     * @return number of TLS sessions established with full handshakes; a resumed session keeps the creation
+     *         time of the one it resumes, which is what sessions are told apart by
+     */
+    public int getTlsSessionCount() {
+        return tlsSessions.size();
+    }
+
+    /**
+     * @return the start of the most recent request, its request line and headers
+     */
+    public String getLastRequest() {
+        return lastRequest;
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    /**
+     * @return bytes of response bodies written so far, chunk framing included, as they went over the wire
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    private static ChannelBuffer chunk(byte[] content) {
+        ChannelBuffer chunk = ChannelBuffers.dynamicBuffer(content.length + 16);
+        chunk.writeBytes((Integer.toHexString(content.length) + "\r\n").getBytes(UTF_8));
+        chunk.writeBytes(content);
+        chunk.writeBytes("\r\n".getBytes(UTF_8));
+        return chunk;
+    }
+
+    /**
+     * @param finish whether to end the deflate stream, otherwise the content is fully flushed
+     */
+    private static byte[] deflate(byte[] content, boolean finish) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        byte[] output = new byte[content.length + 64];
+        int length;
+        if (finish) {
+            deflater.finish();
+            length = deflater.deflate(output);
+        } else {
+            deflater.setInput(content);
+            length = deflater.deflate(output, 0, output.length, Deflater.FULL_FLUSH);
+        }
+        deflater.end();
+        byte[] deflated = new byte[length];
+        System.arraycopy(output, 0, deflated, 0, length);
+        return deflated;
+    }
+
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        channels.close().awaitUninterruptibly();
+        bootstrap.releaseExternalResources();
+    }
+
+    private class StreamHandler extends SimpleChannelUpstreamHandler {
+        private boolean streaming;
+        private boolean gzipped;
+        private long remaining;
+        private final CRC32 crc = new CRC32();
+
+        @Override
+        public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent e) {
+            channels.add(e.getChannel());
+            openConnections.incrementAndGet();
+        }
+
+        @Override
+        public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) {
+            openConnections.decrementAndGet();
+        }
+
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+            // the request itself is irrelevant, start streaming once it starts arriving
+            if (!streaming) {
+                streaming = true;
+                lastRequest = ((ChannelBuffer) e.getMessage()).toString(UTF_8);
+                SslHandler sslHandler = ctx.getPipeline().get(SslHandler.class);
+                if (sslHandler != null) {
+                    tlsSessions.add(sslHandler.getEngine().getSession().getCreationTime());
+                }
+                remaining = repetitions;
+                gzipped = gzip && lastRequest.toLowerCase().contains("accept-encoding: gzip");
+                if (gzipped) {
+                    e.getChannel().write(ChannelBuffers.copiedBuffer(GZIP_RESPONSE_HEADERS, UTF_8));
+                    write(e.getChannel(), chunk(GZIP_HEADER));
+                } else {
+                    e.getChannel().write(ChannelBuffers.copiedBuffer(RESPONSE_HEADERS, UTF_8));
+                }
+                if (ticker != null) {
+                    (gzipped ? pacedGzipChannels : pacedChannels).add(e.getChannel());
+                } else {
+                    writeMore(e.getChannel());
+                }
+            }
+        }
+
+        @Override
+        public void channelInterestChanged(ChannelHandlerContext ctx, ChannelStateEvent e) {
+            if (streaming && ticker == null) {
+                writeMore(e.getChannel());
+            }
+        }
+
+        private void writeMore(Channel channel) {
+            while (remaining > 0 && channel.isWritable()) {
+                remaining--;
+                if (gzipped) {
+                    if (repetitions != Long.MAX_VALUE) {
+                        // the trailer is only needed once a finite stream ends
+                        crc.update(payload);
+                    }
+                    write(channel, gzipChunk.duplicate());
+                } else {
+                    write(channel, chunk.duplicate());
+                }
+            }
+            if (remaining == 0) {
+                remaining = -1;
+                if (gzipped) {
+                    write(channel, chunk(gzipTrailer()));
+                }
+                channel.write(ChannelBuffers.copiedBuffer("0\r\n\r\n", UTF_8)).addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+
+        private void write(Channel channel, ChannelBuffer chunk) {
+            bytesWritten.addAndGet(chunk.readableBytes());
+            channel.write(chunk);
+        }
+
+        private byte[] gzipTrailer() {
+            byte[] end = deflate(new byte[0], true);
+            long size = repetitions * payload.length;
+            ChannelBuffer trailer = ChannelBuffers.buffer(ChannelBuffers.LITTLE_ENDIAN, end.length + 8);
+            trailer.writeBytes(end);
+            trailer.writeInt((int) crc.getValue());
+            trailer.writeInt((int) size);
+            return trailer.array();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) {
+            e.getChannel().close();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.github.eventsource.client;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * The HTTP/2 counterpart of {@link StubEventStreamServer}: h2c with prior knowledge, or h2 negotiated with ALPN
+ * once {@link #secure(SSLContext)} is set. Every stream is answered with a text/event-stream response repeating
+ * the configured payload, written only while the stream's flow-control window lets it, so a client that stops
+ * reading holds the server back on that stream alone. In paced mode ({@link #tickEvery(long)}) the payload is
+ * written once per interval to every open stream instead, like {@link StubEventStreamServer#tickEvery(long)}.
+ */
+public class StubHttp2EventStreamServer {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final EventLoopGroup group = new NioEventLoopGroup(2);
+    private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private final ChannelGroup pacedStreams = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger openStreams = new AtomicInteger();
+    private final ConcurrentHashMap<String, AtomicLong> bytesWritten = new ConcurrentHashMap<String, AtomicLong>();
+    private volatile ByteBuf payload;
+    private volatile long repetitions;
+    private volatile SSLContext sslContext;
+    private ScheduledExecutorService ticker;
+    private Channel serverChannel;
+
+    public StubHttp2EventStreamServer() {
+        stream("data: tick\n\n", Long.MAX_VALUE);
+    }
+
+    /**
+     * @param events      raw event stream text written as one data frame
+     * @param repetitions how many times it is written before the stream ends, {@link Long#MAX_VALUE} to stream
+     *                    until the client goes away
+     */
+    public StubHttp2EventStreamServer stream(String events, long repetitions) {
+        payload = Unpooled.unreleasableBuffer(Unpooled.copiedBuffer(events, UTF_8));
+        this.repetitions = repetitions;
+        return this;
+    }
+
+    /**
+     * Writes the payload to every open stream once per interval instead of as fast as the client reads it.
+     */
+    public StubHttp2EventStreamServer tickEvery(long intervalMillis) {
+        ticker = Executors.newSingleThreadScheduledExecutor();
+        ticker.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                pacedStreams.writeAndFlush(new DefaultHttpContent(payload.duplicate()));
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    public StubHttp2EventStreamServer secure(SSLContext sslContext) {
+        this.sslContext = sslContext;
+        return this;
+    }
+
+    public StubHttp2EventStreamServer start() throws InterruptedException {
+        serverChannel = new ServerBootstrap().group(group).channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel channel) {
+                        channels.add(channel);
+                        connections.incrementAndGet();
+                        ChannelPipeline pipeline = channel.pipeline();
+                        if (sslContext != null) {
+                            SSLEngine engine = sslContext.createSSLEngine();
+                            engine.setUseClientMode(false);
+                            SSLParameters parameters = engine.getSSLParameters();
+                            parameters.setApplicationProtocols(new String[]{ApplicationProtocolNames.HTTP_2});
+                            engine.setSSLParameters(parameters);
+                            pipeline.addLast(new SslHandler(engine));
+                        }
+                        pipeline.addLast(Http2FrameCodecBuilder.forServer().build());
+                        pipeline.addLast(new Http2MultiplexHandler(new ChannelInitializer<Http2StreamChannel>() {
+                            @Override
+                            protected void initChannel(Http2StreamChannel stream) {
+                                stream.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true));
+                                stream.pipeline().addLast(new StreamHandler());
+                            }
+                        }));
+                    }
+                }).bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+        return this;
+    }
+
+    public String uri(String path) {
+        return (sslContext != null ? "https" : "http") + "://127.0.0.1:"
+                + ((InetSocketAddress) serverChannel.localAddress()).getPort() + path;
+    }
+
+    /**
+     * @return connections accepted so far
+     */
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    public int getOpenStreams() {
+        return openStreams.get();
+    }
+
+    /**
+     * @return bytes of event stream written to the streams requesting the path
+     */
+    public long getBytesWritten(String path) {
+        AtomicLong written = bytesWritten.get(path);
+        return written == null ? 0 : written.get();
+    }
+
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        serverChannel.close().awaitUninterruptibly();
+        channels.close().awaitUninterruptibly();
+        group.shutdownGracefully(0, 2, TimeUnit.SECONDS).awaitUninterruptibly();
+    }
+
+    private class StreamHandler extends ChannelInboundHandlerAdapter {
+        private AtomicLong written;
+        private long remaining;
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            openStreams.incrementAndGet();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            openStreams.decrementAndGet();
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof HttpRequest && written == null) {
+                String path = ((HttpRequest) msg).uri();
+                AtomicLong counter = new AtomicLong();
+                AtomicLong existing = bytesWritten.putIfAbsent(path, counter);
+                written = existing != null ? existing : counter;
+                remaining = repetitions;
+                HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/event-stream");
+                response.headers().set(HttpHeaderNames.CACHE_CONTROL, "no-cache");
+                if (ticker != null) {
+                    ctx.writeAndFlush(response);
+                    pacedStreams.add(ctx.channel());
+                } else {
+                    ctx.write(response);
+                    writeMore(ctx);
+                }
+            }
+            ReferenceCountUtil.release(msg);
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+            if (written != null && ticker == null) {
+                writeMore(ctx);
+            }
+        }
+
+        private void writeMore(ChannelHandlerContext ctx) {
+            while (remaining > 0 && ctx.channel().isActive() && ctx.channel().isWritable()) {
+                remaining--;
+                written.addAndGet(payload.readableBytes());
+                ctx.write(new DefaultHttpContent(payload.duplicate()));
+            }
+            if (remaining == 0) {
+                remaining = -1;
+                ctx.write(LastHttpContent.EMPTY_LAST_CONTENT).addListener(ChannelFutureListener.CLOSE);
+            }
+            ctx.flush();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.eventsource.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.security.KeyStore;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import org.junit.Test;
+
+/**
+ * Connects over https again and again to a server with a self-signed certificate for localhost and 127.0.0.1, and reports how
+ * long connecting takes with and without TLS session resumption.
+ */
+public class TlsReconnectTest {
+    private static final int CONNECTS = 20;
+
+    @Test
+    public void resumesSessionsOnReconnect() throws Exception {
+        long resumed = reconnect(EventSourceClient.Transport.NETTY3, true, 1);
+        long full = reconnect(EventSourceClient.Transport.NETTY3, false, CONNECTS);
+        System.out.println("Netty 3 reconnect over TLS: " + resumed + "us resumed, " + full + "us full handshake");
+    }
+
+    @Test
+    public void resumesSessionsOnReconnectOverNetty4() throws Exception {
+        long resumed = reconnect(EventSourceClient.Transport.NETTY4, true, 1);
+        long full = reconnect(EventSourceClient.Transport.NETTY4, false, CONNECTS);
+        System.out.println("Netty 4 reconnect over TLS: " + resumed + "us resumed, " + full + "us full handshake");
+    }
+
+    @Test
+    public void reportsAnUntrustedCertificate() throws Exception {
+        StubEventStreamServer server = new StubEventStreamServer().secure(sslContext()).start();
+        // the JVM's default trust store doesn't know the server's certificate
+        EventSourceClient client = new EventSourceClient(Executors.newSingleThreadExecutor());
+        try {
+            ConnectHandler handler = new ConnectHandler();
+            EventSource eventSource = new EventSource(client, -1, URI.create(server.uri("/es")), handler);
+            eventSource.connect();
+            assertTrue("No error", handler.failed.await(5, TimeUnit.SECONDS));
+            assertEquals(1, handler.connected.getCount());
+            eventSource.close();
+        } finally {
+            client.shutdown();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void reportsAndRetriesAConnectThatFailsToStart() throws Exception {
+        assertReportsAndRetriesAConnectThatFailsToStart(EventSourceClient.Transport.NETTY3);
+    }
+
+    @Test
+    public void reportsAndRetriesAConnectThatFailsToStartOverNetty4() throws Exception {
+        assertReportsAndRetriesAConnectThatFailsToStart(EventSourceClient.Transport.NETTY4);
+    }
+
+    private void assertReportsAndRetriesAConnectThatFailsToStart(EventSourceClient.Transport transport)
+            throws Exception {
+        StubEventStreamServer server = new StubEventStreamServer().secure(sslContext()).start();
+        // creating an engine from a context that was never initialized throws
+        EventSourceClient client = new EventSourceClient(Executors.newSingleThreadExecutor(), 1, transport)
+                .setSslContext(SSLContext.getInstance("TLS"));
+        try {
+            ConnectHandler handler = new ConnectHandler();
+            EventSource eventSource = new EventSource(client, 10, URI.create(server.uri("/es")), handler);
+            eventSource.connect();
+            assertTrue("Not retried", handler.errors.await(5, TimeUnit.SECONDS));
+            eventSource.close();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (client.getReconnectScheduler().getInFlightCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, client.getReconnectScheduler().getInFlightCount());
+        } finally {
+            client.shutdown();
+            server.stop();
+        }
+    }
+
+    /**
+     * @return mean time from starting to connect until the response has arrived, in microseconds, leaving out
+     *         the first connect which is a full handshake either way
+     */
+    private long reconnect(EventSourceClient.Transport transport, boolean sessionResumption, int expectedSessions)
+            throws Exception {
+        StubEventStreamServer server = new StubEventStreamServer().stream("data: a\n\n", 1).secure(sslContext()).start();
+        EventSourceClient client = new EventSourceClient(Executors.newSingleThreadExecutor(), 1, transport)
+                .setSslContext(sslContext())
+                .setTlsSessionResumption(sessionResumption);
+        try {
+            long total = 0;
+            for (int i = 0; i < CONNECTS; i++) {
+                ConnectHandler handler = new ConnectHandler();
+                long start = System.nanoTime();
+                EventSource eventSource = new EventSource(client, -1, URI.create(server.uri("/es")), handler);
+                eventSource.connect();
+                assertTrue("Didn't connect", handler.connected.await(5, TimeUnit.SECONDS));
+                if (i > 0) {
+                    total += System.nanoTime() - start;
+                }
+                eventSource.close();
+            }
+            assertEquals(expectedSessions, server.getTlsSessionCount());
+            return total / 1000 / (CONNECTS - 1);
+        } finally {
+            client.shutdown();
+            server.stop();
+        }
+    }
+
+    static SSLContext sslContext() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream in = TlsReconnectTest.class.getResourceAsStream("/localhost.jks");
+        try {
+            keyStore.load(in, "changeit".toCharArray());
+        } finally {
+            in.close();
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, "changeit".toCharArray());
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+        return context;
+    }
+
+    private static class ConnectHandler implements EventSourceHandler {
+        final CountDownLatch connected = new CountDownLatch(1);
+        final CountDownLatch failed = new CountDownLatch(1);
+        final CountDownLatch errors = new CountDownLatch(3);
+
+        @Override
+        public void onConnect() {
+            connected.countDown();
+        }
+
+        @Override
+        public void onMessage(String event, MessageEvent message) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            failed.countDown();
+            errors.countDown();
+        }
+    }
+}